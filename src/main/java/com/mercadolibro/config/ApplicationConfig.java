@@ -7,10 +7,15 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import com.mercadolibro.service.TestService;
 import com.mercadolibro.service.impl.TestServiceImpl;
+import com.mercadolibro.util.CircuitBreaker;
+import com.mercadolibro.util.RetryPolicy;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import org.springframework.web.util.UriBuilderFactory;
 
+import java.time.Duration;
+
 @Configuration
 public class ApplicationConfig {
 	@Value("${app.frontend.base-url}")
@@ -49,4 +54,30 @@ public class ApplicationConfig {
 	public String frontendBaseUrl() {
 		return frontendBaseUrl;
 	}
+
+	@Bean
+	public RetryPolicy stockRetryPolicy(@Value("${app.stock.retry.max-attempts:5}") int maxAttempts,
+										@Value("${app.stock.retry.initial-backoff-ms:10}") long initialBackoff,
+										@Value("${app.stock.retry.max-backoff-ms:200}") long maxBackoff) {
+		return new RetryPolicy(maxAttempts, Duration.ofMillis(initialBackoff), Duration.ofMillis(maxBackoff));
+	}
+
+	@Bean
+	public ThreadPoolTaskExecutor preferenceExecutor(@Value("${app.mercadopago.preference.pool-size:4}") int poolSize,
+													 @Value("${app.mercadopago.preference.queue-capacity:200}") int queueCapacity) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("preference-");
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		executor.setAwaitTerminationSeconds(30);
+		return executor;
+	}
+
+	@Bean
+	public CircuitBreaker preferenceCircuitBreaker(@Value("${app.mercadopago.preference.failure-threshold:5}") int failureThreshold,
+												   @Value("${app.mercadopago.preference.open-ms:30000}") long openDuration) {
+		return new CircuitBreaker("MercadoPago", failureThreshold, Duration.ofMillis(openDuration));
+	}
 }
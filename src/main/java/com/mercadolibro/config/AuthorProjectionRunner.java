@@ -0,0 +1,33 @@
+package com.mercadolibro.config;
+
+import com.mercadolibro.service.projection.BookAuthorProjection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/* Runs first, the sales rollups need the authors to add up the sales by author */
+@Configuration
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AuthorProjectionRunner implements ApplicationRunner {
+    private final Logger logger = LoggerFactory.getLogger(AuthorProjectionRunner.class);
+
+    private final BookAuthorProjection bookAuthorProjection;
+
+    @Autowired
+    public AuthorProjectionRunner(BookAuthorProjection bookAuthorProjection) {
+        this.bookAuthorProjection = bookAuthorProjection;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long projected = bookAuthorProjection.backfillIfEmpty();
+        if (projected > 0) {
+            logger.info("Book authors projected from {} books", projected);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.mercadolibro.config;
+
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.InvoiceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Configuration;
+
+import javax.transaction.Transactional;
+
+@Configuration
+public class BestSellersRunner implements ApplicationRunner {
+    private final Logger logger = LoggerFactory.getLogger(BestSellersRunner.class);
+
+    private final BookRepository bookRepository;
+    private final InvoiceRepository invoiceRepository;
+
+    @Autowired
+    public BestSellersRunner(BookRepository bookRepository, InvoiceRepository invoiceRepository) {
+        this.bookRepository = bookRepository;
+        this.invoiceRepository = invoiceRepository;
+    }
+
+    /* Payments only add to the units sold, so the sales made before the counter existed are counted once here */
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        if (!bookRepository.existsByUnitsSoldGreaterThan(0) && invoiceRepository.existsByPaidTrue()) {
+            int counted = bookRepository.recountUnitsSold();
+            logger.info("Units sold counted for {} books", counted);
+        }
+    }
+}
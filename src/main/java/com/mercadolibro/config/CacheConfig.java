@@ -1,17 +1,37 @@
 package com.mercadolibro.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @EnableCaching
 @Configuration
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
+    private final CacheProperties cacheProperties;
 
+    @Autowired
+    public CacheConfig(CacheProperties cacheProperties) {
+        this.cacheProperties = cacheProperties;
+    }
+
+    /**
+     * Builds a Caffeine backed cache manager. Every cache listed in app.cache.specs gets its own size bound,
+     * expiration and statistics, while any other cache name is created on demand with the default spec.
+     *
+     * @return the CacheManager used by the @Cacheable annotations of the services.
+     */
     @Bean
     public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("books");
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheSpecification(cacheProperties.getDefaultSpec());
+        cacheProperties.getSpecs().forEach((name, spec) ->
+                cacheManager.registerCustomCache(name, Caffeine.from(spec).build()));
+        return cacheManager;
     }
 }
@@ -0,0 +1,20 @@
+package com.mercadolibro.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    /* Caffeine spec used for any cache that has no entry in specs */
+    private String defaultSpec = "maximumSize=500,expireAfterWrite=10m,recordStats";
+
+    /* Caffeine spec per cache name, e.g. books: maximumSize=1000,expireAfterWrite=5m,recordStats */
+    private Map<String, String> specs = new HashMap<>();
+}
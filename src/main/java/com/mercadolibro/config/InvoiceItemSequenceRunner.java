@@ -0,0 +1,32 @@
+package com.mercadolibro.config;
+
+import com.mercadolibro.repository.InvoiceItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Configuration;
+
+import javax.transaction.Transactional;
+
+@Configuration
+public class InvoiceItemSequenceRunner implements ApplicationRunner {
+    private final Logger logger = LoggerFactory.getLogger(InvoiceItemSequenceRunner.class);
+
+    private final InvoiceItemRepository invoiceItemRepository;
+
+    @Autowired
+    public InvoiceItemSequenceRunner(InvoiceItemRepository invoiceItemRepository) {
+        this.invoiceItemRepository = invoiceItemRepository;
+    }
+
+    /* Invoice items had database generated IDs before, so the sequence would otherwise hand out IDs already taken */
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        if (invoiceItemRepository.initIdSequence() + invoiceItemRepository.alignIdSequence() > 0) {
+            logger.info("Invoice item ID sequence moved past the existing invoice items");
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.mercadolibro.config;
 
+import com.mercadolibro.util.Bulkhead;
+import com.mercadolibro.util.RetryPolicy;
+import com.mercadopago.net.MPDefaultHttpClient;
+import com.mercadopago.net.MPHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class MercadoPagoConfig {
     @Value("${app.mercadopago.access-token}")
@@ -12,4 +19,26 @@ public class MercadoPagoConfig {
     public String mercadoPagoAccessToken() {
         return mercadoPagoAccessToken;
     }
+
+    /* A single client for every MercadoPago call, so its pooled connections are reused instead of opened per call */
+    @Bean
+    public MPHttpClient mercadoPagoHttpClient(@Value("${app.mercadopago.max-connections:20}") int maxConnections) {
+        com.mercadopago.MercadoPagoConfig.setMaxConnections(maxConnections);
+        // Retries are left to the gateways, which know which calls are safe to repeat
+        com.mercadopago.MercadoPagoConfig.setRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+        return new MPDefaultHttpClient();
+    }
+
+    @Bean
+    public Bulkhead paymentBulkhead(@Value("${app.mercadopago.payment.max-concurrent-calls:10}") int maxConcurrentCalls,
+                                    @Value("${app.mercadopago.payment.max-wait-ms:500}") long maxWait) {
+        return new Bulkhead("MercadoPago", maxConcurrentCalls, Duration.ofMillis(maxWait));
+    }
+
+    @Bean
+    public RetryPolicy paymentRetryPolicy(@Value("${app.mercadopago.payment.retry.max-attempts:3}") int maxAttempts,
+                                          @Value("${app.mercadopago.payment.retry.initial-backoff-ms:200}") long initialBackoff,
+                                          @Value("${app.mercadopago.payment.retry.max-backoff-ms:2000}") long maxBackoff) {
+        return new RetryPolicy(maxAttempts, Duration.ofMillis(initialBackoff), Duration.ofMillis(maxBackoff));
+    }
 }
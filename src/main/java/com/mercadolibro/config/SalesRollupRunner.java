@@ -0,0 +1,29 @@
+package com.mercadolibro.config;
+
+import com.mercadolibro.service.projection.SalesRollupProjection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SalesRollupRunner implements ApplicationRunner {
+    private final Logger logger = LoggerFactory.getLogger(SalesRollupRunner.class);
+
+    private final SalesRollupProjection salesRollupProjection;
+
+    @Autowired
+    public SalesRollupRunner(SalesRollupProjection salesRollupProjection) {
+        this.salesRollupProjection = salesRollupProjection;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long rolledUp = salesRollupProjection.backfillIfNeeded();
+        if (rolledUp > 0) {
+            logger.info("Sales rolled up from {} paid invoices", rolledUp);
+        }
+    }
+}
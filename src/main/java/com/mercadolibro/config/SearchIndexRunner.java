@@ -0,0 +1,59 @@
+package com.mercadolibro.config;
+
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.service.search.BookIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+@Configuration
+public class SearchIndexRunner implements ApplicationRunner {
+    private static final int PAGE_SIZE = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(SearchIndexRunner.class);
+
+    private final BookRepository bookRepository;
+    private final List<BookIndex> bookIndexes;
+
+    @Autowired
+    public SearchIndexRunner(BookRepository bookRepository, List<BookIndex> bookIndexes) {
+        this.bookRepository = bookRepository;
+        this.bookIndexes = bookIndexes;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        logger.info("Book indexes built with {} books", rebuild());
+    }
+
+    /**
+     * Rebuilds every book index reading the books only once, page by page in ID order.
+     *
+     * @return The number of books indexed.
+     */
+    public long rebuild() {
+        bookIndexes.forEach(BookIndex::clear);
+
+        long indexed = 0;
+        long lastId = 0;
+        List<Book> books;
+        do {
+            books = bookRepository.findNextById(lastId, PageRequest.of(0, PAGE_SIZE));
+            for (Book book : books) {
+                bookIndexes.forEach(index -> index.add(book));
+                lastId = book.getId();
+            }
+            indexed += books.size();
+        } while (books.size() == PAGE_SIZE);
+
+        bookIndexes.forEach(BookIndex::commit);
+        return indexed;
+    }
+}
@@ -14,10 +14,13 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
 import javax.validation.constraints.Size;
+import java.util.List;
 import java.util.Map;
 
 @Validated
@@ -135,6 +138,129 @@ public class BookController {
         return ResponseEntity.ok(bookService.findAll(keyword, category, publisher, releases, selection, sort, page, size));
     }
 
+    @GetMapping("/scroll")
+    @ApiOperation(value = "Scroll books", notes = "Returns books after a cursor, whether filtered, ordered, or all. " +
+            "Deep pages are as fast as the first one, but the total of books is not returned")
+    @ResponseStatus(HttpStatus.OK)
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 200, message = "Books found successfully", response = CursorPageDTO.class),
+                    @ApiResponse(code = 400, message = "Invalid cursor or size", response = Map.class)
+            }
+    )
+    public ResponseEntity<CursorPageDTO<BookRespDTO>> findAllByCursor(
+            @RequestParam(required = false)
+            @Size(min = 1)
+            @ApiParam(
+                    name = "keyword",
+                    type = "String",
+                    value = "keyword to search in title, description, authors or publisher",
+                    example = "Harry Potter")
+                    String keyword,
+
+            @RequestParam(required = false)
+            @Size(min = 3)
+            @ApiParam(
+                    name = "category",
+                    type = "String",
+                    value = "category by which it is filtered",
+                    example = "Fiction")
+                    String category,
+
+            @RequestParam(required = false)
+            @Size(min = 3)
+            @ApiParam(
+                    name = "publisher",
+                    type = "String",
+                    value = "publisher by which it is filtered",
+                    example = "HarperCollins")
+                    String publisher,
+
+            @RequestParam(required = false)
+            @ApiParam(
+                    name = "releases",
+                    type = "boolean",
+                    value = "to obtain latest releases",
+                    example = "true")
+                    boolean releases,
+
+            @RequestParam(required = false)
+            @Size(min = 3)
+            @ApiParam(
+                    name = "selection",
+                    type = "String",
+                    value = "selection type",
+                    example = "newer",
+                    allowableValues = "newer,older")
+            @Pattern(regexp = "newer|older", message = "selection value must be 'newer' or 'older'")
+                    String selection,
+
+            @RequestParam(required = false)
+            @Size(min = 3)
+            @ApiParam(
+                    name = "sort",
+                    type = "String",
+                    value = "sort type",
+                    example = "asc",
+                    allowableValues = "asc,desc")
+            @Pattern(regexp = "asc|desc", message = "sort value must be 'asc' or 'desc'")
+                    String sort,
+
+            @RequestParam(required = false)
+            @ApiParam(
+                    name = "cursor",
+                    type = "String",
+                    value = "next_cursor of the previous response, absent for the first call")
+                    String cursor,
+
+            @RequestParam
+            @Positive
+            @ApiParam(
+                    name = "size",
+                    type = "short",
+                    value = "number of books to return",
+                    example = "10",
+                    required = true)
+            short size
+    ) {
+        return ResponseEntity.ok(bookService.findAllByCursor(keyword, category, publisher, releases, selection, sort,
+                cursor, size));
+    }
+
+    @GetMapping("/suggest")
+    @ApiOperation(value = "Suggest searches", notes = "Returns titles, authors and publishers having a word that " +
+            "starts with the typed text")
+    @ResponseStatus(HttpStatus.OK)
+    @ApiResponses(
+            value = {
+                    @ApiResponse(code = 200, message = "Suggestions found successfully", response = SuggestionDTO.class),
+                    @ApiResponse(code = 400, message = "Empty text or invalid limit", response = Map.class)
+            }
+    )
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam
+            @NotBlank
+            @ApiParam(
+                    name = "q",
+                    type = "String",
+                    value = "text typed so far",
+                    example = "harry pot",
+                    required = true)
+                    String q,
+
+            @RequestParam(defaultValue = "10")
+            @Positive
+            @Max(20)
+            @ApiParam(
+                    name = "limit",
+                    type = "int",
+                    value = "maximum number of suggestions",
+                    example = "10")
+                    int limit
+    ) {
+        return ResponseEntity.ok(bookService.suggest(q, limit));
+    }
+
     @GetMapping("/{id}")
     @ApiOperation(value = "Get book by ID", notes = "Returns a book by ID")
     @ResponseStatus(HttpStatus.OK)
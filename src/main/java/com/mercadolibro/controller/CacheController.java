@@ -0,0 +1,34 @@
+package com.mercadolibro.controller;
+
+import com.mercadolibro.dto.CacheStatsDTO;
+import com.mercadolibro.service.CacheService;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+    private final CacheService cacheService;
+
+    @Autowired
+    public CacheController(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    @GetMapping("/stats")
+    @ApiOperation(value = "Get cache statistics", notes = "Returns hit, miss and eviction statistics of every named cache")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Cache statistics retrieved successfully", response = CacheStatsDTO.class)
+    })
+    public ResponseEntity<List<CacheStatsDTO>> getStats() {
+        return ResponseEntity.ok(cacheService.getStats());
+    }
+}
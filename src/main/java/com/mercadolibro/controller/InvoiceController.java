@@ -3,19 +3,28 @@ package com.mercadolibro.controller;
 import com.mercadolibro.dto.*;
 import com.mercadolibro.entity.InvoiceRequest;
 import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.service.InvoiceExportService;
 import com.mercadolibro.service.InvoiceRequestService;
+import com.mercadolibro.service.PreferenceService;
+import com.mercadolibro.service.StockHistoryService;
+import com.mercadolibro.service.analytics.SalesMetric;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,6 +34,15 @@ public class InvoiceController {
     @Autowired
     InvoiceRequestService invoiceRequestService;
 
+    @Autowired
+    InvoiceExportService invoiceExportService;
+
+    @Autowired
+    PreferenceService preferenceService;
+
+    @Autowired
+    StockHistoryService stockHistoryService;
+
     @PostMapping
     public ResponseEntity<InvoiceRequestDTO> save(@RequestBody InvoiceRequest invoiceRequest) {
         return ResponseEntity.ok(invoiceRequestService.save(invoiceRequest));
@@ -43,24 +61,62 @@ public class InvoiceController {
         return ResponseEntity.status(HttpStatus.CREATED).body(invoiceRequestService.processPayment(id, paymentReqDTO));
     }
 
+    @ApiOperation(value = "Get the MercadoPago preference of an invoice", notes = "The preference is created in the background after the invoice, and is PENDING until then.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Preference status retrieved successfully"),
+            @ApiResponse(code = 404, message = "Invoice not found")
+    })
+    @GetMapping("/{id}/preference")
+    public ResponseEntity<PreferenceStatusDTO> getPreferenceStatus(@PathVariable UUID id) {
+        return ResponseEntity.ok(preferenceService.getStatus(id));
+    }
+
+    @ApiOperation(value = "Create the MercadoPago preference of an invoice again after it failed")
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "Preference requested again"),
+            @ApiResponse(code = 404, message = "Invoice not found"),
+            @ApiResponse(code = 409, message = "Preference has not failed")
+    })
+    @PostMapping("/{id}/preference")
+    public ResponseEntity<PreferenceStatusDTO> retryPreference(@PathVariable UUID id) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(preferenceService.retryPreference(id));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<InvoiceSearchDTO> findById(@PathVariable UUID id) {
-        return ResponseEntity.ok(invoiceRequestService.findById(id));
+    public ResponseEntity<InvoiceSearchDTO> findById(@PathVariable UUID id, @RequestParam(required = false) List<String> expand) {
+        return ResponseEntity.ok(invoiceRequestService.findById(id, InvoiceExpand.of(expand)));
     }
 
     @GetMapping("")
-    public ResponseEntity<List<InvoiceSearchDTO>> findAll() {
-        return ResponseEntity.ok(invoiceRequestService.findAll());
+    @ApiOperation(value = "List every invoice", notes = "Streams every invoice with its items as a JSON array, use /all to read them by pages.")
+    public void findAll(HttpServletResponse response) throws IOException {
+        response.setContentType(ExportFormat.JSON.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        invoiceExportService.export(ExportFormat.JSON, response.getWriter());
+    }
+
+    @GetMapping(value = "", params = "format")
+    @ApiOperation(value = "Export every invoice", notes = "Streams every invoice with its items, as a JSON array (json), one JSON object per line (ndjson) or one CSV row per item (csv).")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Invoices exported successfully"),
+            @ApiResponse(code = 400, message = "Unsupported format")
+    })
+    public void export(@RequestParam String format, HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=invoices." + exportFormat.getExtension());
+        invoiceExportService.export(exportFormat, response.getWriter());
     }
 
     @GetMapping("/all")
-    public ResponseEntity<PageDTO<InvoiceSearchDTO>> findAll(@RequestParam int page, @RequestParam int size) {
-        return ResponseEntity.ok(invoiceRequestService.findAll(page, size));
+    public ResponseEntity<PageDTO<InvoiceSearchDTO>> findAll(@RequestParam int page, @RequestParam int size, @RequestParam(required = false) List<String> expand) {
+        return ResponseEntity.ok(invoiceRequestService.findAll(page, size, InvoiceExpand.of(expand)));
     }
 
     @GetMapping("/userid/{userId}")
-    public ResponseEntity<PageDTO<InvoiceSearchDTO>> findByUserId(@PathVariable Long userId , @RequestParam int page, @RequestParam int size) {
-        return ResponseEntity.ok(invoiceRequestService.findByUserId(userId, page, size));
+    public ResponseEntity<PageDTO<InvoiceSearchDTO>> findByUserId(@PathVariable Long userId , @RequestParam int page, @RequestParam int size, @RequestParam(required = false) List<String> expand) {
+        return ResponseEntity.ok(invoiceRequestService.findByUserId(userId, page, size, InvoiceExpand.of(expand)));
     }
 
     @GetMapping("/bestsellers/list")
@@ -93,6 +149,21 @@ public class InvoiceController {
         return ResponseEntity.ok(invoiceRequestService.findSalesByPaymentType(page, size));
     }
 
+    @GetMapping("/sales")
+    @ApiOperation(value = "Get the sales of the paid invoices by book, category, author, payment method or month", notes = "Returns a paginated list of the invoices, units sold and revenue of each key, sorted by the given metric from the highest down, or by month from the latest back. Both dates of the range are optional and inclusive.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Sales retrieved successfully", response = PageDTO.class),
+            @ApiResponse(code = 400, message = "Unsupported dimension or metric, or invalid date range")
+    })
+    public ResponseEntity<PageDTO<SalesSummaryDTO>> getSales(@RequestParam String dimension,
+                                                             @RequestParam(defaultValue = "revenue") String sort,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                             @RequestParam(defaultValue = "0") @PositiveOrZero int page,
+                                                             @RequestParam(defaultValue = "10") @Positive int size) {
+        return ResponseEntity.ok(invoiceRequestService.getSales(SalesDimension.of(dimension), SalesMetric.of(sort), from, to, page, size));
+    }
+
     @GetMapping("/monthlystock")
     @ApiOperation(value = "Get monthly stock", notes = "Returns a paginated list of monthly stock data.")
     @ApiResponses(value = {
@@ -100,28 +171,6 @@ public class InvoiceController {
             @ApiResponse(code = 400, message = "Bad request")
     })
     public ResponseEntity<PageDTO<MonthlyStockDTO>> getMonthlyStock(@RequestParam(defaultValue = "0") @PositiveOrZero int page, @RequestParam(defaultValue = "10") @Positive int size) {
-        List<MonthlyStockDTO> monthlyStockList = Arrays.asList(
-                new MonthlyStockDTO("2023", "Enero", 100L),
-                new MonthlyStockDTO("2023", "Febrero", 120L),
-                new MonthlyStockDTO("2023", "Marzo", 90L),
-                new MonthlyStockDTO("2023", "Abril", 110L),
-                new MonthlyStockDTO("2023", "Mayo", 80L),
-                new MonthlyStockDTO("2023", "Junio", 130L),
-                new MonthlyStockDTO("2023", "Julio", 95L),
-                new MonthlyStockDTO("2023", "Agosto", 115L),
-                new MonthlyStockDTO("2023", "Septiembre", 75L),
-                new MonthlyStockDTO("2023", "Octubre", 105L),
-                new MonthlyStockDTO("2023", "Noviembre", 88L),
-                new MonthlyStockDTO("2023", "Diciembre", 125L)
-        );
-
-        int start = page * size;
-        int end = Math.min((start + size), monthlyStockList.size());
-
-        List<MonthlyStockDTO> content = monthlyStockList.subList(start, end);
-
-        PageDTO<MonthlyStockDTO> pageDTO = new PageDTO<>(content, content.size(), (long) monthlyStockList.size(), page, size);
-
-        return ResponseEntity.ok(pageDTO);
+        return ResponseEntity.ok(stockHistoryService.getMonthlyStock(page, size));
     }
 }
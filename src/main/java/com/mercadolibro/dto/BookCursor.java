@@ -0,0 +1,28 @@
+package com.mercadolibro.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Position of the last book of a keyset page. It is sent to clients as an opaque Base64 token and holds the values
+ * of every sort key of the listing, plus the ID that breaks ties.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookCursor {
+    @JsonProperty("t")
+    private String title;
+
+    @JsonProperty("d")
+    private LocalDate publishedDate;
+
+    @JsonProperty("i")
+    private Long id;
+}
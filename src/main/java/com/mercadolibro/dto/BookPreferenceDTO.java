@@ -0,0 +1,8 @@
+package com.mercadolibro.dto;
+
+public interface BookPreferenceDTO {
+    Long getId();
+    String getTitle();
+    String getDescription();
+    String getImageUrl();
+}
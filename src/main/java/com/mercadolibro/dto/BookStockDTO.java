@@ -0,0 +1,8 @@
+package com.mercadolibro.dto;
+
+public interface BookStockDTO {
+    Long getId();
+    String getTitle();
+    Integer getStock();
+    Long getVersion();
+}
@@ -0,0 +1,41 @@
+package com.mercadolibro.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ApiModel(description = "Statistics of a named cache", value = "CacheStats")
+public class CacheStatsDTO {
+    @ApiModelProperty(value = "Name of the cache", example = "books")
+    private String name;
+
+    @JsonProperty("estimated_size")
+    @ApiModelProperty(value = "Approximate number of entries", example = "120")
+    private Long estimatedSize;
+
+    @JsonProperty("hit_count")
+    @ApiModelProperty(value = "Lookups that returned a cached value", example = "950")
+    private Long hitCount;
+
+    @JsonProperty("miss_count")
+    @ApiModelProperty(value = "Lookups that had to load the value", example = "50")
+    private Long missCount;
+
+    @JsonProperty("hit_rate")
+    @ApiModelProperty(value = "Ratio of hits over total lookups", example = "0.95")
+    private Double hitRate;
+
+    @JsonProperty("eviction_count")
+    @ApiModelProperty(value = "Entries evicted by size or expiration", example = "12")
+    private Long evictionCount;
+}
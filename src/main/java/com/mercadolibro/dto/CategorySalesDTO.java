@@ -1,6 +1,18 @@
 package com.mercadolibro.dto;
 
+import lombok.Value;
+
 public interface CategorySalesDTO {
     String getCategory_name();
     Long getSales();
+
+    static CategorySalesDTO of(String categoryName, Long sales) {
+        return new Values(categoryName, sales);
+    }
+
+    @Value
+    class Values implements CategorySalesDTO {
+        String category_name;
+        Long sales;
+    }
 }
@@ -0,0 +1,27 @@
+package com.mercadolibro.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@ApiModel(description = "Model for a keyset page of elements", value = "CursorPage")
+public class CursorPageDTO <DTO>{
+
+    @ApiModelProperty(value = "List of elements", required = true)
+    List<DTO> content;
+    @JsonProperty("next_cursor")
+    @ApiModelProperty(value = "Cursor of the next page, null when this is the last page", example = "eyJ0IjoiRWwgaW5tb3J0YWwiLCJpIjo0Mn0")
+    String nextCursor;
+    @ApiModelProperty(value = "Page size", required = true)
+    Integer pageSize;
+
+    public CursorPageDTO(List<DTO> content, String nextCursor, Integer pageSize) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.pageSize = pageSize;
+    }
+}
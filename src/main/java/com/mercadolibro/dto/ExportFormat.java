@@ -0,0 +1,29 @@
+package com.mercadolibro.dto;
+
+import lombok.Getter;
+
+@Getter
+public enum ExportFormat {
+    JSON("application/json", "json"),
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    public static final String UNSUPPORTED_FORMAT_MESSAGE = "Unsupported export format '%s', expected json, ndjson or csv";
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public static ExportFormat of(String format) {
+        for (ExportFormat exportFormat : values()) {
+            if (exportFormat.extension.equalsIgnoreCase(format)) {
+                return exportFormat;
+            }
+        }
+        throw new IllegalArgumentException(String.format(UNSUPPORTED_FORMAT_MESSAGE, format));
+    }
+}
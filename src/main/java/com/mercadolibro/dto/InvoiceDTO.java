@@ -83,6 +83,9 @@ public class InvoiceDTO {
     @JsonProperty("preference_id")
     private String preferenceId;
 
+    @JsonProperty("preference_status")
+    private PreferenceStatus preferenceStatus;
+
     @Getter
     private enum ShippingMethod {
         PICK_UP, CORREO_ARGENTINO
@@ -0,0 +1,29 @@
+package com.mercadolibro.dto;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Details that can be added to the invoices on request, each costing one extra query per page.
+ */
+public enum InvoiceExpand {
+    BOOK, USER;
+
+    public static final String UNSUPPORTED_EXPAND_MESSAGE = "Unsupported expand '%s', expected book or user";
+
+    public static Set<InvoiceExpand> of(Collection<String> values) {
+        Set<InvoiceExpand> expand = EnumSet.noneOf(InvoiceExpand.class);
+        if (values == null) {
+            return expand;
+        }
+        for (String value : values) {
+            try {
+                expand.add(InvoiceExpand.valueOf(value.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format(UNSUPPORTED_EXPAND_MESSAGE, value));
+            }
+        }
+        return expand;
+    }
+}
@@ -90,6 +90,12 @@ public class InvoiceSearchDTO {
     @Column(name = "shipping_method")
     private ShippingMethod shippingMethod;
 
+    @JsonProperty("preference_id")
+    private String preferenceId;
+
+    @JsonProperty("preference_status")
+    private PreferenceStatus preferenceStatus;
+
     @Getter
     private enum ShippingMethod {
         PICK_UP, CORREO_ARGENTINO
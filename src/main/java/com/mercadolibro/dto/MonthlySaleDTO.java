@@ -1,9 +1,21 @@
 package com.mercadolibro.dto;
 
+import lombok.Value;
+
 public interface MonthlySaleDTO {
 
     Integer getYear();
     Integer getMonth();
     Integer getSales();
 
+    static MonthlySaleDTO of(Integer year, Integer month, Integer sales) {
+        return new Values(year, month, sales);
+    }
+
+    @Value
+    class Values implements MonthlySaleDTO {
+        Integer year;
+        Integer month;
+        Integer sales;
+    }
 }
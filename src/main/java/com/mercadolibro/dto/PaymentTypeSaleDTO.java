@@ -1,10 +1,20 @@
 package com.mercadolibro.dto;
 
 import io.swagger.annotations.ApiModel;
+import lombok.Value;
 
 @ApiModel(description = "Total sales by payment type", value = "PaymentTypeSaleDTO")
 public interface PaymentTypeSaleDTO {
     PaymentMethod getPayment_type();
     Long getSales();
-}
 
+    static PaymentTypeSaleDTO of(PaymentMethod paymentType, Long sales) {
+        return new Values(paymentType, sales);
+    }
+
+    @Value
+    class Values implements PaymentTypeSaleDTO {
+        PaymentMethod payment_type;
+        Long sales;
+    }
+}
@@ -0,0 +1,5 @@
+package com.mercadolibro.dto;
+
+public enum PreferenceStatus {
+    PENDING, CREATED, FAILED
+}
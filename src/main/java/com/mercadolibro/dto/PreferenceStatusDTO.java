@@ -0,0 +1,24 @@
+package com.mercadolibro.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PreferenceStatusDTO {
+    @JsonProperty("invoice_id")
+    private UUID invoiceId;
+
+    @JsonProperty("status")
+    private PreferenceStatus status;
+
+    @JsonProperty("preference_id")
+    private String preferenceId;
+}
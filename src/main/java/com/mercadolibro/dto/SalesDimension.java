@@ -0,0 +1,20 @@
+package com.mercadolibro.dto;
+
+/**
+ * What the sales of the dashboards can be added up by.
+ */
+public enum SalesDimension {
+    BOOK, CATEGORY, AUTHOR, PAYMENT_METHOD, MONTH;
+
+    public static final String UNSUPPORTED_DIMENSION_MESSAGE =
+            "Unsupported sales dimension '%s', expected book, category, author, payment_method or month";
+
+    public static SalesDimension of(String dimension) {
+        for (SalesDimension salesDimension : values()) {
+            if (salesDimension.name().equalsIgnoreCase(dimension)) {
+                return salesDimension;
+            }
+        }
+        throw new IllegalArgumentException(String.format(UNSUPPORTED_DIMENSION_MESSAGE, dimension));
+    }
+}
@@ -0,0 +1,30 @@
+package com.mercadolibro.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesSummaryDTO {
+    /* The book ID, category name, author name, payment method or month */
+    @JsonProperty("key")
+    private String key;
+
+    /* The title of the book, and null for the other dimensions */
+    @JsonProperty("name")
+    private String name;
+
+    @JsonProperty("invoices")
+    private long invoices;
+
+    @JsonProperty("units_sold")
+    private long unitsSold;
+
+    @JsonProperty("revenue")
+    private double revenue;
+}
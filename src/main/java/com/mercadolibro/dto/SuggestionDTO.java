@@ -0,0 +1,19 @@
+package com.mercadolibro.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel(description = "Search suggestion", value = "Suggestion")
+public class SuggestionDTO {
+    @ApiModelProperty(value = "Suggested text", example = "Harry Potter y la piedra filosofal")
+    private String text;
+
+    @ApiModelProperty(value = "Book field the text comes from", example = "TITLE")
+    private SuggestionType type;
+}
@@ -0,0 +1,10 @@
+package com.mercadolibro.dto;
+
+import io.swagger.annotations.ApiModel;
+
+@ApiModel(description = "Book field a suggestion comes from", value = "SuggestionType")
+public enum SuggestionType {
+    TITLE,
+    AUTHOR,
+    PUBLISHER
+}
@@ -21,7 +21,10 @@ import java.util.Set;
 @Getter
 @Setter
 @Entity
-@Table(name = "book")
+@Table(name = "book", indexes = {
+        @Index(name = "idx_book_created_at", columnList = "created_at"),
+        @Index(name = "idx_book_units_sold", columnList = "units_sold")
+})
 @AllArgsConstructor
 @NoArgsConstructor
 @TypeDef(name = "json", typeClass = JsonStringType.class)
@@ -69,9 +72,22 @@ public class Book {
     @Column(name = "currency_code")
     private String currencyCode;
 
-    @Column
+    /* Only set on insert, every later change is an UPDATE that bumps the stock version, never a stale entity save */
+    @Column(updatable = false)
     private Integer stock;
 
+    /* Bumped by every stock decrement so concurrent checkouts notice a stale read, entity saves never write it */
+    @JsonIgnore
+    @Column(name = "stock_version", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private Long stockVersion;
+
+    /* Units sold in paid invoices, kept up to date on every payment so the best sellers are a single indexed read */
+    @JsonIgnore
+    @Column(name = "units_sold", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private Long unitsSold;
+
     @JsonProperty("created_at")
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
@@ -80,7 +96,8 @@ public class Book {
     @JoinTable(
             name = "book_categories",
             joinColumns = @JoinColumn(name = "book_id"),
-            inverseJoinColumns = @JoinColumn(name = "category_id")
+            inverseJoinColumns = @JoinColumn(name = "category_id"),
+            indexes = @Index(name = "idx_book_categories_category_book", columnList = "category_id, book_id")
     )
     private Set<Category> categories;
 
@@ -0,0 +1,36 @@
+package com.mercadolibro.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * One row per author of a book, projected from the JSON authors column of the book so authors can be grouped and
+ * counted with an index. It is maintained by BookAuthorProjection on every book write, just before the book
+ * transaction commits; there is no foreign key to the book since the book row is already deleted by then, and its
+ * authors are deleted in the same transaction. Names are unique per book ignoring case and accents, as the
+ * collation of the unique key compares them.
+ */
+@Builder
+@Getter
+@Setter
+@Entity
+@Table(
+        name = "book_authors",
+        uniqueConstraints = @UniqueConstraint(name = "uk_book_authors_book_name", columnNames = {"book_id", "name"}),
+        indexes = @Index(name = "idx_book_authors_name", columnList = "name")
+)
+@AllArgsConstructor
+@NoArgsConstructor
+@Cacheable(false)
+public class BookAuthor {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(nullable = false)
+    private String name;
+}
@@ -12,7 +12,7 @@ import java.util.Set;
 @Getter
 @Setter
 @Entity
-@Table(name = "category")
+@Table(name = "category", indexes = @Index(name = "idx_category_name", columnList = "name"))
 @AllArgsConstructor
 @NoArgsConstructor
 @Cacheable(false)
@@ -47,12 +47,12 @@ public class Category {
                 && Objects.equals(name, category.name)
                 && Objects.equals(status, category.status)
                 && Objects.equals(description, category.description)
-                && Objects.equals(imageLink, category.imageLink)
-                && Objects.equals(books, category.books);
+                && Objects.equals(imageLink, category.imageLink);
     }
 
+    // books is left out on purpose: hashing it loads every book of the category
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, status, description, imageLink, books);
+        return Objects.hash(id, name, status, description, imageLink);
     }
 }
@@ -2,6 +2,7 @@ package com.mercadolibro.entity;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.mercadolibro.dto.PaymentMethod;
+import com.mercadolibro.dto.PreferenceStatus;
 import com.vladmihalcea.hibernate.type.json.JsonStringType;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -18,7 +19,7 @@ import java.util.UUID;
 @Entity
 @Getter
 @Setter
-@Table(name = "invoice")
+@Table(name = "invoice", indexes = @Index(name = "idx_invoice_date_created", columnList = "date_created"))
 @AllArgsConstructor
 @NoArgsConstructor
 @TypeDef(name = "json", typeClass = JsonStringType.class)
@@ -94,6 +95,15 @@ public class Invoice {
 
     private Boolean paid;
 
+    @JsonProperty(value = "preference_id", access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "preference_id")
+    private String preferenceId;
+
+    @JsonProperty(value = "preference_status", access = JsonProperty.Access.READ_ONLY)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "preference_status", length = 16)
+    private PreferenceStatus preferenceStatus;
+
     @Getter
     private enum ShippingMethod {
         PICK_UP, CORREO_ARGENTINO
@@ -3,6 +3,8 @@ package com.mercadolibro.entity;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
@@ -11,12 +13,20 @@ import java.util.UUID;
 @Entity
 @Getter
 @Setter
-@Table(name = "invoice_item")
+@Table(name = "invoice_item", indexes = @Index(name = "idx_invoice_item_invoice", columnList = "invoice_id"))
 @Cacheable(false)
 public class InvoiceItem {
 
+    /* IDs are handed out in blocks instead of by the database on every insert, so Hibernate can batch the inserts of
+       an invoice. MySQL has no sequences, so Hibernate backs it with the invoice_item_seq table */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_item_seq")
+    @GenericGenerator(name = "invoice_item_seq", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                    @Parameter(name = "sequence_name", value = "invoice_item_seq"),
+                    @Parameter(name = "increment_size", value = "50"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")
+            })
     private Long id;
 
     @JsonProperty("book_id")
@@ -0,0 +1,66 @@
+package com.mercadolibro.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Sales of paid invoices added up by day or by month, in total or by book, category, author or payment method. The rows
+ * are kept up to date as invoices are paid, so the sales dashboards never read the invoices themselves.
+ */
+@Builder
+@Getter
+@Setter
+@Entity
+@Table(
+        name = "sales_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_sales_rollup",
+                columnNames = {"granularity", "period_start", "dimension", "dimension_key"}),
+        // The rebuild of a month reads and deletes its rows by period alone, which the unique key can not find
+        indexes = @Index(name = "idx_sales_rollup_period_start", columnList = "period_start")
+)
+@AllArgsConstructor
+@NoArgsConstructor
+@Cacheable(false)
+public class SalesRollup {
+    public static final String TOTAL_KEY = "";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Granularity granularity;
+
+    /* The day itself, or the first day of the month */
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Dimension dimension;
+
+    /* The book ID, category name, author name or payment method, and empty for the totals */
+    @Column(name = "dimension_key", nullable = false)
+    private String dimensionKey;
+
+    /* Paid invoices that have a sale of the dimension */
+    @Column(nullable = false)
+    private long invoices;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false)
+    private double revenue;
+
+    public enum Granularity {
+        DAY, MONTH
+    }
+
+    public enum Dimension {
+        TOTAL, BOOK, CATEGORY, PAYMENT_METHOD, AUTHOR
+    }
+}
@@ -0,0 +1,26 @@
+package com.mercadolibro.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * The single row rebuilds of the sales rollups lock, so two of them never correct the same month at once, even
+ * from different instances. Payments never touch it. It also records the version of the rollups last rebuilt.
+ */
+@Builder
+@Getter
+@Setter
+@Entity
+@Table(name = "sales_rollup_state")
+@AllArgsConstructor
+@NoArgsConstructor
+@Cacheable(false)
+public class SalesRollupState {
+    public static final long ID = 1;
+
+    @Id
+    private Long id;
+
+    private int version;
+}
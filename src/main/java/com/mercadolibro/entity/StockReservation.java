@@ -0,0 +1,46 @@
+package com.mercadolibro.entity;
+
+import lombok.*;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Units of a book held for an unpaid invoice. The units are taken from the stock of the book when the invoice is
+ * created; paying the invoice consumes the reservation, while rejecting the payment or letting it expire gives the
+ * units back.
+ */
+@Builder
+@Getter
+@Setter
+@Entity
+@Table(
+        name = "stock_reservation",
+        indexes = {
+                @Index(name = "idx_stock_reservation_invoice", columnList = "invoice_id"),
+                @Index(name = "idx_stock_reservation_expires_at", columnList = "expires_at")
+        }
+)
+@AllArgsConstructor
+@NoArgsConstructor
+@Cacheable(false)
+public class StockReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "invoice_id", nullable = false, columnDefinition = "VARCHAR(36)")
+    @Type(type = "uuid-char")
+    private UUID invoiceId;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
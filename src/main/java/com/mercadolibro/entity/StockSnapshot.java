@@ -0,0 +1,37 @@
+package com.mercadolibro.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * The stock of a book in a month, as last seen by the stock snapshot job. The row of the current month is
+ * overwritten on every run, so once the month is over it holds the stock the book closed it with.
+ */
+@Builder
+@Getter
+@Setter
+@Entity
+@Table(
+        name = "stock_snapshot",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stock_snapshot", columnNames = {"period_start", "book_id"})
+)
+@AllArgsConstructor
+@NoArgsConstructor
+@Cacheable(false)
+public class StockSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /* The first day of the month */
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(nullable = false)
+    private int stock;
+}
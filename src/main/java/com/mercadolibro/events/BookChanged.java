@@ -0,0 +1,25 @@
+package com.mercadolibro.events;
+
+import com.mercadolibro.entity.Book;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a book is created, updated or deleted. It carries the book as it was before and after the change,
+ * so cached queries that matched either version can be evicted.
+ */
+@Getter
+public class BookChanged extends ApplicationEvent {
+    private final Long bookId;
+    /* Null when the book has just been created */
+    private final Book before;
+    /* Null when the book has been deleted */
+    private final Book after;
+
+    public BookChanged(Long bookId, Book before, Book after) {
+        super(bookId);
+        this.bookId = bookId;
+        this.before = before;
+        this.after = after;
+    }
+}
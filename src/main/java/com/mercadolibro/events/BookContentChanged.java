@@ -0,0 +1,20 @@
+package com.mercadolibro.events;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collection;
+
+/**
+ * Published when books change in a way that does not affect filtering or sorting, such as stock or images.
+ * Only the cached entries that contain these books need to be evicted.
+ */
+@Getter
+public class BookContentChanged extends ApplicationEvent {
+    private final Collection<Long> bookIds;
+
+    public BookContentChanged(Collection<Long> bookIds) {
+        super(bookIds);
+        this.bookIds = bookIds;
+    }
+}
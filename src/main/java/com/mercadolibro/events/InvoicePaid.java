@@ -0,0 +1,18 @@
+package com.mercadolibro.events;
+
+import com.mercadolibro.dto.InvoiceSearchDTO;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published inside the transaction that marks an invoice as paid, with the invoice and its items.
+ */
+@Getter
+public class InvoicePaid extends ApplicationEvent {
+    private final InvoiceSearchDTO invoice;
+
+    public InvoicePaid(InvoiceSearchDTO invoice) {
+        super(invoice.getId());
+        this.invoice = invoice;
+    }
+}
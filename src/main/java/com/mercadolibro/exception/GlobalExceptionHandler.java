@@ -171,4 +171,11 @@ public class GlobalExceptionHandler {
 
         return ResponseEntity.status(e.getCode()).body(errorResponse);
     }
+
+    @ExceptionHandler({CircuitOpenException.class, BulkheadFullException.class})
+    public ResponseEntity<ErrorResponseDTO> handleUnavailableDependency(RuntimeException e) {
+        ErrorResponseDTO errorResponse = new ErrorResponseDTO(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE.value());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+    }
 }
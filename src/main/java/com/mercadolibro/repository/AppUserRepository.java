@@ -1,11 +1,20 @@
 package com.mercadolibro.repository;
 
+import com.mercadolibro.dto.ClientDTO;
 import com.mercadolibro.entity.AppUser;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AppUserRepository extends JpaRepository<AppUser, Integer> {
     boolean existsByEmail(String email);
     Optional<AppUser> findByEmail(String email);
+
+    /* Selects only the public details, skipping the password and the eagerly fetched roles */
+    @Query("SELECT new com.mercadolibro.dto.ClientDTO(u.id, u.name, u.lastName, u.email) FROM AppUser u WHERE u.id IN :ids")
+    List<ClientDTO> findClientsByIdIn(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,23 @@
+package com.mercadolibro.repository;
+
+import com.mercadolibro.entity.BookAuthor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookAuthorRepository extends JpaRepository<BookAuthor, Long> {
+    List<BookAuthor> findByBookId(Long bookId);
+
+    /* Any row, telling whether the projection was filled without counting it */
+    Optional<BookAuthor> findFirstByOrderByIdAsc();
+
+    /* Pairs of book ID and author name */
+    @Query("SELECT a.bookId, a.name FROM BookAuthor a WHERE a.bookId IN :bookIds")
+    List<Object[]> findAuthorNames(@Param("bookIds") Collection<Long> bookIds);
+}
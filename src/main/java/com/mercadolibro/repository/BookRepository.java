@@ -1,23 +1,27 @@
 package com.mercadolibro.repository;
 
 import com.mercadolibro.dto.AuthorBookCountDTO;
+import com.mercadolibro.dto.BookPreferenceDTO;
+import com.mercadolibro.dto.BookStockDTO;
 import com.mercadolibro.entity.Book;
 import lombok.NonNull;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book> {
+public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificationExecutor<Book>, BookRepositoryCustom {
     boolean existsByIsbn(String isbn);
 
     boolean existsByIsbnAndIdNot(String isbn, Long id);
@@ -26,12 +30,69 @@ public interface BookRepository extends JpaRepository<Book, Long>, JpaSpecificat
     @EntityGraph(attributePaths = {"categories", "images", "authors"})
     Optional<Book> findById(@Param("id") @NonNull Long id);
 
-    @NonNull
-    @EntityGraph(attributePaths = {"categories", "images", "authors"})
-    Page<Book> findAll(Specification<Book> spec, @NonNull Pageable pageable);
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /* The next books after an ID, so a full scan seeks by the primary key instead of skipping an offset */
+    @Query("SELECT b FROM Book b WHERE b.id > :afterId ORDER BY b.id")
+    List<Book> findNextById(@Param("afterId") Long afterId, Pageable pageable);
+
+    /* Everything a checkout preference shows of each book, with the first image, in a single query */
+    @Query("SELECT b.id AS id, b.title AS title, b.description AS description, " +
+            "(SELECT i.url FROM BookImage i WHERE i.id = (SELECT MIN(i2.id) FROM BookImage i2 WHERE i2.book = b)) AS imageUrl " +
+            "FROM Book b WHERE b.id IN :ids")
+    List<BookPreferenceDTO> findPreferenceBooks(@Param("ids") Collection<Long> ids);
+
+    /* Pairs of book ID and category name, one per category of each book */
+    @Query("SELECT b.id, c.name FROM Book b JOIN b.categories c WHERE b.id IN :ids")
+    List<Object[]> findCategoryNames(@Param("ids") Collection<Long> ids);
+
+    /* Pairs of book ID and title */
+    @Query("SELECT b.id, b.title FROM Book b WHERE b.id IN :ids")
+    List<Object[]> findTitles(@Param("ids") Collection<Long> ids);
+
+    /* Fetches the categories in the same query, they would otherwise be loaded with one query per book */
+    @EntityGraph(attributePaths = {"categories"})
+    List<Book> findByIdIn(Collection<Long> ids);
+
+    @Query("SELECT b.id AS id, b.title AS title, b.stock AS stock, b.stockVersion AS version FROM Book b " +
+            "WHERE b.id IN :ids")
+    List<BookStockDTO> findStocks(@Param("ids") Collection<Long> ids);
+
+    /* Only succeeds if the stock did not change since it was read with the given version */
+    @Modifying
+    @Query("UPDATE Book b SET b.stock = b.stock - :quantity, b.stockVersion = b.stockVersion + 1 " +
+            "WHERE b.id = :id AND b.stockVersion = :version AND b.stock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity, @Param("version") Long version);
+
+    @Modifying
+    @Query("UPDATE Book b SET b.stock = b.stock + :quantity, b.stockVersion = b.stockVersion + 1 WHERE b.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    /* Sets the stock given by an admin, the version bump makes the checkouts that read the previous stock retry */
+    @Modifying
+    @Query("UPDATE Book b SET b.stock = :stock, b.stockVersion = b.stockVersion + 1 WHERE b.id = :id")
+    int setStock(@Param("id") Long id, @Param("stock") Integer stock);
+
+    @Modifying
+    @Query("UPDATE Book b SET b.unitsSold = b.unitsSold + :quantity WHERE b.id = :id")
+    int addUnitsSold(@Param("id") Long id, @Param("quantity") long quantity);
+
+    /* Recounts the units sold of every book from the paid invoices */
+    @Modifying
+    @Query("UPDATE Book b SET b.unitsSold = (SELECT COALESCE(SUM(it.quantity), 0) FROM InvoiceItem it, Invoice i " +
+            "WHERE i.id = it.invoiceId AND it.bookId = b.id AND i.paid = true)")
+    int recountUnitsSold();
+
+    boolean existsByUnitsSoldGreaterThan(long unitsSold);
+
+    /* Walks the units_sold index, the ID breaks ties so pages do not overlap */
+    @Query(value = "SELECT b.id FROM Book b WHERE b.unitsSold > 0 ORDER BY b.unitsSold DESC, b.id",
+            countQuery = "SELECT COUNT(b) FROM Book b WHERE b.unitsSold > 0")
+    Page<Long> findBestSellerIds(Pageable pageable);
 
-    @Query(value = "SELECT REPLACE(JSON_EXTRACT(authors, '$[0].name'), '\"', '') as author, COUNT(*) as total_books FROM book GROUP BY author",
-            countQuery = "SELECT COUNT(DISTINCT JSON_EXTRACT(authors, '$[0].name')) FROM book",
-            nativeQuery = true)
+    /* Reads the book_authors projection, where every co-author of a book has its own indexed row */
+    @Query(value = "SELECT a.name AS author, COUNT(a) AS total_books FROM BookAuthor a GROUP BY a.name ORDER BY a.name",
+            countQuery = "SELECT COUNT(DISTINCT a.name) FROM BookAuthor a")
     Page<AuthorBookCountDTO> findAllAuthors(Pageable pageable);
 }
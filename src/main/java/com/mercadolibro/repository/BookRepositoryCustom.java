@@ -0,0 +1,43 @@
+package com.mercadolibro.repository;
+
+import com.mercadolibro.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface BookRepositoryCustom {
+    /**
+     * Retrieves a page of books with their categories and images. The page is resolved in two phases: first the IDs
+     * of the page and the total count are selected with the specification, limited in SQL, then only those books
+     * are fetched with their collections. Fetching the collections together with the limit would make Hibernate
+     * load the whole filtered result and paginate it in memory.
+     *
+     * @param spec The specification that filters the books.
+     * @param pageable The page number, size and sort being requested.
+     * @return A page of books sorted as requested.
+     */
+    Page<Book> findAll(Specification<Book> spec, Pageable pageable);
+
+    /**
+     * Retrieves the first books matching the specification, without counting the whole result. Meant for keyset
+     * pagination, where the specification itself seeks past the last book of the previous slice, so the offset of
+     * the pageable is ignored.
+     *
+     * @param spec The specification that filters the books.
+     * @param pageable The size and sort of the slice.
+     * @return A slice of books sorted as requested, telling whether more books follow.
+     */
+    Slice<Book> findSlice(Specification<Book> spec, Pageable pageable);
+
+    /**
+     * Retrieves the books with the given IDs with their categories and images, keeping the order of the IDs, such
+     * as the ranking of a full-text search that already filtered and paged them.
+     *
+     * @param rankedIds The IDs of the books, the first one being the best ranked.
+     * @return The books in the ranking order, skipping the IDs of missing books.
+     */
+    List<Book> findAllRanked(List<Long> rankedIds);
+}
@@ -1,9 +1,18 @@
 package com.mercadolibro.repository;
 
 import com.mercadolibro.entity.Category;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
+    /* Category filters resolve the name once, so the book queries only touch book_categories */
+    @Cacheable(value = "categoryIds", key = "#name")
+    @Query("SELECT c.id FROM Category c WHERE c.name = :name")
+    List<Long> findIdsByName(@Param("name") String name);
 }
@@ -4,9 +4,11 @@ import com.mercadolibro.entity.InvoiceItem;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -15,18 +17,21 @@ public interface InvoiceItemRepository extends JpaRepository<InvoiceItem, Long>
 
     List<InvoiceItem> findByInvoiceId(UUID invoiceId);
 
+    List<InvoiceItem> findByInvoiceIdIn(Collection<UUID> invoiceIds);
+
     @Query(value = "SELECT id FROM invoice_item ORDER BY id DESC LIMIT 1", nativeQuery = true)
     Long findLastInsertedId();
 
-    Page<InvoiceItem> findAll(Pageable pageable);
+    /* The MySQL table backing the ID sequence, which must start past the IDs the table had before the sequence */
+    @Modifying
+    @Query(value = "INSERT INTO invoice_item_seq (next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM invoice_item " +
+            "WHERE NOT EXISTS (SELECT 1 FROM invoice_item_seq)", nativeQuery = true)
+    int initIdSequence();
 
-    @Query(value = "SELECT * FROM invoice_item GROUP BY book_id ORDER BY COUNT(*) DESC",
-            countQuery = "SELECT count(*) FROM invoice_item GROUP BY book_id ORDER BY COUNT(*) DESC",
-            nativeQuery = true)
-    List<InvoiceItem> findBestSellersList();
+    @Modifying
+    @Query(value = "UPDATE invoice_item_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 1 FROM invoice_item) " +
+            "WHERE next_val <= (SELECT COALESCE(MAX(id), 0) FROM invoice_item)", nativeQuery = true)
+    int alignIdSequence();
 
-    @Query(value = "SELECT * FROM invoice_item GROUP BY book_id ORDER BY COUNT(*) DESC",
-            countQuery = "SELECT count(*) FROM invoice_item GROUP BY book_id ORDER BY COUNT(*) DESC",
-            nativeQuery = true)
-    Page<InvoiceItem> findBestSellersPage(Pageable pageable);
+    Page<InvoiceItem> findAll(Pageable pageable);
 }
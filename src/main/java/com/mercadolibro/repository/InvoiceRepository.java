@@ -1,18 +1,27 @@
 package com.mercadolibro.repository;
 
-import com.mercadolibro.dto.CategorySalesDTO;
-import com.mercadolibro.dto.MonthlySaleDTO;
-import com.mercadolibro.dto.PaymentTypeSaleDTO;
+import com.mercadolibro.dto.PreferenceStatus;
 import com.mercadolibro.entity.Invoice;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.UUID;
 
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice, UUID> {
@@ -21,6 +30,49 @@ public interface InvoiceRepository extends JpaRepository<Invoice, UUID> {
 
     Page<Invoice> findAll(Pageable pageable);
 
+    /**
+     * Streams every invoice paired with each of its items, or with null if it has none. Rows of the same invoice
+     * are adjacent, and the primary key order lets the database stream them without sorting.
+     * The stream must be read inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT i, it FROM Invoice i LEFT JOIN InvoiceItem it ON it.invoiceId = i.id ORDER BY i.id, it.id")
+    Stream<Object[]> streamAllWithItems();
+
+    @Query("SELECT MIN(i.dateCreated), MAX(i.dateCreated) FROM Invoice i WHERE i.paid = true")
+    List<Object[]> findPaidDateRange();
+
+    /* Same as streamAllWithItems, for the paid invoices created in [start, end), which the date_created index finds */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT i, it FROM Invoice i LEFT JOIN InvoiceItem it ON it.invoiceId = i.id " +
+            "WHERE i.paid = true AND i.dateCreated >= :start AND i.dateCreated < :end " +
+            "ORDER BY i.dateCreated, i.id, it.id")
+    Stream<Object[]> streamPaidWithItems(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    /* Only the first of concurrent payments of the same invoice marks it as paid */
+    @Modifying
+    @Query("UPDATE Invoice i SET i.paid = true WHERE i.id = :id AND (i.paid = false OR i.paid IS NULL)")
+    int markAsPaid(@Param("id") UUID id);
+
+    boolean existsByPaidTrue();
+
+    @Query("SELECT i.id FROM Invoice i WHERE i.paid = true AND i.id IN :ids")
+    List<UUID> findPaidIds(@Param("ids") Collection<UUID> ids);
+
+    /* Moves the preference of an invoice out of the expected status only, so a late result cannot overwrite another */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Invoice i SET i.preferenceStatus = :status, i.preferenceId = :preferenceId " +
+            "WHERE i.id = :id AND i.preferenceStatus = :expected")
+    int updatePreference(@Param("id") UUID id, @Param("expected") PreferenceStatus expected,
+                         @Param("status") PreferenceStatus status, @Param("preferenceId") String preferenceId);
+
     @Query(value = "SELECT address from invoice JOIN user ON invoice.user_id = user.id WHERE user.email = ?1", nativeQuery = true)
     List<String> findInvoicesAddressByUserEmail(String email);
 
@@ -28,27 +80,4 @@ public interface InvoiceRepository extends JpaRepository<Invoice, UUID> {
             countQuery = "SELECT count(*) FROM invoice WHERE user_id = ?1",
             nativeQuery = true)
     Page<Invoice> findByUserId(Long id, Pageable pageable);
-
-    @Query(value = "SELECT YEAR(date_created) as year,MONTH(date_created) as month,count(*) as sales " +
-                "FROM invoice " +
-                "WHERE date_created IS NOT NULL " +
-                "GROUP BY MONTH(date_created) " +
-                "ORDER BY year DESC, month DESC",
-            countQuery = "SELECT count(*) FROM invoice GROUP BY MONTH(date_created)",
-            nativeQuery = true)
-    Page<MonthlySaleDTO> getMonthlySales(Pageable pageable);
-
-    @Query(value = "SELECT category.name as category_name, count(*) as sales" +
-            "            FROM invoice" +
-            "            INNER JOIN invoice_item ON invoice_item.invoice_id = invoice.id" +
-            "            INNER JOIN book ON book.id = invoice_item.book_id" +
-            "            INNER JOIN book_categories ON book_categories.book_id = book.id" +
-            "            INNER JOIN category ON category.id = book_categories.category_id" +
-            "            GROUP BY category.name" +
-            "            ORDER BY count(*) desc",
-            nativeQuery = true)
-    Page<CategorySalesDTO> getSalesByCategory(Pageable pageable);
-
-    @Query("SELECT i.paymentMethod as payment_type, COUNT(i) as sales FROM Invoice i WHERE i.paymentMethod IS NOT NULL GROUP BY i.paymentMethod")
-    Page<PaymentTypeSaleDTO> findSalesByPaymentType(Pageable pageable);
 }
@@ -0,0 +1,91 @@
+package com.mercadolibro.repository;
+
+import com.mercadolibro.dto.CategorySalesDTO;
+import com.mercadolibro.dto.MonthlySaleDTO;
+import com.mercadolibro.dto.PaymentTypeSaleDTO;
+import com.mercadolibro.entity.SalesRollup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+    /* Adds to the row of the period and dimension, creating it if missing, so concurrent payments never collide */
+    @Modifying
+    @Query(value = "INSERT INTO sales_rollup (granularity, period_start, dimension, dimension_key, invoices, units, revenue) " +
+            "VALUES (:granularity, :periodStart, :dimension, :dimensionKey, :invoices, :units, :revenue) " +
+            "ON DUPLICATE KEY UPDATE invoices = invoices + VALUES(invoices), units = units + VALUES(units), " +
+            "revenue = revenue + VALUES(revenue)",
+            nativeQuery = true)
+    void add(@Param("granularity") String granularity, @Param("periodStart") LocalDate periodStart,
+             @Param("dimension") String dimension, @Param("dimensionKey") String dimensionKey,
+             @Param("invoices") long invoices, @Param("units") long units, @Param("revenue") double revenue);
+
+    default void add(SalesRollup rollup) {
+        add(rollup.getGranularity().name(), rollup.getPeriodStart(), rollup.getDimension().name(),
+                rollup.getDimensionKey(), rollup.getInvoices(), rollup.getUnits(), rollup.getRevenue());
+    }
+
+    /* The day rows of [start, end) and the month rows starting in it */
+    @Query("SELECT r FROM SalesRollup r WHERE r.periodStart >= :start AND r.periodStart < :end")
+    List<SalesRollup> findRollups(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    /* Rows left without sales once a rebuild took back the sales of invoices no longer paid */
+    @Modifying
+    @Query("DELETE FROM SalesRollup r WHERE r.periodStart >= :start AND r.periodStart < :end AND r.invoices = 0")
+    int deleteEmptyRollups(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("SELECT MIN(r.periodStart), MAX(r.periodStart) FROM SalesRollup r")
+    List<Object[]> findPeriodRange();
+
+    /* The columns of every rollup of a granularity, as plain values so the persistence context does not grow */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("SELECT r.periodStart, r.dimension, r.dimensionKey, r.invoices, r.units, r.revenue " +
+            "FROM SalesRollup r WHERE r.granularity = :granularity")
+    Stream<Object[]> streamColumns(@Param("granularity") SalesRollup.Granularity granularity);
+
+    @Query("SELECT YEAR(r.periodStart) AS year, MONTH(r.periodStart) AS month, r.invoices AS sales " +
+            "FROM SalesRollup r " +
+            "WHERE r.granularity = com.mercadolibro.entity.SalesRollup$Granularity.MONTH " +
+            "AND r.dimension = com.mercadolibro.entity.SalesRollup$Dimension.TOTAL " +
+            "ORDER BY r.periodStart DESC")
+    Page<MonthlySaleDTO> findMonthlySales(Pageable pageable);
+
+    @Query(value = "SELECT r.dimensionKey AS category_name, SUM(r.units) AS sales " +
+            "FROM SalesRollup r " +
+            "WHERE r.granularity = com.mercadolibro.entity.SalesRollup$Granularity.MONTH " +
+            "AND r.dimension = com.mercadolibro.entity.SalesRollup$Dimension.CATEGORY " +
+            "GROUP BY r.dimensionKey " +
+            "ORDER BY SUM(r.units) DESC, r.dimensionKey",
+            countQuery = "SELECT COUNT(DISTINCT r.dimensionKey) FROM SalesRollup r " +
+                    "WHERE r.granularity = com.mercadolibro.entity.SalesRollup$Granularity.MONTH " +
+                    "AND r.dimension = com.mercadolibro.entity.SalesRollup$Dimension.CATEGORY")
+    Page<CategorySalesDTO> findSalesByCategory(Pageable pageable);
+
+    @Query(value = "SELECT r.dimensionKey AS payment_type, SUM(r.invoices) AS sales " +
+            "FROM SalesRollup r " +
+            "WHERE r.granularity = com.mercadolibro.entity.SalesRollup$Granularity.MONTH " +
+            "AND r.dimension = com.mercadolibro.entity.SalesRollup$Dimension.PAYMENT_METHOD " +
+            "GROUP BY r.dimensionKey " +
+            "ORDER BY SUM(r.invoices) DESC, r.dimensionKey",
+            countQuery = "SELECT COUNT(DISTINCT r.dimensionKey) FROM SalesRollup r " +
+                    "WHERE r.granularity = com.mercadolibro.entity.SalesRollup$Granularity.MONTH " +
+                    "AND r.dimension = com.mercadolibro.entity.SalesRollup$Dimension.PAYMENT_METHOD")
+    Page<PaymentTypeSaleDTO> findSalesByPaymentType(Pageable pageable);
+}
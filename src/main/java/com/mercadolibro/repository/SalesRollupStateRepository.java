@@ -0,0 +1,36 @@
+package com.mercadolibro.repository;
+
+import com.mercadolibro.entity.SalesRollupState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.transaction.Transactional;
+
+@Repository
+public interface SalesRollupStateRepository extends JpaRepository<SalesRollupState, Long> {
+    /* Inserts the single row, or leaves it as it is, so concurrent first runs never collide */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO sales_rollup_state (id, version) VALUES (" + SalesRollupState.ID + ", 0) " +
+            "ON DUPLICATE KEY UPDATE id = id",
+            nativeQuery = true)
+    void createIfMissing();
+
+    /* Held until the transaction ends */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM SalesRollupState s WHERE s.id = " + SalesRollupState.ID)
+    SalesRollupState lock();
+
+    @Query("SELECT s.version FROM SalesRollupState s WHERE s.id = " + SalesRollupState.ID)
+    int findVersion();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SalesRollupState s SET s.version = :version WHERE s.id = " + SalesRollupState.ID)
+    void updateVersion(@Param("version") int version);
+}
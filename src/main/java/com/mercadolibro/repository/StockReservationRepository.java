@@ -0,0 +1,37 @@
+package com.mercadolibro.repository;
+
+import com.mercadolibro.entity.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    List<StockReservation> findByInvoiceId(UUID invoiceId);
+
+    boolean existsByInvoiceId(UUID invoiceId);
+
+    /* The caller that deletes the rows owns their units, so payment and expiry can never both claim them */
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.invoiceId = :invoiceId")
+    int deleteByInvoiceId(@Param("invoiceId") UUID invoiceId);
+
+    /* Deletes the rows only while they are still expired, so a reservation claimed meanwhile is left alone */
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.invoiceId = :invoiceId AND r.expiresAt < :now")
+    int deleteExpiredByInvoiceId(@Param("invoiceId") UUID invoiceId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.expiresAt = :expiresAt WHERE r.invoiceId = :invoiceId")
+    int updateExpiresAt(@Param("invoiceId") UUID invoiceId, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Query("SELECT DISTINCT r.invoiceId FROM StockReservation r WHERE r.expiresAt < :now")
+    List<UUID> findExpiredInvoiceIds(@Param("now") LocalDateTime now, Pageable pageable);
+}
@@ -0,0 +1,34 @@
+package com.mercadolibro.repository;
+
+import com.mercadolibro.entity.StockSnapshot;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+    /* Copies the stock of every book in a single statement, replacing the rows already taken in the month */
+    @Modifying
+    @Query(value = "INSERT INTO stock_snapshot (period_start, book_id, stock) " +
+            "SELECT :periodStart, b.id, COALESCE(b.stock, 0) FROM book b " +
+            "ON DUPLICATE KEY UPDATE stock = VALUES(stock)",
+            nativeQuery = true)
+    int snapshot(@Param("periodStart") LocalDate periodStart);
+
+    /* The unique key starts with the month, so each page only reads the rows of its months */
+    @Query(value = "SELECT s.periodStart AS periodStart, SUM(s.stock) AS stock FROM StockSnapshot s " +
+            "GROUP BY s.periodStart ORDER BY s.periodStart DESC",
+            countQuery = "SELECT COUNT(DISTINCT s.periodStart) FROM StockSnapshot s")
+    Page<MonthlyStock> findMonthlyStock(Pageable pageable);
+
+    interface MonthlyStock {
+        LocalDate getPeriodStart();
+        Long getStock();
+    }
+}
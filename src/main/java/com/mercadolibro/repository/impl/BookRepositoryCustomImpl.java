@@ -0,0 +1,119 @@
+package com.mercadolibro.repository.impl;
+
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.repository.BookRepositoryCustom;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+    private static final String FETCH_GRAPH_HINT = "javax.persistence.fetchgraph";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Book> findAll(Specification<Book> spec, Pageable pageable) {
+        TypedQuery<Long> idQuery = createIdQuery(spec, pageable);
+        if (pageable.isPaged()) {
+            idQuery.setFirstResult((int) pageable.getOffset());
+            idQuery.setMaxResults(pageable.getPageSize());
+        }
+
+        Page<Long> ids = PageableExecutionUtils.getPage(idQuery.getResultList(), pageable, () -> count(spec));
+        if (ids.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, ids.getTotalElements());
+        }
+
+        return new PageImpl<>(fetchBooks(ids.getContent()), pageable, ids.getTotalElements());
+    }
+
+    @Override
+    public Slice<Book> findSlice(Specification<Book> spec, Pageable pageable) {
+        // One extra ID tells whether there is a next slice without counting the whole result
+        List<Long> ids = createIdQuery(spec, pageable)
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = ids.size() > pageable.getPageSize();
+        if (hasNext) {
+            ids = ids.subList(0, pageable.getPageSize());
+        }
+
+        return new SliceImpl<>(ids.isEmpty() ? Collections.emptyList() : fetchBooks(ids), pageable, hasNext);
+    }
+
+    @Override
+    public List<Book> findAllRanked(List<Long> rankedIds) {
+        return rankedIds.isEmpty() ? Collections.emptyList() : fetchBooks(rankedIds);
+    }
+
+    private List<Book> fetchBooks(List<Long> ids) {
+        EntityGraph<Book> graph = entityManager.createEntityGraph(Book.class);
+        graph.addAttributeNodes("categories", "images");
+
+        Map<Long, Book> books = entityManager.createQuery("SELECT DISTINCT b FROM Book b WHERE b.id IN :ids", Book.class)
+                .setParameter("ids", ids)
+                .setHint(FETCH_GRAPH_HINT, graph)
+                .getResultList()
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity(), (first, second) -> first));
+
+        return ids.stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private TypedQuery<Long> createIdQuery(Specification<Book> spec, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(root.get("id"));
+        applySpecification(spec, root, query, criteriaBuilder);
+
+        // The ID breaks ties, otherwise books sharing a sort value could jump between pages
+        List<Order> orders = new ArrayList<>(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+        if (pageable.getSort().getOrderFor("id") == null) {
+            orders.add(criteriaBuilder.asc(root.get("id")));
+        }
+        query.orderBy(orders);
+
+        return entityManager.createQuery(query);
+    }
+
+    private long count(Specification<Book> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(criteriaBuilder.count(root));
+        applySpecification(spec, root, query, criteriaBuilder);
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private void applySpecification(Specification<Book> spec, Root<Book> root, CriteriaQuery<?> query,
+                                    CriteriaBuilder criteriaBuilder) {
+        if (spec == null) {
+            return;
+        }
+        Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
@@ -6,6 +6,8 @@ import com.mercadolibro.exception.BookImageKeyDoesNotExistException;
 import com.mercadolibro.exception.BookNotFoundException;
 import com.mercadolibro.exception.NoBooksToShowException;
 
+import java.util.List;
+
 public interface BookService {
 
     /**
@@ -47,6 +49,35 @@ public interface BookService {
     PageDTO<BookRespDTO> findAll(String keyword, String category, String publisher, boolean releases,
                                  String sort, String selection, short page, short size);
 
+    /**
+     * Retrieves books with keyset pagination. Instead of a page number, every response carries a cursor pointing
+     * after its last book, so deep pages cost the same as the first one and the total is never counted.
+     *
+     * @param keyword Not required. It is used in case you want to filter by title, author or publisher.
+     * @param category Not required. It is used in case you want to filter by category.
+     * @param publisher Not required. It is used in case you want to filter by publisher.
+     * @param releases Not required. It is used when you want to filter the latest news of the month.
+     * @param selection Not required. It is used if you want to sort from newer books to older ones or
+     *                  from older books to newer ones.
+     * @param sort Not required. It is used if you want to sort in ascending order or descending order.
+     * @param cursor Not required. The cursor returned by the previous call, absent for the first one.
+     * @param size The number of books to retrieve.
+     * @return The books after the cursor and the cursor of the next call, null when there are no more books.
+     * @throws IllegalArgumentException If the cursor is not valid.
+     */
+    CursorPageDTO<BookRespDTO> findAllByCursor(String keyword, String category, String publisher, boolean releases,
+                                               String selection, String sort, String cursor, short size);
+
+    /**
+     * Suggests titles, authors and publishers while the user types a search. Suggestions are served from memory,
+     * without reaching the database.
+     *
+     * @param prefix The text typed so far, matched against the start of every word.
+     * @param limit The maximum number of suggestions.
+     * @return A list of SuggestionDTO, empty if nothing matches.
+     */
+    List<SuggestionDTO> suggest(String prefix, int limit);
+
     /**
      * Saves a new book.
      *
@@ -65,6 +96,14 @@ public interface BookService {
      */
     BookRespDTO findByID(Long id);
 
+    /**
+     * Finds several books by their IDs at once, fetching their categories and images in the same queries.
+     *
+     * @param ids The IDs of the books to retrieve.
+     * @return The BookRespDTOs of the books in the order of the IDs, skipping the IDs of missing books.
+     */
+    List<BookRespDTO> findAllByIDs(List<Long> ids);
+
     /**
      * Deletes a book by its ID.
      *
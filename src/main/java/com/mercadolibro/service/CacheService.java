@@ -0,0 +1,15 @@
+package com.mercadolibro.service;
+
+import com.mercadolibro.dto.CacheStatsDTO;
+
+import java.util.List;
+
+public interface CacheService {
+
+    /**
+     * Retrieves the hit, miss and eviction statistics of every named cache.
+     *
+     * @return A list of CacheStatsDTO, one per cache.
+     */
+    List<CacheStatsDTO> getStats();
+}
@@ -0,0 +1,20 @@
+package com.mercadolibro.service;
+
+import com.mercadolibro.dto.ExportFormat;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public interface InvoiceExportService {
+
+    /**
+     * Writes every invoice with its items, reading them through a database cursor so memory use does not grow with
+     * the number of invoices.
+     *
+     * @param format The format to write: a JSON array of invoices, one JSON invoice per line, or one CSV row per
+     *               invoice item.
+     * @param writer The writer to stream the invoices to. It is flushed, but not closed.
+     * @throws IOException If the writer fails.
+     */
+    void export(ExportFormat format, Writer writer) throws IOException;
+}
@@ -2,18 +2,20 @@ package com.mercadolibro.service;
 
 import com.mercadolibro.dto.*;
 import com.mercadolibro.entity.InvoiceRequest;
+import com.mercadolibro.service.analytics.SalesMetric;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public interface InvoiceRequestService {
-    List<InvoiceSearchDTO> findAll();
-    PageDTO<InvoiceSearchDTO> findAll(int page, int size);
+    PageDTO<InvoiceSearchDTO> findAll(int page, int size, Set<InvoiceExpand> expand);
 
-    InvoiceSearchDTO findById(UUID id);
-    PageDTO<InvoiceSearchDTO> findByUserId(Long userId, int page, int size);
+    InvoiceSearchDTO findById(UUID id, Set<InvoiceExpand> expand);
+    PageDTO<InvoiceSearchDTO> findByUserId(Long userId, int page, int size, Set<InvoiceExpand> expand);
 
     List<BookRespDTO> findBestSellersList();
     PageDTO<BookRespDTO> findBestSellersPage(int page, int size);
@@ -21,6 +23,20 @@ public interface InvoiceRequestService {
     PageDTO<CategorySalesDTO> getSalesByCategory(int page, int size);
     PageDTO<PaymentTypeSaleDTO> findSalesByPaymentType(int page, int size);
 
+    /**
+     * Adds up the invoices, units sold and revenue of the paid invoices by a dimension.
+     *
+     * @param dimension What to add the sales up by.
+     * @param sort The metric to sort by, months are always from the latest back.
+     * @param from The first day, or null for no lower bound.
+     * @param to The last day, or null for no upper bound.
+     * @param page The page number.
+     * @param size The number of elements per page.
+     * @return The page of sums.
+     */
+    PageDTO<SalesSummaryDTO> getSales(SalesDimension dimension, SalesMetric sort, LocalDate from, LocalDate to,
+                                      int page, int size);
+
     InvoiceRequestDTO save(InvoiceRequest invoiceRequest);
 
     PaymentRespDTO processPayment(UUID invoiceId, PaymentReqDTO paymentReqDTO);
@@ -0,0 +1,30 @@
+package com.mercadolibro.service;
+
+import com.mercadolibro.dto.PreferenceStatusDTO;
+import com.mercadolibro.entity.InvoiceItem;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PreferenceService {
+    /**
+     * Creates the MercadoPago preference of an invoice in the background. The invoice is PENDING until the
+     * preference is created, and FAILED if it could not be.
+     *
+     * @param invoiceId The ID of the invoice, already saved.
+     * @param items The items of the invoice.
+     */
+    void requestPreference(UUID invoiceId, List<InvoiceItem> items);
+
+    /**
+     * Creates the preference of an invoice again after it failed.
+     *
+     * @param invoiceId The ID of the invoice.
+     * @return The status of the preference, PENDING once requested again.
+     * @throws com.mercadolibro.exception.InvoicePaymentException If the invoice does not exist, or its preference
+     * did not fail.
+     */
+    PreferenceStatusDTO retryPreference(UUID invoiceId);
+
+    PreferenceStatusDTO getStatus(UUID invoiceId);
+}
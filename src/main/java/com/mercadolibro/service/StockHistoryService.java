@@ -0,0 +1,26 @@
+package com.mercadolibro.service;
+
+import com.mercadolibro.dto.MonthlyStockDTO;
+import com.mercadolibro.dto.PageDTO;
+
+import java.time.YearMonth;
+
+public interface StockHistoryService {
+
+    /**
+     * Records the current stock of every book as its stock in a month, replacing what was recorded before.
+     *
+     * @param month The month the stock is recorded for.
+     * @return The number of books recorded.
+     */
+    int snapshot(YearMonth month);
+
+    /**
+     * Lists the total stock of the books by month, from the latest month back.
+     *
+     * @param page The page number.
+     * @param size The number of months per page.
+     * @return The page of monthly stock.
+     */
+    PageDTO<MonthlyStockDTO> getMonthlyStock(int page, int size);
+}
@@ -0,0 +1,92 @@
+package com.mercadolibro.service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+public interface StockService {
+
+    /**
+     * Checks that every book has the requested stock, without locking them.
+     *
+     * @param quantities The quantity requested of each book, by book ID.
+     * @throws com.mercadolibro.exception.BookNotFoundException If any book does not exist.
+     * @throws com.mercadolibro.exception.InvoicePaymentException If any book has insufficient stock, listing all of
+     * them.
+     */
+    void checkStock(Map<Long, Integer> quantities);
+
+    /**
+     * Decrements the stock of every book, or of none, joining the caller's transaction so the decrement commits or
+     * rolls back with the rest of it. No lock is taken: the stocks are read with their version and each decrement
+     * only applies if the version is unchanged, so concurrent checkouts can not sell the same units. Callers are
+     * expected to retry their whole transaction on conflicts.
+     *
+     * @param quantities The quantity to decrement from each book, by book ID.
+     * @throws com.mercadolibro.exception.BookNotFoundException If any book does not exist.
+     * @throws com.mercadolibro.exception.InvoicePaymentException If any book has insufficient stock, listing all of
+     * them.
+     * @throws org.springframework.dao.OptimisticLockingFailureException If a concurrent checkout changed the stock
+     * of any book after it was read.
+     */
+    void decrementStock(Map<Long, Integer> quantities);
+
+    /**
+     * Takes the units of an invoice from the stock of its books and holds them until the invoice is paid or the
+     * reservation expires. Runs in a transaction of its own, with the same all or nothing guarantees as
+     * decrementStock, so callers are expected to retry on conflicts as well.
+     *
+     * @param invoiceId The ID of the invoice the units are held for.
+     * @param quantities The quantity to hold of each book, by book ID.
+     * @throws com.mercadolibro.exception.BookNotFoundException If any book does not exist.
+     * @throws com.mercadolibro.exception.InvoicePaymentException If any book has insufficient stock, listing all of
+     * them.
+     * @throws org.springframework.dao.OptimisticLockingFailureException If a concurrent checkout changed the stock
+     * of any book after it was read.
+     */
+    void reserve(UUID invoiceId, Map<Long, Integer> quantities);
+
+    /**
+     * Tells whether the units of an invoice are still held.
+     *
+     * @param invoiceId The ID of the invoice.
+     * @return true if the invoice has a reservation that was not released yet, even if it already expired.
+     */
+    boolean isReserved(UUID invoiceId);
+
+    /**
+     * Claims the reservation of an invoice about to be charged, pushing its expiry a whole TTL away. It commits right
+     * away, and expired reservations are only released while they are still expired, so once claimed a reservation
+     * is not released while the payment runs, even if it had already expired.
+     *
+     * @param invoiceId The ID of the invoice.
+     * @return true if the invoice had a reservation, false if it was already released.
+     */
+    boolean claim(UUID invoiceId);
+
+    /**
+     * Consumes the reservation of a paid invoice. Its units stay out of the stock for good.
+     *
+     * @param invoiceId The ID of the paid invoice.
+     * @return true if the invoice had a reservation, false if it was already released and the stock has to be
+     * decremented again.
+     */
+    boolean confirm(UUID invoiceId);
+
+    /**
+     * Gives the held units of an invoice back to the stock of its books.
+     *
+     * @param invoiceId The ID of the invoice.
+     * @return The number of books whose stock was given back, 0 if the invoice had no reservation.
+     */
+    int release(UUID invoiceId);
+
+    /**
+     * Releases the reservations that expired, leaving alone those claimed after they were found.
+     *
+     * @param now The current time.
+     * @param limit The maximum number of invoices to release.
+     * @return The number of invoices released.
+     */
+    int releaseExpired(LocalDateTime now, int limit);
+}
@@ -0,0 +1,253 @@
+package com.mercadolibro.service.analytics;
+
+import com.mercadolibro.entity.SalesRollup;
+import com.mercadolibro.entity.SalesRollup.Dimension;
+import com.mercadolibro.entity.SalesRollup.Granularity;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.repository.SalesRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory copy of the day rollups of the sales, so the dashboards are answered without querying the database.
+ * It is loaded from the sales_rollup table on startup and reloaded periodically, which also brings in the sales of
+ * other instances, and the sales of this instance are added as soon as their payment commits.
+ */
+@Component
+public class SalesAnalyticsStore {
+    private static final Comparator<SalesTotal> RANKING = Comparator.comparingDouble(SalesTotal::getValue).reversed()
+            .thenComparing(SalesTotal::getKey);
+
+    private final Logger logger = LoggerFactory.getLogger(SalesAnalyticsStore.class);
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock reloading = new ReentrantLock();
+    /* Null until the first load */
+    private SalesColumns columns;
+    /* The sales added by invoice while a reload reads the rollups, null when no reload is running */
+    private Map<UUID, Collection<SalesRollup>> added;
+
+    @Autowired
+    public SalesAnalyticsStore(SalesRollupRepository salesRollupRepository, InvoiceRepository invoiceRepository) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.invoiceRepository = invoiceRepository;
+    }
+
+    /**
+     * Replaces the sales held with the day rollups of the database. The new columns are built before taking the
+     * lock, so queries are only held while they are swapped. It reads in a transaction of its own, since it also
+     * runs right after a rebuild commits.
+     * The sales added meanwhile are kept aside: those of the invoices the same transaction still reads as unpaid
+     * committed after the rollups were read, and are added again to the new columns, the others are already in them.
+     * Reloads run one at a time.
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @Scheduled(fixedDelayString = "${app.analytics.store.refresh-ms:300000}")
+    public void reload() {
+        reloading.lock();
+        try {
+            setAdded(new HashMap<>());
+            SalesColumns loaded = new SalesColumns();
+            try (Stream<Object[]> rows = salesRollupRepository.streamColumns(Granularity.DAY)) {
+                for (Iterator<Object[]> iterator = rows.iterator(); iterator.hasNext(); ) {
+                    Object[] row = iterator.next();
+                    loaded.add((LocalDate) row[0], (Dimension) row[1], (String) row[2], (Long) row[3], (Long) row[4],
+                            (Double) row[5]);
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (!added.isEmpty()) {
+                    Set<UUID> read = new HashSet<>(invoiceRepository.findPaidIds(added.keySet()));
+                    added.forEach((invoiceId, rollups) -> {
+                        if (!read.contains(invoiceId)) {
+                            add(loaded, rollups);
+                        }
+                    });
+                }
+                columns = loaded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.debug("Sales analytics loaded with {} day rollups", loaded.size());
+        } finally {
+            setAdded(null);
+            reloading.unlock();
+        }
+    }
+
+    /**
+     * Adds the sales of a paid invoice, as written to the rollups. Rollups of other granularities are ignored.
+     *
+     * @param invoiceId The paid invoice.
+     * @param rollups The rollups the sales were added to.
+     */
+    public void add(UUID invoiceId, Collection<SalesRollup> rollups) {
+        lock.writeLock().lock();
+        try {
+            if (added != null) {
+                added.put(invoiceId, rollups);
+            }
+            if (columns != null) {
+                add(columns, rollups);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void add(SalesColumns columns, Collection<SalesRollup> rollups) {
+        for (SalesRollup rollup : rollups) {
+            if (rollup.getGranularity() == Granularity.DAY) {
+                columns.add(rollup.getPeriodStart(), rollup.getDimension(), rollup.getDimensionKey(),
+                        rollup.getInvoices(), rollup.getUnits(), rollup.getRevenue());
+            }
+        }
+    }
+
+    private void setAdded(Map<UUID, Collection<SalesRollup>> added) {
+        lock.writeLock().lock();
+        try {
+            this.added = added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return columns != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds up a metric of every sale by month.
+     *
+     * @param metric The metric to add up.
+     * @param from The first day, or null for no lower bound.
+     * @param to The day after the last one, or null for no upper bound.
+     * @return The sum of each month with sales, in ascending order.
+     */
+    public SortedMap<YearMonth, Double> sumByMonth(SalesMetric metric, LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return loaded().sumByMonth(Dimension.TOTAL, SalesRollup.TOTAL_KEY, metric, from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the keys of a dimension by a metric, leaving out the keys without sales.
+     *
+     * @param dimension The dimension to rank.
+     * @param metric The metric to rank by.
+     * @param from The first day, or null for no lower bound.
+     * @param to The day after the last one, or null for no upper bound.
+     * @return The sum of each key, from the highest down, ties by key.
+     */
+    public List<SalesTotal> rank(Dimension dimension, SalesMetric metric, LocalDate from, LocalDate to) {
+        List<SalesTotal> totals = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            SalesColumns loaded = loaded();
+            double[] sums = loaded.sumByKey(dimension, metric, from, to);
+            for (int keyId = 0; keyId < sums.length; keyId++) {
+                if (sums[keyId] != 0) {
+                    totals.add(new SalesTotal(loaded.key(dimension, keyId), sums[keyId]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        totals.sort(RANKING);
+        return totals;
+    }
+
+    /**
+     * Adds up every metric of the keys of a dimension, leaving out the keys without sales.
+     *
+     * @param dimension The dimension to add up.
+     * @param sort The metric to sort by.
+     * @param from The first day, or null for no lower bound.
+     * @param to The day after the last one, or null for no upper bound.
+     * @return The sums of each key, from the highest of the sort metric down, ties by key.
+     */
+    public List<SalesSummary> summarize(Dimension dimension, SalesMetric sort, LocalDate from, LocalDate to) {
+        List<SalesSummary> summaries;
+        lock.readLock().lock();
+        try {
+            summaries = loaded().summarizeByKey(dimension, from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+        summaries.sort(Comparator.comparingDouble((SalesSummary summary) -> summary.get(sort)).reversed()
+                .thenComparing(SalesSummary::getKey));
+        return summaries;
+    }
+
+    /**
+     * Adds up every metric of every sale by month, keyed by the month as in 2023-01.
+     *
+     * @param from The first day, or null for no lower bound.
+     * @param to The day after the last one, or null for no upper bound.
+     * @return The sums of each month with sales, from the latest back.
+     */
+    public List<SalesSummary> summarizeByMonth(LocalDate from, LocalDate to) {
+        SortedMap<YearMonth, Double> invoices;
+        SortedMap<YearMonth, Double> units;
+        SortedMap<YearMonth, Double> revenue;
+        lock.readLock().lock();
+        try {
+            SalesColumns loaded = loaded();
+            invoices = loaded.sumByMonth(Dimension.TOTAL, SalesRollup.TOTAL_KEY, SalesMetric.INVOICES, from, to);
+            units = loaded.sumByMonth(Dimension.TOTAL, SalesRollup.TOTAL_KEY, SalesMetric.UNITS, from, to);
+            revenue = loaded.sumByMonth(Dimension.TOTAL, SalesRollup.TOTAL_KEY, SalesMetric.REVENUE, from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<SalesSummary> summaries = new ArrayList<>();
+        invoices.forEach((month, monthInvoices) -> summaries.add(new SalesSummary(month.toString(),
+                monthInvoices.longValue(), units.get(month).longValue(), revenue.get(month))));
+        Collections.reverse(summaries);
+        return summaries;
+    }
+
+    private SalesColumns loaded() {
+        if (columns == null) {
+            throw new IllegalStateException("Sales analytics are not loaded yet");
+        }
+        return columns;
+    }
+}
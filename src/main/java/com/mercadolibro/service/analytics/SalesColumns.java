@@ -0,0 +1,196 @@
+package com.mercadolibro.service.analytics;
+
+import com.mercadolibro.entity.SalesRollup.Dimension;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The day rollups of the sales held column by column in primitive arrays, so a query is a tight loop over the
+ * columns it needs. Dimension keys are replaced by small integers, which also index the sums of the queries.
+ * It is not thread safe, SalesAnalyticsStore guards it.
+ */
+class SalesColumns {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+
+    private final List<List<String>> keys = new ArrayList<>();
+    private final List<Map<String, Integer>> keyIds = new ArrayList<>();
+    /* Row of each day, dimension and key, packed in a long */
+    private final Map<Long, Integer> rows = new HashMap<>();
+
+    private int[] days = new int[INITIAL_CAPACITY];
+    private byte[] dimensions = new byte[INITIAL_CAPACITY];
+    private int[] dimensionKeys = new int[INITIAL_CAPACITY];
+    private long[] invoices = new long[INITIAL_CAPACITY];
+    private long[] units = new long[INITIAL_CAPACITY];
+    private double[] revenue = new double[INITIAL_CAPACITY];
+    private int size;
+
+    SalesColumns() {
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            keys.add(new ArrayList<>());
+            keyIds.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Adds sales to the row of a day, dimension and key, creating it if missing.
+     */
+    void add(LocalDate day, Dimension dimension, String key, long invoices, long units, double revenue) {
+        int keyId = keyId(dimension, key);
+        int epochDay = Math.toIntExact(day.toEpochDay());
+        long packed = ((long) epochDay << 32) | ((long) dimension.ordinal() << 28) | keyId;
+
+        Integer row = rows.get(packed);
+        if (row == null) {
+            if (size == days.length) {
+                grow();
+            }
+            row = size++;
+            days[row] = epochDay;
+            dimensions[row] = (byte) dimension.ordinal();
+            dimensionKeys[row] = keyId;
+            rows.put(packed, row);
+        }
+        this.invoices[row] += invoices;
+        this.units[row] += units;
+        this.revenue[row] += revenue;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int keyCount(Dimension dimension) {
+        return keys.get(dimension.ordinal()).size();
+    }
+
+    String key(Dimension dimension, int keyId) {
+        return keys.get(dimension.ordinal()).get(keyId);
+    }
+
+    /**
+     * Adds up a metric of the rows of a dimension by key, within a range of days.
+     *
+     * @param dimension The dimension whose rows are added up.
+     * @param metric The metric to add up.
+     * @param from The first day, or null for no lower bound.
+     * @param to The day after the last one, or null for no upper bound.
+     * @return The sum of each key, indexed by key ID.
+     */
+    double[] sumByKey(Dimension dimension, SalesMetric metric, LocalDate from, LocalDate to) {
+        byte wanted = (byte) dimension.ordinal();
+        int fromDay = from == null ? Integer.MIN_VALUE : Math.toIntExact(from.toEpochDay());
+        int toDay = to == null ? Integer.MAX_VALUE : Math.toIntExact(to.toEpochDay());
+        double[] sums = new double[keyCount(dimension)];
+        for (int row = 0; row < size; row++) {
+            if (dimensions[row] == wanted && days[row] >= fromDay && days[row] < toDay) {
+                sums[dimensionKeys[row]] += value(metric, row);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Adds up a metric of the rows of a dimension and key by month, within a range of days.
+     *
+     * @param dimension The dimension whose rows are added up.
+     * @param key The key of the dimension.
+     * @param metric The metric to add up.
+     * @param from The first day, or null for no lower bound.
+     * @param to The day after the last one, or null for no upper bound.
+     * @return The sum of each month with rows.
+     */
+    SortedMap<YearMonth, Double> sumByMonth(Dimension dimension, String key, SalesMetric metric, LocalDate from,
+                                            LocalDate to) {
+        SortedMap<YearMonth, Double> sums = new TreeMap<>();
+        Integer keyId = keyIds.get(dimension.ordinal()).get(key);
+        if (keyId == null) {
+            return sums;
+        }
+        byte wanted = (byte) dimension.ordinal();
+        int fromDay = from == null ? Integer.MIN_VALUE : Math.toIntExact(from.toEpochDay());
+        int toDay = to == null ? Integer.MAX_VALUE : Math.toIntExact(to.toEpochDay());
+        for (int row = 0; row < size; row++) {
+            if (dimensions[row] == wanted && dimensionKeys[row] == keyId && days[row] >= fromDay && days[row] < toDay) {
+                sums.merge(YearMonth.from(LocalDate.ofEpochDay(days[row])), value(metric, row), Double::sum);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Adds up every metric of the rows of a dimension by key, within a range of days.
+     *
+     * @param dimension The dimension whose rows are added up.
+     * @param from The first day, or null for no lower bound.
+     * @param to The day after the last one, or null for no upper bound.
+     * @return The sums of each key with sales, in no particular order.
+     */
+    List<SalesSummary> summarizeByKey(Dimension dimension, LocalDate from, LocalDate to) {
+        byte wanted = (byte) dimension.ordinal();
+        int fromDay = from == null ? Integer.MIN_VALUE : Math.toIntExact(from.toEpochDay());
+        int toDay = to == null ? Integer.MAX_VALUE : Math.toIntExact(to.toEpochDay());
+        int keyCount = keyCount(dimension);
+        long[] invoiceSums = new long[keyCount];
+        long[] unitSums = new long[keyCount];
+        double[] revenueSums = new double[keyCount];
+        for (int row = 0; row < size; row++) {
+            if (dimensions[row] == wanted && days[row] >= fromDay && days[row] < toDay) {
+                int keyId = dimensionKeys[row];
+                invoiceSums[keyId] += invoices[row];
+                unitSums[keyId] += units[row];
+                revenueSums[keyId] += revenue[row];
+            }
+        }
+
+        List<SalesSummary> summaries = new ArrayList<>();
+        for (int keyId = 0; keyId < keyCount; keyId++) {
+            if (invoiceSums[keyId] != 0) {
+                summaries.add(new SalesSummary(key(dimension, keyId), invoiceSums[keyId], unitSums[keyId],
+                        revenueSums[keyId]));
+            }
+        }
+        return summaries;
+    }
+
+    private double value(SalesMetric metric, int row) {
+        switch (metric) {
+            case INVOICES:
+                return invoices[row];
+            case UNITS:
+                return units[row];
+            default:
+                return revenue[row];
+        }
+    }
+
+    private int keyId(Dimension dimension, String key) {
+        Map<String, Integer> ids = keyIds.get(dimension.ordinal());
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = ids.size();
+            ids.put(key, id);
+            keys.get(dimension.ordinal()).add(key);
+        }
+        return id;
+    }
+
+    private void grow() {
+        int capacity = days.length * 2;
+        days = Arrays.copyOf(days, capacity);
+        dimensions = Arrays.copyOf(dimensions, capacity);
+        dimensionKeys = Arrays.copyOf(dimensionKeys, capacity);
+        invoices = Arrays.copyOf(invoices, capacity);
+        units = Arrays.copyOf(units, capacity);
+        revenue = Arrays.copyOf(revenue, capacity);
+    }
+}
@@ -0,0 +1,16 @@
+package com.mercadolibro.service.analytics;
+
+public enum SalesMetric {
+    INVOICES, UNITS, REVENUE;
+
+    public static final String UNSUPPORTED_METRIC_MESSAGE = "Unsupported sales metric '%s', expected invoices, units or revenue";
+
+    public static SalesMetric of(String metric) {
+        for (SalesMetric salesMetric : values()) {
+            if (salesMetric.name().equalsIgnoreCase(metric)) {
+                return salesMetric;
+            }
+        }
+        throw new IllegalArgumentException(String.format(UNSUPPORTED_METRIC_MESSAGE, metric));
+    }
+}
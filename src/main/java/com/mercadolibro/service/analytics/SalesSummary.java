@@ -0,0 +1,25 @@
+package com.mercadolibro.service.analytics;
+
+import lombok.Value;
+
+/**
+ * Every sales metric of a key of a dimension, or of a month.
+ */
+@Value
+public class SalesSummary {
+    String key;
+    long invoices;
+    long units;
+    double revenue;
+
+    public double get(SalesMetric metric) {
+        switch (metric) {
+            case INVOICES:
+                return invoices;
+            case UNITS:
+                return units;
+            default:
+                return revenue;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.mercadolibro.service.analytics;
+
+import lombok.Value;
+
+/**
+ * The sum of a sales metric for a key of a dimension.
+ */
+@Value
+public class SalesTotal {
+    String key;
+    double value;
+}
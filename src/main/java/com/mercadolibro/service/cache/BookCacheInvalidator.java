@@ -0,0 +1,78 @@
+package com.mercadolibro.service.cache;
+
+import com.mercadolibro.dto.BookRespDTO;
+import com.mercadolibro.dto.PageDTO;
+import com.mercadolibro.events.BookChanged;
+import com.mercadolibro.events.BookContentChanged;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Evicts the book entries of the "book" and "books" caches when books change. Evictions run after the transaction
+ * that changed the books commits, so a concurrent read can not put the old version back in the cache, and after the
+ * search indexes are updated, so the keyword pages cached afterwards are not built from stale matches.
+ */
+@Component
+public class BookCacheInvalidator {
+    public static final String BOOKS_CACHE = "books";
+    public static final String BOOK_CACHE = "book";
+
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public BookCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleBookChangedEvent(BookChanged bookChanged) {
+        evictBook(bookChanged.getBookId());
+        evictPages((key, page) -> (bookChanged.getBefore() != null && key.matches(bookChanged.getBefore()))
+                || (bookChanged.getAfter() != null && key.matches(bookChanged.getAfter())));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleBookContentChangedEvent(BookContentChanged bookContentChanged) {
+        Collection<Long> bookIds = bookContentChanged.getBookIds();
+        bookIds.forEach(this::evictBook);
+        evictPages((key, page) -> page == null || page.getContent().stream()
+                .anyMatch(book -> bookIds.contains(book.getId())));
+    }
+
+    private void evictBook(Long bookId) {
+        Cache cache = cacheManager.getCache(BOOK_CACHE);
+        if (cache != null && bookId != null) {
+            cache.evict(bookId);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evictPages(BiPredicate<BookPageKey, PageDTO<BookRespDTO>> shouldEvict) {
+        Cache cache = cacheManager.getCache(BOOKS_CACHE);
+        if (cache == null) {
+            return;
+        }
+        if (!(cache instanceof CaffeineCache)) {
+            cache.clear();
+            return;
+        }
+
+        Map<Object, Object> entries = ((CaffeineCache) cache).getNativeCache().asMap();
+        entries.entrySet().removeIf(entry -> !(entry.getKey() instanceof BookPageKey)
+                || shouldEvict.test((BookPageKey) entry.getKey(), entry.getValue() instanceof PageDTO
+                        ? (PageDTO<BookRespDTO>) entry.getValue()
+                        : null));
+    }
+}
@@ -0,0 +1,89 @@
+package com.mercadolibro.service.cache;
+
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.service.search.BookSearchIndex;
+import com.mercadolibro.util.MonthWindow;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cache key of a book page query. Besides identifying the entry, it keeps the filters of the query so a book change
+ * only evicts the pages whose filters the book matches.
+ */
+@Value
+public class BookPageKey {
+    String keyword;
+    String category;
+    String publisher;
+    boolean releases;
+    String selection;
+    String sort;
+    short page;
+    short size;
+
+    /**
+     * Checks in memory whether a book would be part of the result of this query, mirroring BookSpecification.
+     * When a field needed to decide is unknown it answers true, since a false positive only costs an eviction.
+     *
+     * @param book The book to check.
+     * @return true if the book matches every filter of the query.
+     */
+    public boolean matches(Book book) {
+        return matchesKeyword(book) && matchesCategory(book) && matchesPublisher(book) && matchesReleases(book);
+    }
+
+    private boolean matchesKeyword(Book book) {
+        if (keyword == null) {
+            return true;
+        }
+        // Same words as the search index: every word matches a whole word, except the last one which may be a prefix
+        List<String> words = BookSearchIndex.analyze(keyword);
+        if (words.isEmpty()) {
+            return false;
+        }
+        Set<String> terms = new HashSet<>();
+        terms.addAll(BookSearchIndex.analyze(book.getTitle()));
+        if (book.getAuthors() != null) {
+            book.getAuthors().forEach(author -> terms.addAll(BookSearchIndex.analyze(author.getName())));
+        }
+        terms.addAll(BookSearchIndex.analyze(book.getPublisher()));
+        terms.addAll(BookSearchIndex.analyze(book.getDescription()));
+
+        String last = words.get(words.size() - 1);
+        return terms.containsAll(words.subList(0, words.size() - 1))
+                && terms.stream().anyMatch(term -> term.startsWith(last));
+    }
+
+    private boolean matchesCategory(Book book) {
+        if (category == null) {
+            return true;
+        }
+        if (book.getCategories() == null) {
+            return false;
+        }
+        for (Category bookCategory : book.getCategories()) {
+            // Patched books only carry the category IDs, so the name is unknown
+            if (bookCategory.getName() == null || bookCategory.getName().equalsIgnoreCase(category)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesPublisher(Book book) {
+        return publisher == null || book.getPublisher() == null || publisher.equalsIgnoreCase(book.getPublisher());
+    }
+
+    private boolean matchesReleases(Book book) {
+        if (!releases) {
+            return true;
+        }
+        LocalDateTime createdAt = book.getCreatedAt();
+        return createdAt == null || MonthWindow.current().contains(createdAt);
+    }
+}
@@ -9,12 +9,14 @@ import com.mercadolibro.dto.ImageDTO;
 import com.mercadolibro.dto.ResponseDTO;
 import com.mercadolibro.entity.Book;
 import com.mercadolibro.entity.BookImage;
+import com.mercadolibro.events.BookContentChanged;
 import com.mercadolibro.repository.BookImageRepository;
 import com.mercadolibro.repository.BookRepository;
 import com.mercadolibro.service.BookImageService;
 import com.mercadolibro.util.Constants;
 import org.apache.commons.io.FileUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -37,6 +39,8 @@ public class BookImageServiceImpl implements BookImageService {
 
     private final AmazonS3 amazonS3Client;
 
+    private final ApplicationEventPublisher eventPublisher;
+
     @Value("${aws.s3.name}")
     private  String bucketName;
 
@@ -45,10 +49,12 @@ public class BookImageServiceImpl implements BookImageService {
     public BookImageServiceImpl(BookImageRepository bookImageRepository,
                                 BookRepository bookRepository,
                                 ObjectMapper mapper,
-                                AmazonS3 amazonS3){
+                                AmazonS3 amazonS3,
+                                ApplicationEventPublisher eventPublisher){
         this.bookImageRepository = bookImageRepository;
         this.bookRepository = bookRepository;
         this.amazonS3Client=amazonS3;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -101,6 +107,7 @@ public class BookImageServiceImpl implements BookImageService {
             bookImageRepository.save(bookImage);
 
             putObjectInS3(this.bucketName, bookImage.getName(), multipartFile.getBytes());
+            eventPublisher.publishEvent(new BookContentChanged(List.of(bookID)));
 
             responseDTO.setCode(Constants.CodeResponse.OK.getCodigo());
             responseDTO.setMessage(Constants.FILE_CONTENT_SUCCESS);
@@ -123,6 +130,7 @@ public class BookImageServiceImpl implements BookImageService {
             }
             deleteObjectInS3(bucketName, optionalImage.get().getName());
             bookImageRepository.delete(optionalImage.get());
+            eventPublisher.publishEvent(new BookContentChanged(List.of(optionalImage.get().getBook().getId())));
             responseDTO.setCode(Constants.CodeResponse.OK.getCodigo());
             responseDTO.setMessage(Constants.FILE_CONTENT_DELETE);
         } catch (Exception e) {
@@ -4,22 +4,29 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mercadolibro.dto.*;
 import com.mercadolibro.entity.Book;
 import com.mercadolibro.entity.Category;
+import com.mercadolibro.events.BookChanged;
 import com.mercadolibro.exception.*;
 import com.mercadolibro.repository.BookRepository;
 import com.mercadolibro.repository.CategoryRepository;
 import com.mercadolibro.service.BookImageService;
 import com.mercadolibro.service.BookService;
+import com.mercadolibro.service.search.BookSearchIndex;
+import com.mercadolibro.service.search.BookSuggestIndex;
 import com.mercadolibro.service.specification.BookSpecification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.modelmapper.Conditions;
 import org.modelmapper.ModelMapper;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.data.jpa.domain.Specification;
 
 import javax.transaction.Transactional;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.List;
@@ -32,39 +39,52 @@ public class BookServiceImpl implements BookService {
     private final ObjectMapper mapper;
     private final ModelMapper modelMapper;
     private final BookImageService bookImageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestIndex bookSuggestIndex;
 
     public static final String NOT_FOUND_ERROR_FORMAT = "Could not found %s with ID #%d.";
     public static final String BOOK_ISBN_ALREADY_EXISTS_ERROR_FORMAT = "Book with ISBN #%s already exists.";
     public static final String SAVING_BOOK_ERROR_FORMAT = "There was an error saving the book, image upload " +
             "rolled back successfully";
     public static final String FILE_NOT_FOUND_MESSAGE = "The file associated with URL: %s does not exist.";
+    public static final String INVALID_CURSOR_MESSAGE = "The cursor is not valid, start again without it.";
 
 
     @Autowired
     public BookServiceImpl(BookRepository bookRepository, CategoryRepository categoryRepository,
-                           ObjectMapper mapper, ModelMapper modelMapper, BookImageService bookImageService) {
+                           ObjectMapper mapper, ModelMapper modelMapper, BookImageService bookImageService,
+                           ApplicationEventPublisher eventPublisher, BookSearchIndex bookSearchIndex,
+                           BookSuggestIndex bookSuggestIndex) {
         this.bookRepository = bookRepository;
         this.categoryRepository = categoryRepository;
         this.mapper = mapper;
         this.modelMapper = modelMapper;
         this.bookImageService = bookImageService;
+        this.eventPublisher = eventPublisher;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookSuggestIndex = bookSuggestIndex;
     }
 
-    @Cacheable(value = "books", condition = "#selection != null")
+    @Cacheable(value = "books", key = "new com.mercadolibro.service.cache.BookPageKey(" +
+            "#keyword, #category, #publisher, #releases, #selection, #sort, #page, #size)")
     @Override
     public PageDTO<BookRespDTO> findAll(String keyword, String category, String publisher, boolean releases,
                                         String selection, String sort, short page, short size) {
 
-        Specification<Book> spec = buildSpecification(keyword, category, publisher, releases);
         Pageable pageable = buildPageable(sort, selection, page, size);
 
-        Page<Book> res = bookRepository.findAll(spec, pageable);
-        List<BookRespDTO> content = res.getContent().stream().map(book ->
-                mapper.convertValue(book, BookRespDTO.class)).collect(Collectors.toList());
-
-        content.forEach(bookRespDTO -> {
-            bookRespDTO.setImageLinks(getImagesByBookID(bookRespDTO.getId()));
-        });
+        Page<Book> res;
+        if (keyword != null) {
+            // The search index filters, sorts and pages the matches, without an explicit order by relevance
+            Page<Long> ids = bookSearchIndex.search(keyword, findCategoryIds(category), publisher, releases,
+                    pageable);
+            res = new PageImpl<>(bookRepository.findAllRanked(ids.getContent()), pageable, ids.getTotalElements());
+        } else {
+            res = bookRepository.findAll(buildSpecification(category, publisher, releases), pageable);
+        }
+        List<BookRespDTO> content = res.getContent().stream().map(this::toBookRespDTO)
+                .collect(Collectors.toList());
 
         return new PageDTO<BookRespDTO>(
                 content,
@@ -76,6 +96,44 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    public CursorPageDTO<BookRespDTO> findAllByCursor(String keyword, String category, String publisher,
+                                                      boolean releases, String selection, String sort,
+                                                      String cursor, short size) {
+        Sort sorted = buildSort(sort, selection);
+        BookCursor after = cursor == null ? null : decodeCursor(cursor);
+
+        Slice<Book> res;
+        if (keyword != null) {
+            Slice<Long> ids = bookSearchIndex.searchAfter(keyword, findCategoryIds(category), publisher, releases,
+                    sorted, after, size);
+            res = new SliceImpl<>(bookRepository.findAllRanked(ids.getContent()), ids.getPageable(),
+                    ids.hasNext());
+        } else {
+            Specification<Book> spec = buildSpecification(category, publisher, releases);
+            if (after != null) {
+                spec = spec.and(BookSpecification.afterCursorSpec(sorted, after));
+            }
+            res = bookRepository.findSlice(spec, PageRequest.of(0, size, sorted));
+        }
+        List<BookRespDTO> content = res.getContent().stream().map(this::toBookRespDTO)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (res.hasNext()) {
+            Book last = res.getContent().get(res.getNumberOfElements() - 1);
+            nextCursor = encodeCursor(new BookCursor(last.getTitle(), last.getPublishedDate(), last.getId()));
+        }
+
+        return new CursorPageDTO<>(content, nextCursor, res.getSize());
+    }
+
+    @Override
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        return bookSuggestIndex.suggest(prefix, limit);
+    }
+
+    @Override
+    @Transactional
     public BookRespDTO save(BookReqDTO bookReqDTO) {
         if(bookReqDTO.getCategories()!=null && !bookReqDTO.getCategories().isEmpty()){
             bookReqDTO.getCategories().forEach(category -> {
@@ -87,34 +145,44 @@ public class BookServiceImpl implements BookService {
         }
 
         if (!bookRepository.existsByIsbn(bookReqDTO.getIsbn())) {
+            Book saved;
             try {
                 Book mappedBook = mapper.convertValue(bookReqDTO, Book.class);
-                Book saved = bookRepository.save(mappedBook);
-                return mapper.convertValue(saved, BookRespDTO.class);
+                saved = bookRepository.save(mappedBook);
             } catch (Exception e) {
                 throw new S3Exception(SAVING_BOOK_ERROR_FORMAT);
             }
+            eventPublisher.publishEvent(new BookChanged(saved.getId(), null, saved));
+            return mapper.convertValue(saved, BookRespDTO.class);
         }
         throw new BookAlreadyExistsException(String.format(BOOK_ISBN_ALREADY_EXISTS_ERROR_FORMAT, bookReqDTO.getIsbn()));
     }
 
     @Override
+    @Transactional
     public BookRespDTO update(Long id, BookReqDTO bookReqDTO) {
         if (bookRepository.existsById(id)) {
             if (bookRepository.existsByIsbnAndIdNot(bookReqDTO.getIsbn(), id)) {
                 throw new BookAlreadyExistsException(String.format(BOOK_ISBN_ALREADY_EXISTS_ERROR_FORMAT,
                         bookReqDTO.getIsbn()));
             }
-            Book mappedBook;
+            Book before = bookRepository.findById(id).map(this::copyOf).orElse(null);
+            Book updated;
             try {
-                mappedBook = mapper.convertValue(bookReqDTO, Book.class);
+                Book mappedBook = mapper.convertValue(bookReqDTO, Book.class);
                 mappedBook.setId(id);
+                // Never written back, but the book search index filters the releases by it
+                mappedBook.setCreatedAt(before.getCreatedAt());
 
-                Book updated = bookRepository.save(mappedBook);
-                return mapper.convertValue(updated, BookRespDTO.class);
+                updated = bookRepository.save(mappedBook);
             } catch (Exception e) {
                 throw new S3Exception(SAVING_BOOK_ERROR_FORMAT);
             }
+            if (bookReqDTO.getStock() != null) {
+                bookRepository.setStock(id, bookReqDTO.getStock());
+            }
+            eventPublisher.publishEvent(new BookChanged(id, before, updated));
+            return mapper.convertValue(updated, BookRespDTO.class);
         }
         throw new BookNotFoundException(String.format(NOT_FOUND_ERROR_FORMAT, "book", id));
     }
@@ -131,6 +199,8 @@ public class BookServiceImpl implements BookService {
                 throw new BookAlreadyExistsException(String.format(BOOK_ISBN_ALREADY_EXISTS_ERROR_FORMAT, bookReqPatchDTO.getIsbn()));
             }
 
+            Book before = copyOf(optionalBook.get());
+
             if (bookReqPatchDTO.getCategories() != null){
                 HashSet<Category> categoriesOnlyWithID = bookReqPatchDTO.getCategories().stream()
                         .map(categoryDTO -> mapper.convertValue(categoryDTO, Category.class))
@@ -141,6 +211,11 @@ public class BookServiceImpl implements BookService {
             modelMapper.map(bookReqPatchDTO, optionalBook.get());
 
             Book book = bookRepository.save(optionalBook.get());
+            // The stock column is not written by the save, which would put back the stock read above
+            if (bookReqPatchDTO.getStock() != null) {
+                bookRepository.setStock(id, bookReqPatchDTO.getStock());
+            }
+            eventPublisher.publishEvent(new BookChanged(id, before, book));
 
             return mapper.convertValue(book, BookRespDTO.class);
         }
@@ -148,20 +223,31 @@ public class BookServiceImpl implements BookService {
         throw new BookNotFoundException(String.format(NOT_FOUND_ERROR_FORMAT, "book", id));
     }
 
+    @Cacheable(value = "book", key = "#id")
     @Override
     public BookRespDTO findByID(Long id) {
         Optional<Book> searched = bookRepository.findById(id);
         if (searched.isPresent()) {
-            BookRespDTO bookRespDTO = mapper.convertValue(searched.get(), BookRespDTO.class);
-            bookRespDTO.setImageLinks(getImagesByBookID(bookRespDTO.getId()));
-            return bookRespDTO;
+            return toBookRespDTO(searched.get());
         }
         throw new BookNotFoundException(String.format(NOT_FOUND_ERROR_FORMAT, "book", id));
     }
 
     @Override
+    public List<BookRespDTO> findAllByIDs(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return bookRepository.findAllRanked(ids).stream()
+                .map(this::toBookRespDTO)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
     public void delete(Long id) {
-        if (bookRepository.existsById(id)) {
+        Optional<Book> searched = bookRepository.findById(id);
+        if (searched.isPresent()) {
             List<ImageDTO> listImages = bookImageService.findByBookID(id);
             if(!listImages.isEmpty()){
                 listImages.forEach(imageDTO -> {
@@ -169,12 +255,17 @@ public class BookServiceImpl implements BookService {
                 });
             }
             bookRepository.deleteById(id);
+            eventPublisher.publishEvent(new BookChanged(id, searched.get(), null));
         } else {
             throw new BookNotFoundException(String.format(NOT_FOUND_ERROR_FORMAT, "book", id));
         }
     }
 
     private Pageable buildPageable(String sort, String selection, short page, short size) {
+        return PageRequest.of(page, size, buildSort(sort, selection));
+    }
+
+    private Sort buildSort(String sort, String selection) {
         List<Sort.Order> orders = new ArrayList<>();
 
         if (sort != null) {
@@ -193,19 +284,35 @@ public class BookServiceImpl implements BookService {
             }
         }
 
-        Sort sorted = Sort.by(orders);
-        return PageRequest.of(page, size, sorted);
+        return Sort.by(orders);
     }
 
-    private Specification<Book> buildSpecification(String keyword, String category, String publisher, boolean releases) {
-        Specification<Book> spec = Specification.where(null);
+    private String encodeCursor(BookCursor cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(cursor));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode the book cursor", e);
+        }
+    }
 
-        if (keyword != null) {
-            spec= spec.and(BookSpecification.titleOrAuthorOrPublisherContainingSpec(keyword));
+    private BookCursor decodeCursor(String cursor) {
+        BookCursor decoded;
+        try {
+            decoded = mapper.readValue(Base64.getUrlDecoder().decode(cursor), BookCursor.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException(INVALID_CURSOR_MESSAGE);
+        }
+        if (decoded == null || decoded.getId() == null) {
+            throw new IllegalArgumentException(INVALID_CURSOR_MESSAGE);
         }
+        return decoded;
+    }
+
+    private Specification<Book> buildSpecification(String category, String publisher, boolean releases) {
+        Specification<Book> spec = Specification.where(null);
 
         if (category != null) {
-            spec = spec.and(BookSpecification.categorySpec(category));
+            spec = spec.and(BookSpecification.categorySpec(findCategoryIds(category)));
         }
 
         if (publisher != null) {
@@ -219,10 +326,52 @@ public class BookServiceImpl implements BookService {
         return spec;
     }
 
-    private List<ImageDTO> getImagesByBookID(Long bookID) {
-        return bookImageService.findByBookID(bookID);
+    private List<Long> findCategoryIds(String category) {
+        return category == null ? null : categoryRepository.findIdsByName(category);
+    }
+
+    /**
+     * Copies the fields used by the book queries, so the previous version of a book survives in-place changes.
+     *
+     * @param book The book to copy.
+     * @return A detached copy of the book with its filtering and sorting fields.
+     */
+    private Book copyOf(Book book) {
+        return Book.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .authors(book.getAuthors() == null ? null : new ArrayList<>(book.getAuthors()))
+                .publisher(book.getPublisher())
+                .publishedDate(book.getPublishedDate())
+                .createdAt(book.getCreatedAt())
+                .categories(book.getCategories())
+                .build();
+    }
+
+    /**
+     * Maps a book to its response, taking the image links from the images already fetched with the book's entity
+     * graph instead of querying them again.
+     *
+     * @param book The book to map.
+     * @return The BookRespDTO of the book, including its image links.
+     */
+    private BookRespDTO toBookRespDTO(Book book) {
+        BookRespDTO bookRespDTO = mapper.convertValue(book, BookRespDTO.class);
+        List<ImageDTO> imageLinks = new ArrayList<>();
+        if (book.getImages() != null) {
+            book.getImages().forEach(bookImage -> {
+                ImageDTO imageDTO = new ImageDTO();
+                imageDTO.setId(bookImage.getId());
+                imageDTO.setName(bookImage.getName());
+                imageDTO.setUrl(bookImage.getUrl());
+                imageLinks.add(imageDTO);
+            });
+        }
+        bookRespDTO.setImageLinks(imageLinks);
+        return bookRespDTO;
     }
 
+    @Cacheable(value = "authors")
     @Override
     public PageDTO<AuthorBookCountDTO> getAllAuthorsBookCount(int page, int size) {
         Page<AuthorBookCountDTO> authorBookPage = bookRepository.findAllAuthors(PageRequest.of(page,size));
@@ -0,0 +1,45 @@
+package com.mercadolibro.service.impl;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mercadolibro.dto.CacheStatsDTO;
+import com.mercadolibro.service.CacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class CacheServiceImpl implements CacheService {
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public CacheServiceImpl(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public List<CacheStatsDTO> getStats() {
+        List<CacheStatsDTO> stats = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (!(cache instanceof CaffeineCache)) {
+                continue;
+            }
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = ((CaffeineCache) cache).getNativeCache();
+            CacheStats cacheStats = nativeCache.stats();
+            stats.add(CacheStatsDTO.builder()
+                    .name(name)
+                    .estimatedSize(nativeCache.estimatedSize())
+                    .hitCount(cacheStats.hitCount())
+                    .missCount(cacheStats.missCount())
+                    .hitRate(cacheStats.hitRate())
+                    .evictionCount(cacheStats.evictionCount())
+                    .build());
+        }
+        return stats;
+    }
+}
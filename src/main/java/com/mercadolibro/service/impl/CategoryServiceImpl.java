@@ -8,6 +8,9 @@ import com.mercadolibro.exception.CategoryNotFoundException;
 import com.mercadolibro.repository.CategoryRepository;
 import com.mercadolibro.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -28,6 +31,7 @@ public class CategoryServiceImpl implements CategoryService {
         this.mapper = mapper;
     }
 
+    @Cacheable(value = "categories")
     @Override
     public List<CategoryRespDTO> findAll() {
         List<Category> searched = categoryRepository.findAll();
@@ -38,6 +42,7 @@ public class CategoryServiceImpl implements CategoryService {
         throw new BookNotFoundException(NO_CATEGORIES_TO_SHOW_ERROR_FORMAT);
     }
 
+    @Cacheable(value = "category", key = "#id")
     @Override
     public CategoryRespDTO findByID(Long id) {
         Optional<Category> searched = categoryRepository.findById(id);
@@ -47,12 +52,18 @@ public class CategoryServiceImpl implements CategoryService {
         throw new BookNotFoundException(String.format(CATEGORY_NOT_FOUND_ERROR_FORMAT, id));
     }
 
+    @CacheEvict(value = {"categories", "categoryIds"}, allEntries = true)
     @Override
     public CategoryRespDTO save(CategoryReqDTO category) {
         Category saved = categoryRepository.save(mapper.convertValue(category, Category.class));
         return mapper.convertValue(saved, CategoryRespDTO.class);
     }
 
+    @Caching(evict = {
+            @CacheEvict(value = {"categories", "categoryIds"}, allEntries = true),
+            @CacheEvict(value = "category", key = "#id"),
+            @CacheEvict(value = {"books", "book"}, allEntries = true)
+    })
     @Override
     public CategoryRespDTO update(Long id, CategoryReqDTO category){
         if (categoryRepository.existsById(id)) {
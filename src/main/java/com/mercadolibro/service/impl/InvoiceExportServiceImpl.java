@@ -0,0 +1,132 @@
+package com.mercadolibro.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercadolibro.dto.ExportFormat;
+import com.mercadolibro.dto.InvoiceItemSearchDTO;
+import com.mercadolibro.dto.InvoiceSearchDTO;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.service.InvoiceExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class InvoiceExportServiceImpl implements InvoiceExportService {
+    static final String CSV_HEADER = "invoice_id,date_created,user_id,payment_method,paid,subtotal,shipping,tax,total," +
+            "item_id,book_id,unit_price,quantity,item_total";
+
+    /* Rows read between flushes, matching the fetch size of the cursor */
+    private static final int FLUSH_ROWS = 500;
+
+    private final InvoiceRepository invoiceRepository;
+    private final ObjectMapper mapper;
+    private final EntityManager entityManager;
+
+    @Autowired
+    public InvoiceExportServiceImpl(InvoiceRepository invoiceRepository, ObjectMapper mapper,
+                                    EntityManager entityManager) {
+        this.invoiceRepository = invoiceRepository;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional
+    public void export(ExportFormat format, Writer writer) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        } else if (format == ExportFormat.JSON) {
+            writer.write('[');
+        }
+
+        try (Stream<Object[]> rows = invoiceRepository.streamAllWithItems()) {
+            InvoiceSearchDTO current = null;
+            long count = 0;
+            boolean first = true;
+            for (Iterator<Object[]> iterator = rows.iterator(); iterator.hasNext(); ) {
+                Object[] row = iterator.next();
+                Invoice invoice = (Invoice) row[0];
+                InvoiceItem item = (InvoiceItem) row[1];
+
+                if (current == null || !current.getId().equals(invoice.getId())) {
+                    if (current != null) {
+                        write(format, current, writer, first);
+                        first = false;
+                    }
+                    current = mapper.convertValue(invoice, InvoiceSearchDTO.class);
+                    current.setListInvoiceItems(new ArrayList<>());
+                }
+                if (item != null) {
+                    current.getListInvoiceItems().add(mapper.convertValue(item, InvoiceItemSearchDTO.class));
+                }
+
+                // Only the invoice being written is kept, the persistence context would otherwise grow with every row
+                if (++count % FLUSH_ROWS == 0) {
+                    entityManager.clear();
+                    writer.flush();
+                }
+            }
+            if (current != null) {
+                write(format, current, writer, first);
+            }
+        }
+        if (format == ExportFormat.JSON) {
+            writer.write(']');
+        }
+        writer.flush();
+    }
+
+    private void write(ExportFormat format, InvoiceSearchDTO invoice, Writer writer, boolean first) throws IOException {
+        if (format == ExportFormat.JSON) {
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write(mapper.writeValueAsString(invoice));
+            return;
+        }
+        if (format == ExportFormat.NDJSON) {
+            writer.write(mapper.writeValueAsString(invoice));
+            writer.write('\n');
+            return;
+        }
+
+        String invoiceColumns = csvRow(invoice.getId(), invoice.getDateCreated(), invoice.getUserId(),
+                invoice.getPaymentMethod(), invoice.getPaid(), invoice.getSubTotal(), invoice.getShipping(),
+                invoice.getTax(), invoice.getTotal());
+        if (invoice.getListInvoiceItems().isEmpty()) {
+            writer.write(invoiceColumns + ",,,,,\n");
+            return;
+        }
+        for (InvoiceItemSearchDTO item : invoice.getListInvoiceItems()) {
+            writer.write(invoiceColumns + ',' + csvRow(item.getId(), item.getBookId(), item.getUnitPrice(),
+                    item.getQuantity(), item.getTotal()) + '\n');
+        }
+    }
+
+    private static String csvRow(Object... values) {
+        return Arrays.stream(values)
+                .map(InvoiceExportServiceImpl::csvValue)
+                .collect(Collectors.joining(","));
+    }
+
+    private static String csvValue(Object value) {
+        String text = Objects.toString(value, "");
+        if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
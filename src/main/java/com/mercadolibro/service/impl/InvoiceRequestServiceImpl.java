@@ -1,6 +1,5 @@
 package com.mercadolibro.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mercadolibro.dto.*;
 import com.mercadolibro.entity.Book;
@@ -8,39 +7,43 @@ import com.mercadolibro.entity.Invoice;
 import com.mercadolibro.entity.InvoiceItem;
 import com.mercadolibro.exception.BookNotFoundException;
 import com.mercadolibro.entity.InvoiceRequest;
+import com.mercadolibro.entity.SalesRollup;
 import com.mercadolibro.events.InvoiceCreated;
+import com.mercadolibro.events.InvoicePaid;
 import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.repository.AppUserRepository;
 import com.mercadolibro.repository.BookRepository;
 import com.mercadolibro.repository.InvoiceItemRepository;
 import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.repository.SalesRollupRepository;
 import com.mercadolibro.service.BookService;
 import com.mercadolibro.service.InvoiceRequestService;
+import com.mercadolibro.service.PreferenceService;
+import com.mercadolibro.service.StockService;
+import com.mercadolibro.service.analytics.SalesAnalyticsStore;
+import com.mercadolibro.service.analytics.SalesMetric;
+import com.mercadolibro.service.analytics.SalesSummary;
+import com.mercadolibro.util.RetryPolicy;
 import com.mercadolibro.service.UserService;
+import com.mercadolibro.service.mercadopago.PaymentGateway;
 import com.mercadopago.client.common.IdentificationRequest;
-import com.mercadopago.client.payment.PaymentClient;
 import com.mercadopago.client.payment.PaymentCreateRequest;
 import com.mercadopago.client.payment.PaymentPayerRequest;
-import com.mercadopago.client.payment.*;
-import com.mercadopago.client.preference.PreferenceBackUrlsRequest;
-import com.mercadopago.client.preference.PreferenceClient;
-import com.mercadopago.client.preference.PreferenceItemRequest;
-import com.mercadopago.client.preference.PreferenceRequest;
-import com.mercadopago.core.MPRequestOptions;
-import com.mercadopago.exceptions.MPApiException;
-import com.mercadopago.exceptions.MPException;
-import com.mercadopago.net.MPResponse;
 import com.mercadopago.resources.payment.Payment;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.context.ApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import com.mercadolibro.service.UserService;
-import com.mercadopago.resources.preference.Preference;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.transaction.Transactional;
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -50,34 +53,51 @@ import static com.mercadolibro.service.impl.BookServiceImpl.NOT_FOUND_ERROR_FORM
 public class InvoiceRequestServiceImpl implements InvoiceRequestService {
     private final InvoiceRepository invoiceRepository;
     private final InvoiceItemRepository invoiceItemRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final SalesAnalyticsStore salesAnalyticsStore;
     private final ObjectMapper mapper;
-    private final String mercadoPagoAccessToken;
-    private final String frontendBaseUrl;
+    private final PaymentGateway paymentGateway;
+    private final TransactionTemplate transactionTemplate;
     private final BookRepository bookRepository;
+    private final AppUserRepository appUserRepository;
     private final BookService bookService;
+    private final StockService stockService;
+    private final RetryPolicy stockRetryPolicy;
+    private final PreferenceService preferenceService;
     private final UserService userService;
     private final ApplicationContext applicationContext;
+    private final Object salesAnalyticsLoading = new Object();
 
 
     public static final String INSUFFICIENT_STOCK_FOR_BOOK = "Insufficient stock for book '%s'";
     public static final String INVOICE_ALREADY_PAID = "Invoice with ID '%s' is already paid";
     public static final String INVOICE_NOT_FOUND = "Invoice with ID '%s' not found";
+    public static final String STOCK_CONTENTION = "Stock of the books of invoice '%s' is changing too fast, try again";
+    public static final String INVALID_DATE_RANGE = "Date range from '%s' to '%s' ends before it starts";
+    public static final int BEST_SELLERS_LIST_SIZE = 10;
 
 
-    public InvoiceRequestServiceImpl(InvoiceRepository invoiceRepository, InvoiceItemRepository invoiceItemRepository, ObjectMapper mapper, String mercadoPagoAccessToken, String frontendBaseUrl, BookRepository bookRepository, BookService bookService, UserService userService, ApplicationContext applicationContext) {
+    public InvoiceRequestServiceImpl(InvoiceRepository invoiceRepository, InvoiceItemRepository invoiceItemRepository, SalesRollupRepository salesRollupRepository, SalesAnalyticsStore salesAnalyticsStore, ObjectMapper mapper, PaymentGateway paymentGateway, TransactionTemplate transactionTemplate, BookRepository bookRepository, AppUserRepository appUserRepository, BookService bookService, StockService stockService, RetryPolicy stockRetryPolicy, PreferenceService preferenceService, UserService userService, ApplicationContext applicationContext) {
         this.invoiceRepository = invoiceRepository;
         this.invoiceItemRepository = invoiceItemRepository;
+        this.salesRollupRepository = salesRollupRepository;
+        this.salesAnalyticsStore = salesAnalyticsStore;
         this.mapper = mapper;
-        this.mercadoPagoAccessToken = mercadoPagoAccessToken;
-        this.frontendBaseUrl = frontendBaseUrl;
+        this.paymentGateway = paymentGateway;
+        this.transactionTemplate = transactionTemplate;
         this.bookRepository = bookRepository;
+        this.appUserRepository = appUserRepository;
         this.bookService = bookService;
+        this.stockService = stockService;
+        this.stockRetryPolicy = stockRetryPolicy;
+        this.preferenceService = preferenceService;
         this.userService = userService;
         this.applicationContext = applicationContext;
     }
 
+    @Cacheable(value = "invoice", key = "#id", condition = "#expand.isEmpty()")
     @Override
-    public InvoiceSearchDTO findById(UUID id) {
+    public InvoiceSearchDTO findById(UUID id, Set<InvoiceExpand> expand) {
         // Invoice
         Optional<Invoice> optionalInvoice = invoiceRepository.findById(id);
         if (optionalInvoice.isEmpty()) {
@@ -86,40 +106,17 @@ public class InvoiceRequestServiceImpl implements InvoiceRequestService {
 
         InvoiceSearchDTO invoiceSearchDTO = mapper.convertValue(optionalInvoice, InvoiceSearchDTO.class);
         invoiceSearchDTO.setListInvoiceItems(getListItems(invoiceSearchDTO.getId()));
+        expand(List.of(invoiceSearchDTO), expand);
         return invoiceSearchDTO;
     }
 
+    @Cacheable(value = "invoices")
     @Override
-    public List<InvoiceSearchDTO> findAll() {
-        // Invoice
-        List<Invoice> invoiceList = invoiceRepository.findAll();
-        List<InvoiceSearchDTO> invoiceDTOList = new ArrayList<>();
-        for (Invoice invoice : invoiceList) {
-            invoiceDTOList.add(mapper.convertValue(invoice, InvoiceSearchDTO.class));
-        }
-
-        for (InvoiceSearchDTO invoiceDTO : invoiceDTOList) {
-            invoiceDTO.setListInvoiceItems(getListItems(invoiceDTO.getId()));
-        }
-        return invoiceDTOList;
-    }
-
-    @Override
-    public PageDTO<InvoiceSearchDTO> findAll(int page, int size) {
+    public PageDTO<InvoiceSearchDTO> findAll(int page, int size, Set<InvoiceExpand> expand) {
         // Invoice
         Page<Invoice> invoicePage = invoiceRepository.findAll(PageRequest.of(page,size));
-        List<Invoice> invoiceList = invoicePage.getContent();
-        List<InvoiceSearchDTO> invoiceDTOList = new ArrayList<>();
-        for (Invoice invoice : invoiceList) {
-            invoiceDTOList.add(mapper.convertValue(invoice, InvoiceSearchDTO.class));
-        }
-        for (InvoiceSearchDTO invoiceDTO : invoiceDTOList) {
-            invoiceDTO.setListInvoiceItems(getListItems(invoiceDTO.getId()));
-        }
-        //TODO: Ver si incluir o no la info de cada User, porque la consulta de invoices dura mas de 40 segundos.
-        /*for (InvoiceSearchDTO invoiceDTO : invoiceDTOList) {
-            invoiceDTO.setClientDTO(getUser(invoiceDTO.getId()));
-        }*/
+        List<InvoiceSearchDTO> invoiceDTOList = toInvoiceSearchDTOs(invoicePage.getContent());
+        expand(invoiceDTOList, expand);
         // PageDTO
         return new PageDTO<>(
                 invoiceDTOList,
@@ -130,200 +127,166 @@ public class InvoiceRequestServiceImpl implements InvoiceRequestService {
         );
     }
 
+    /* Runs outside of a transaction, so no database connection is held while MercadoPago answers */
+    @Caching(evict = {
+            @CacheEvict(value = "invoice", key = "#invoiceId"),
+            @CacheEvict(value = {"invoices", "userInvoices"}, allEntries = true)
+    })
     @Override
-    @Transactional
     public PaymentRespDTO processPayment(UUID invoiceId, PaymentReqDTO paymentReqDTO) {
-        InvoiceSearchDTO invoice = findById(invoiceId);
-        checkBookStocks(invoice);
+        InvoiceSearchDTO invoice = findById(invoiceId, Collections.emptySet());
+        holdBookStocks(invoice);
+
+        PaymentCreateRequest paymentCreateRequest =
+                PaymentCreateRequest.builder()
+                        .transactionAmount(paymentReqDTO.getTransactionAmount())
+                        .token(paymentReqDTO.getToken())
+                        .description(paymentReqDTO.getDescription())
+                        .installments(paymentReqDTO.getInstallments())
+                        .payer(
+                                PaymentPayerRequest.builder()
+                                        .email(paymentReqDTO.getPayer().getEmail())
+                                        .identification(
+                                                IdentificationRequest.builder()
+                                                        .type(paymentReqDTO.getPayer().getIdentification().getType())
+                                                        .number(paymentReqDTO.getPayer().getIdentification().getNumber())
+                                                        .build())
+                                        .build())
+                        .build();
 
-        try {
-            Map<String, String> customHeaders = new HashMap<>();
-            customHeaders.put("x-idempotency-key", invoiceId.toString());
-
-            MPRequestOptions requestOptions = MPRequestOptions.builder()
-                    .customHeaders(customHeaders)
-                    .accessToken(mercadoPagoAccessToken)
-                    .build();
-
-            PaymentClient paymentClient = new PaymentClient();
-
-            PaymentCreateRequest paymentCreateRequest =
-                    PaymentCreateRequest.builder()
-                            .transactionAmount(paymentReqDTO.getTransactionAmount())
-                            .token(paymentReqDTO.getToken())
-                            .description(paymentReqDTO.getDescription())
-                            .installments(paymentReqDTO.getInstallments())
-                            .payer(
-                                    PaymentPayerRequest.builder()
-                                            .email(paymentReqDTO.getPayer().getEmail())
-                                            .identification(
-                                                    IdentificationRequest.builder()
-                                                            .type(paymentReqDTO.getPayer().getIdentification().getType())
-                                                            .number(paymentReqDTO.getPayer().getIdentification().getNumber())
-                                                            .build())
-                                            .build())
-                            .build();
-
-            Payment payment = paymentClient.create(paymentCreateRequest, requestOptions);
-            PaymentStatus paymentStatus = PaymentStatus.getById(payment.getCard().getCardholder().getName());
-
-            PaymentRespDTO paymentResponse = mapper.convertValue(payment, PaymentRespDTO.class);
-            paymentResponse.setDetail(paymentStatus.getDetails());
-
-            if (payment.getStatus().equals("approved")) {
-                updateBookStocksAndInvoiceStatus(invoice);
-            } else if (payment.getStatus().equals("rejected")) {
-                invoiceRepository.deleteById(invoiceId);
-            }
+        // The invoice ID is the idempotency key, so a retried call never charges twice
+        Payment payment = paymentGateway.create(paymentCreateRequest, invoiceId.toString());
+        PaymentStatus paymentStatus = PaymentStatus.getById(payment.getCard().getCardholder().getName());
 
-            return paymentResponse;
-        } catch (MPException e) {
-            throw new InvoicePaymentException(e.getMessage());
-        } catch (MPApiException e) {
-            MPResponse response = e.getApiResponse();
-            try {
-                MercadoPagoErrorResponse mercadoPagoError = mapper.readValue(response.getContent(), MercadoPagoErrorResponse.class);
-                throw new InvoicePaymentException(mercadoPagoError.getMessage(), mercadoPagoError.getStatus());
-            } catch (JsonProcessingException jsonException) {
-                throw new InvoicePaymentException(jsonException.getMessage());
-            }
+        PaymentRespDTO paymentResponse = mapper.convertValue(payment, PaymentRespDTO.class);
+        paymentResponse.setDetail(paymentStatus.getDetails());
+
+        if (payment.getStatus().equals("approved")) {
+            // The paid flag, stock, units sold and rollups commit or roll back together, and are retried as a whole
+            retryOnStockConflict(invoiceId, () ->
+                    transactionTemplate.executeWithoutResult(status -> updateBookStocksAndInvoiceStatus(invoice)));
+        } else if (payment.getStatus().equals("rejected")) {
+            invoiceRepository.deleteById(invoiceId);
+            stockService.release(invoiceId);
         }
-    }
 
+        return paymentResponse;
+    }
 
+    @CacheEvict(value = {"invoices", "userInvoices"}, allEntries = true)
     @Override
     public InvoiceRequestDTO save(InvoiceRequest invoiceRequest) {
         // This could be done through database constraints but I dont wanna do it
-        for (InvoiceItem invoiceItem : invoiceRequest.getInvoiceItemList()) {
-            if (!bookRepository.existsById(invoiceItem.getBookId())){
-                throw new BookNotFoundException(String.format(NOT_FOUND_ERROR_FORMAT, "book", invoiceItem.getBookId()));
-            }
+        Set<Long> bookIds = invoiceRequest.getInvoiceItemList().stream()
+                .map(InvoiceItem::getBookId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        bookIds.removeAll(bookRepository.findExistingIds(bookIds));
+        if (!bookIds.isEmpty()) {
+            throw new BookNotFoundException(String.format(NOT_FOUND_ERROR_FORMAT, "book", bookIds.iterator().next()));
         }
 
         // Invoice
         invoiceRequest.getInvoice().setPaid(false);
+        invoiceRequest.getInvoice().setPreferenceStatus(PreferenceStatus.PENDING);
         Invoice createdInvoice = invoiceRepository.save(invoiceRequest.getInvoice());
         InvoiceDTO createdInvoiceDTO = mapper.convertValue(createdInvoice, InvoiceDTO.class);
-        // InvoiceItem
-        List<InvoiceItemDTO> createdInvoiceItemDTOList = new ArrayList<>();
-        for (InvoiceItem invoiceItem: invoiceRequest.getInvoiceItemList()) {
-            invoiceItem.setInvoiceId(createdInvoiceDTO.getId());
-            InvoiceItem createdInvoiceItem = invoiceItemRepository.save(invoiceItem);
-            createdInvoiceItemDTOList.add(mapper.convertValue(createdInvoiceItem, InvoiceItemDTO.class));
+
+        // Stock is held from now on, so a customer without stock is told before paying
+        Map<Long, Integer> quantities = invoiceRequest.getInvoiceItemList().stream()
+                .collect(Collectors.groupingBy(InvoiceItem::getBookId, Collectors.summingInt(InvoiceItem::getQuantity)));
+        try {
+            retryOnStockConflict(createdInvoice.getId(), () -> stockService.reserve(createdInvoice.getId(), quantities));
+        } catch (RuntimeException e) {
+            invoiceRepository.deleteById(createdInvoice.getId());
+            throw e;
         }
+        // InvoiceItem
+        invoiceRequest.getInvoiceItemList().forEach(invoiceItem -> invoiceItem.setInvoiceId(createdInvoiceDTO.getId()));
+        List<InvoiceItemDTO> createdInvoiceItemDTOList = invoiceItemRepository.saveAll(invoiceRequest.getInvoiceItemList())
+                .stream()
+                .map(invoiceItem -> mapper.convertValue(invoiceItem, InvoiceItemDTO.class))
+                .collect(Collectors.toList());
 
         // InvoiceCreated Event
         applicationContext.publishEvent(new InvoiceCreated(Math.toIntExact(createdInvoice.getUserId()), createdInvoiceItemDTOList.stream().map(InvoiceItemDTO::getBookId).collect(Collectors.toList())));
 
         InvoiceRequestDTO invoiceRequestDTO = new InvoiceRequestDTO(createdInvoiceDTO, createdInvoiceItemDTOList);
 
-        // Generate MercadoPago preference
-        Preference preference = generatePreference(invoiceRequestDTO);
-        invoiceRequestDTO.getInvoiceDTO().setPreferenceId(preference.getId());
+        // MercadoPago preference, created in the background and polled through the invoice's preference status
+        preferenceService.requestPreference(createdInvoice.getId(), invoiceRequest.getInvoiceItemList());
 
         // InvoiceRequest
         return invoiceRequestDTO;
     }
 
-    private void checkBookStocks(InvoiceSearchDTO invoiceSearchDTO) {
+    /**
+     * Makes sure the units of an invoice are held before it is charged, so a charged card always gets its books.
+     * The reservation made when the invoice was created is claimed, or the units are reserved again if it was
+     * released after expiring.
+     *
+     * @param invoiceSearchDTO The invoice about to be charged.
+     * @throws InvoicePaymentException If the invoice is already paid, or its books no longer have enough stock.
+     */
+    private void holdBookStocks(InvoiceSearchDTO invoiceSearchDTO) {
         if (invoiceSearchDTO.getPaid()) {
             throw new InvoicePaymentException(String.format(INVOICE_ALREADY_PAID, invoiceSearchDTO.getId()), HttpStatus.BAD_REQUEST.value());
         }
 
-        List<String> insufficientStockBooks = new ArrayList<>();
-        for (InvoiceItemSearchDTO invoiceItem : invoiceSearchDTO.getListInvoiceItems()) {
-            BookRespDTO book = bookService.findByID(invoiceItem.getBookId());
-            if (book.getStock() < invoiceItem.getQuantity()) {
-                insufficientStockBooks.add(book.getTitle());
-            }
-        }
-
-        if (!insufficientStockBooks.isEmpty()) {
-            throw new InvoicePaymentException(String.format(INSUFFICIENT_STOCK_FOR_BOOK, String.join(", ", insufficientStockBooks)), HttpStatus.CONFLICT.value());
+        UUID invoiceId = invoiceSearchDTO.getId();
+        if (!stockService.claim(invoiceId)) {
+            Map<Long, Integer> quantities = getBookQuantities(invoiceSearchDTO);
+            retryOnStockConflict(invoiceId, () -> stockService.reserve(invoiceId, quantities));
         }
     }
 
     private void updateBookStocksAndInvoiceStatus(InvoiceSearchDTO invoiceSearchDTO) {
-        List<Book> booksToSave = new ArrayList<>();
-        for (InvoiceItemSearchDTO invoiceItem : invoiceSearchDTO.getListInvoiceItems()) {
-            BookRespDTO book = bookService.findByID(invoiceItem.getBookId());
-            book.setStock(book.getStock() - invoiceItem.getQuantity());
-            booksToSave.add(mapper.convertValue(book, Book.class));
+        if (invoiceRepository.markAsPaid(invoiceSearchDTO.getId()) == 0) {
+            throw new InvoicePaymentException(String.format(INVOICE_ALREADY_PAID, invoiceSearchDTO.getId()), HttpStatus.CONFLICT.value());
         }
-
-        bookRepository.saveAll(booksToSave);
-
-        Invoice invoice = mapper.convertValue(invoiceSearchDTO, Invoice.class);
-        invoice.setPaid(true);
-        invoiceRepository.save(invoice);
+        Map<Long, Integer> quantities = getBookQuantities(invoiceSearchDTO);
+        // Only if the claim lapsed, which needs the payment to outlast a whole reservation TTL
+        if (!stockService.confirm(invoiceSearchDTO.getId())) {
+            stockService.decrementStock(quantities);
+        }
+        // Counted with the payment, in ID order so concurrent payments of the same books lock them alike
+        new TreeMap<>(quantities).forEach(bookRepository::addUnitsSold);
+        applicationContext.publishEvent(new InvoicePaid(invoiceSearchDTO));
     }
 
-    private Preference generatePreference(InvoiceRequestDTO invoiceRequestDTO) {
+    /**
+     * Runs a stock change, retrying with backoff while concurrent checkouts of the same books keep changing their
+     * stock. Every attempt runs in its own transaction, which is rolled back as a whole before the next one.
+     *
+     * @param invoiceId The ID of the invoice whose stock is changed.
+     * @param stockChange The stock change to run.
+     * @throws InvoicePaymentException If the stock is insufficient, or still contended after the last attempt.
+     */
+    private void retryOnStockConflict(UUID invoiceId, Runnable stockChange) {
         try {
-            MPRequestOptions requestOptions = MPRequestOptions.builder()
-                    .accessToken(mercadoPagoAccessToken)
-                    .build();
-
-            PreferenceClient preferenceClient = new PreferenceClient();
-
-            List<PreferenceItemRequest> items = new ArrayList<>();
-
-            for (InvoiceItemDTO itemDTO : invoiceRequestDTO.getInvoiceItemDTOList()) {
-                BookRespDTO book = bookService.findByID(itemDTO.getBookId());
-
-                String imageUrl = (book.getImageLinks() != null && !book.getImageLinks().isEmpty())
-                        ? book.getImageLinks().get(0).getUrl()
-                        : null;
-
-                PreferenceItemRequest item = PreferenceItemRequest.builder()
-                        .title(book.getTitle())
-                        .description(book.getDescription())
-                        .quantity(itemDTO.getQuantity())
-                        .unitPrice(BigDecimal.valueOf(itemDTO.getUnitPrice()))
-                        .pictureUrl(imageUrl)
-                        .build();
-                items.add(item);
-            }
-
-            PreferenceBackUrlsRequest backUrls =
-                    PreferenceBackUrlsRequest.builder()
-                            .success(frontendBaseUrl + "/successful")
-                            .pending(frontendBaseUrl + "/pending")
-                            .failure(frontendBaseUrl + "/failure")
-                            .build();
-
-
-            PreferenceRequest request = PreferenceRequest.builder()
-                    .items(items)
-                    .backUrls(backUrls)
-                    .autoReturn("approved")
-                    .build();
-
-            return preferenceClient.create(request, requestOptions);
-        } catch (MPException e) {
-            throw new InvoicePaymentException(e.getMessage());
-        } catch (MPApiException e) {
-            MPResponse response = e.getApiResponse();
-            try {
-                MercadoPagoErrorResponse mercadoPagoError = mapper.readValue(response.getContent(), MercadoPagoErrorResponse.class);
-                throw new InvoicePaymentException(mercadoPagoError.getMessage(), mercadoPagoError.getStatus());
-            } catch (JsonProcessingException jsonException) {
-                throw new InvoicePaymentException(jsonException.getMessage());
-            }
+            stockRetryPolicy.execute(stockChange, ConcurrencyFailureException.class);
+        } catch (ConcurrencyFailureException e) {
+            throw new InvoicePaymentException(String.format(STOCK_CONTENTION, invoiceId), HttpStatus.CONFLICT.value());
         }
     }
 
+    /**
+     * Adds up the quantities of the items of an invoice by book, since a book may appear in several items.
+     *
+     * @param invoiceSearchDTO The invoice whose items are added up.
+     * @return The quantity of each book of the invoice, by book ID.
+     */
+    private Map<Long, Integer> getBookQuantities(InvoiceSearchDTO invoiceSearchDTO) {
+        return invoiceSearchDTO.getListInvoiceItems().stream()
+                .collect(Collectors.groupingBy(InvoiceItemSearchDTO::getBookId,
+                        Collectors.summingInt(InvoiceItemSearchDTO::getQuantity)));
+    }
+
+    @Cacheable(value = "userInvoices")
     @Override
-    public PageDTO<InvoiceSearchDTO> findByUserId(Long userId, int page, int size) {
+    public PageDTO<InvoiceSearchDTO> findByUserId(Long userId, int page, int size, Set<InvoiceExpand> expand) {
         Page<Invoice> invoicePage = invoiceRepository.findByUserId(userId, PageRequest.of(page,size));
-        List<Invoice> invoiceList = invoicePage.getContent();
-        List<InvoiceSearchDTO> invoiceDTOList = new ArrayList<>();
-        for (Invoice invoice : invoiceList) {
-            invoiceDTOList.add(mapper.convertValue(invoice, InvoiceSearchDTO.class));
-        }
-        for (InvoiceSearchDTO invoiceDTO : invoiceDTOList) {
-            invoiceDTO.setListInvoiceItems(getListItems(invoiceDTO.getId()));
-        }
+        List<InvoiceSearchDTO> invoiceDTOList = toInvoiceSearchDTOs(invoicePage.getContent());
+        expand(invoiceDTOList, expand);
         return new PageDTO<>(
                 invoiceDTOList,
                 invoicePage.getTotalPages(),
@@ -333,82 +296,189 @@ public class InvoiceRequestServiceImpl implements InvoiceRequestService {
         );
     }
 
+    @Cacheable(value = "bestsellers")
     @Override
     public List<BookRespDTO> findBestSellersList() {
-        List<InvoiceItem> invoiceItemPage = invoiceItemRepository.findBestSellersList();
-        List<Long> longList = new ArrayList<>();
-        for (InvoiceItem invoiceItem: invoiceItemPage) {
-            longList.add(invoiceItem.getBookId());
+        return bookService.findAllByIDs(
+                bookRepository.findBestSellerIds(PageRequest.of(0, BEST_SELLERS_LIST_SIZE)).getContent());
+    }
+
+    @Cacheable(value = "bestsellers")
+    @Override
+    public PageDTO<BookRespDTO> findBestSellersPage(int page, int size) {
+        Page<Long> bestSellerIds = bookRepository.findBestSellerIds(PageRequest.of(page, size));
+        return new PageDTO<>(
+                bookService.findAllByIDs(bestSellerIds.getContent()),
+                bestSellerIds.getTotalPages(),
+                bestSellerIds.getTotalElements(),
+                bestSellerIds.getNumber(),
+                bestSellerIds.getSize()
+        );
+    }
+
+    /* Answered from memory once the analytics are loaded, and from the rollups of the database until then */
+    @Override
+    public PageDTO<MonthlySaleDTO> getMonthlySales(int page, int size) {
+        if (!salesAnalyticsStore.isLoaded()) {
+            return toPageDTO(salesRollupRepository.findMonthlySales(PageRequest.of(page, size)));
         }
-        List<BookRespDTO> bookRespDTOPageDTO = new ArrayList<>();
-        for (Long bookId: longList) {
-            try {
-                bookRespDTOPageDTO.add(bookService.findByID(bookId));
-            }
-            catch(Exception ignored) {
-            }
+        List<MonthlySaleDTO> sales = new ArrayList<>();
+        salesAnalyticsStore.sumByMonth(SalesMetric.INVOICES, null, null).forEach((month, invoices) ->
+                sales.add(MonthlySaleDTO.of(month.getYear(), month.getMonthValue(), invoices.intValue())));
+        Collections.reverse(sales);
+        return slice(sales, page, size);
+    }
+
+    @Override
+    public PageDTO<CategorySalesDTO> getSalesByCategory(int page, int size) {
+        if (!salesAnalyticsStore.isLoaded()) {
+            return toPageDTO(salesRollupRepository.findSalesByCategory(PageRequest.of(page, size)));
         }
-        return bookRespDTOPageDTO;
+        return slice(salesAnalyticsStore.rank(SalesRollup.Dimension.CATEGORY, SalesMetric.UNITS, null, null).stream()
+                .map(total -> CategorySalesDTO.of(total.getKey(), (long) total.getValue()))
+                .collect(Collectors.toList()), page, size);
     }
 
     @Override
-    public PageDTO<BookRespDTO> findBestSellersPage(int page, int size) {
-        Page<InvoiceItem> invoiceItemPage = invoiceItemRepository.findBestSellersPage(PageRequest.of(page,size));
-        //List<InvoiceItem> invoiceItemPage = invoiceItemRepository.findBestSellersList();
-        List<Long> longList = new ArrayList<>();
-        for (InvoiceItem invoiceItem: invoiceItemPage) {
-            longList.add(invoiceItem.getBookId());
+    public PageDTO<PaymentTypeSaleDTO> findSalesByPaymentType(int page, int size) {
+        if (!salesAnalyticsStore.isLoaded()) {
+            return toPageDTO(salesRollupRepository.findSalesByPaymentType(PageRequest.of(page, size)));
         }
-        List<BookRespDTO> bookRespDTOPageDTO = new ArrayList<>();
-        for (Long bookId: longList) {
-            try {
-                bookRespDTOPageDTO.add(bookService.findByID(bookId));
+        return slice(salesAnalyticsStore.rank(SalesRollup.Dimension.PAYMENT_METHOD, SalesMetric.INVOICES, null, null)
+                .stream()
+                .map(total -> PaymentTypeSaleDTO.of(PaymentMethod.valueOf(total.getKey()), (long) total.getValue()))
+                .collect(Collectors.toList()), page, size);
+    }
+
+    /* Always answered from memory, loading the analytics first if they are not loaded yet */
+    @Override
+    public PageDTO<SalesSummaryDTO> getSales(SalesDimension dimension, SalesMetric sort, LocalDate from, LocalDate to,
+                                             int page, int size) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException(String.format(INVALID_DATE_RANGE, from, to));
+        }
+        if (!salesAnalyticsStore.isLoaded()) {
+            // Concurrent requests wait for a single first load
+            synchronized (salesAnalyticsLoading) {
+                if (!salesAnalyticsStore.isLoaded()) {
+                    salesAnalyticsStore.reload();
+                }
             }
-            catch(Exception ignored) {
+        }
+
+        LocalDate end = to == null ? null : to.plusDays(1);
+        List<SalesSummary> summaries = dimension == SalesDimension.MONTH
+                ? salesAnalyticsStore.summarizeByMonth(from, end)
+                : salesAnalyticsStore.summarize(SalesRollup.Dimension.valueOf(dimension.name()), sort, from, end);
+        PageDTO<SalesSummaryDTO> sales = slice(summaries.stream()
+                .map(summary -> new SalesSummaryDTO(summary.getKey(), null, summary.getInvoices(),
+                        summary.getUnits(), summary.getRevenue()))
+                .collect(Collectors.toList()), page, size);
+
+        if (dimension == SalesDimension.BOOK && !sales.getContent().isEmpty()) {
+            Map<String, String> titles = new HashMap<>();
+            for (Object[] row : bookRepository.findTitles(sales.getContent().stream()
+                    .map(sale -> Long.valueOf(sale.getKey()))
+                    .collect(Collectors.toSet()))) {
+                titles.put(row[0].toString(), (String) row[1]);
             }
+            sales.getContent().forEach(sale -> sale.setName(titles.get(sale.getKey())));
         }
-        //return bookRespDTOPageDTO;
-        return new PageDTO<>(
-                bookRespDTOPageDTO,
-                invoiceItemPage.getTotalPages(),
-                invoiceItemPage.getTotalElements(),
-                invoiceItemPage.getNumber(),
-                invoiceItemPage.getSize()
-        );
+        return sales;
     }
 
-    public PageDTO<MonthlySaleDTO> getMonthlySales(int page, int size) {
-        Page<MonthlySaleDTO> invoicePage = invoiceRepository.getMonthlySales(PageRequest.of(page,size));
+    private static <T> PageDTO<T> toPageDTO(Page<T> page) {
         return new PageDTO<>(
-                invoicePage.getContent(),
-                invoicePage.getTotalPages(),
-                invoicePage.getTotalElements(),
-                invoicePage.getNumber(),
-                invoicePage.getSize()
+                page.getContent(),
+                page.getTotalPages(),
+                page.getTotalElements(),
+                page.getNumber(),
+                page.getSize()
         );
     }
 
-    public PageDTO<CategorySalesDTO> getSalesByCategory(int page, int size) {
-        Page<CategorySalesDTO> invoicePage = invoiceRepository.getSalesByCategory(PageRequest.of(page,size));
+    /**
+     * Cuts a page out of a whole result.
+     *
+     * @param all Every element of the result, in order.
+     * @param page The page number.
+     * @param size The number of elements per page.
+     * @return The page, empty if it is past the end of the result.
+     */
+    private static <T> PageDTO<T> slice(List<T> all, int page, int size) {
+        int from = (int) Math.min((long) page * size, all.size());
+        int to = Math.min(from + size, all.size());
         return new PageDTO<>(
-                invoicePage.getContent(),
-                invoicePage.getTotalPages(),
-                invoicePage.getTotalElements(),
-                invoicePage.getNumber(),
-                invoicePage.getSize()
+                new ArrayList<>(all.subList(from, to)),
+                (all.size() + size - 1) / size,
+                (long) all.size(),
+                page,
+                size
         );
     }
 
-    @Override
-    public PageDTO<PaymentTypeSaleDTO> findSalesByPaymentType(int page, int size) {
-        Page<PaymentTypeSaleDTO> invoicePage = invoiceRepository.findSalesByPaymentType(PageRequest.of(page,size));
-        return new PageDTO<>(
-                invoicePage.getContent(),
-                invoicePage.getTotalPages(),
-                invoicePage.getTotalElements(),
-                invoicePage.getNumber(),
-                invoicePage.getSize()
-        );
+    /**
+     * Maps a page of invoices with their items, loading the items of the whole page with a single query.
+     *
+     * @param invoices The invoices of the page.
+     * @return The invoices with their items, in the same order.
+     */
+    private List<InvoiceSearchDTO> toInvoiceSearchDTOs(List<Invoice> invoices) {
+        if (invoices.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<UUID> invoiceIds = invoices.stream().map(Invoice::getId).collect(Collectors.toSet());
+        Map<UUID, List<InvoiceItemSearchDTO>> itemsByInvoice = invoiceItemRepository.findByInvoiceIdIn(invoiceIds).stream()
+                .collect(Collectors.groupingBy(InvoiceItem::getInvoiceId,
+                        Collectors.mapping(invoiceItem -> mapper.convertValue(invoiceItem, InvoiceItemSearchDTO.class),
+                                Collectors.toList())));
+
+        List<InvoiceSearchDTO> invoiceDTOList = new ArrayList<>();
+        for (Invoice invoice : invoices) {
+            InvoiceSearchDTO invoiceDTO = mapper.convertValue(invoice, InvoiceSearchDTO.class);
+            invoiceDTO.setListInvoiceItems(itemsByInvoice.getOrDefault(invoice.getId(), new ArrayList<>()));
+            invoiceDTOList.add(invoiceDTO);
+        }
+        return invoiceDTOList;
+    }
+
+    /**
+     * Adds the requested details to the invoices, fetching the books of all their items and all their users with
+     * one query each, whatever the number of invoices.
+     *
+     * @param invoices The invoices to expand, with their items.
+     * @param expand The details to add.
+     */
+    private void expand(List<InvoiceSearchDTO> invoices, Set<InvoiceExpand> expand) {
+        if (expand.contains(InvoiceExpand.BOOK)) {
+            List<InvoiceItemSearchDTO> items = invoices.stream()
+                    .flatMap(invoice -> invoice.getListInvoiceItems().stream())
+                    .collect(Collectors.toList());
+            Set<Long> bookIds = items.stream()
+                    .map(InvoiceItemSearchDTO::getBookId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            if (!bookIds.isEmpty()) {
+                Map<Long, BookDTO> books = bookRepository.findByIdIn(bookIds).stream()
+                        .collect(Collectors.toMap(Book::getId, book -> mapper.convertValue(book, BookDTO.class),
+                                (first, second) -> first));
+                items.forEach(item -> item.setBookDTO(books.get(item.getBookId())));
+            }
+        }
+
+        if (expand.contains(InvoiceExpand.USER)) {
+            Set<Integer> userIds = invoices.stream()
+                    .map(InvoiceSearchDTO::getUserId)
+                    .filter(Objects::nonNull)
+                    .map(Math::toIntExact)
+                    .collect(Collectors.toSet());
+            if (!userIds.isEmpty()) {
+                Map<Integer, ClientDTO> clients = appUserRepository.findClientsByIdIn(userIds).stream()
+                        .collect(Collectors.toMap(ClientDTO::getId, client -> client));
+                invoices.forEach(invoice -> invoice.setClientDTO(invoice.getUserId() == null
+                        ? null : clients.get(Math.toIntExact(invoice.getUserId()))));
+            }
+        }
     }
 
     private List<InvoiceItemSearchDTO> getListItems(UUID invoiceID){
@@ -416,11 +486,7 @@ public class InvoiceRequestServiceImpl implements InvoiceRequestService {
         List<InvoiceItem> invoiceItemList = invoiceItemRepository.findByInvoiceId(invoiceID);
         List<InvoiceItemSearchDTO> invoiceItemDTOList = new ArrayList<>();
         for (InvoiceItem invoiceItem: invoiceItemList) {
-            InvoiceItemSearchDTO invoiceItemSearchDTO = mapper.convertValue(invoiceItem, InvoiceItemSearchDTO.class);
-            //TODO: Ver si incluir o no la info de cada Book, porque la consulta de invoices dura mas de 10 segundos.
-            /*Optional<Book> optionalBook = bookRepository.findById(invoiceItem.getBookId());
-            optionalBook.ifPresent(book -> invoiceItemSearchDTO.setBookDTO(mapper.convertValue(book, BookDTO.class)));*/
-            invoiceItemDTOList.add(invoiceItemSearchDTO);
+            invoiceItemDTOList.add(mapper.convertValue(invoiceItem, InvoiceItemSearchDTO.class));
         }
         return invoiceItemDTOList;
     }
@@ -0,0 +1,226 @@
+package com.mercadolibro.service.impl;
+
+import com.mercadolibro.dto.BookPreferenceDTO;
+import com.mercadolibro.dto.PreferenceStatus;
+import com.mercadolibro.dto.PreferenceStatusDTO;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.exception.CircuitOpenException;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.InvoiceItemRepository;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.service.PreferenceService;
+import com.mercadolibro.service.mercadopago.PreferenceGateway;
+import com.mercadolibro.util.CircuitBreaker;
+import com.mercadopago.client.preference.PreferenceBackUrlsRequest;
+import com.mercadopago.client.preference.PreferenceItemRequest;
+import com.mercadopago.client.preference.PreferenceRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.mercadolibro.service.impl.InvoiceRequestServiceImpl.INVOICE_NOT_FOUND;
+
+@Service
+public class PreferenceServiceImpl implements PreferenceService {
+    public static final String PREFERENCE_NOT_FAILED = "Preference of invoice with ID '%s' has not failed";
+    public static final String PREFERENCE_TIMED_OUT = "Preference request waited past its timeout";
+
+    private final Logger logger = LoggerFactory.getLogger(PreferenceServiceImpl.class);
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceItemRepository invoiceItemRepository;
+    private final BookRepository bookRepository;
+    private final PreferenceGateway preferenceGateway;
+    private final Executor preferenceExecutor;
+    private final CircuitBreaker preferenceCircuitBreaker;
+    private final CacheManager cacheManager;
+    private final String frontendBaseUrl;
+    private final Duration timeout;
+
+    @Autowired
+    public PreferenceServiceImpl(InvoiceRepository invoiceRepository, InvoiceItemRepository invoiceItemRepository,
+                                 BookRepository bookRepository, PreferenceGateway preferenceGateway,
+                                 @Qualifier("preferenceExecutor") Executor preferenceExecutor,
+                                 CircuitBreaker preferenceCircuitBreaker, CacheManager cacheManager,
+                                 String frontendBaseUrl,
+                                 @Value("${app.mercadopago.preference.timeout-ms:10000}") long timeout) {
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceItemRepository = invoiceItemRepository;
+        this.bookRepository = bookRepository;
+        this.preferenceGateway = preferenceGateway;
+        this.preferenceExecutor = preferenceExecutor;
+        this.preferenceCircuitBreaker = preferenceCircuitBreaker;
+        this.cacheManager = cacheManager;
+        this.frontendBaseUrl = frontendBaseUrl;
+        this.timeout = Duration.ofMillis(timeout);
+    }
+
+    @Override
+    public void requestPreference(UUID invoiceId, List<InvoiceItem> items) {
+        Instant deadline = Instant.now().plus(timeout);
+        CompletableFuture<String> creation;
+        try {
+            creation = CompletableFuture.supplyAsync(() -> createPreference(items, deadline), preferenceExecutor);
+        } catch (RejectedExecutionException e) {
+            // Every thread is busy and the queue is full, so the checkout is not held waiting for a free one
+            record(invoiceId, null, e);
+            return;
+        }
+        // The outcome is recorded whenever it comes, so a preference created after the timeout is not lost
+        creation.whenComplete((preferenceId, error) -> record(invoiceId, preferenceId, error));
+        // The gateway timeouts bound each HTTP call, this bounds the time spent waiting in the queue too
+        creation.copy()
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((preferenceId, error) -> {
+                    if (error instanceof TimeoutException) {
+                        record(invoiceId, null, error);
+                    }
+                });
+    }
+
+    @Override
+    public PreferenceStatusDTO retryPreference(UUID invoiceId) {
+        getInvoice(invoiceId);
+        if (updatePreference(invoiceId, PreferenceStatus.FAILED, PreferenceStatus.PENDING, null) == 0) {
+            throw new InvoicePaymentException(String.format(PREFERENCE_NOT_FAILED, invoiceId), HttpStatus.CONFLICT.value());
+        }
+        requestPreference(invoiceId, invoiceItemRepository.findByInvoiceId(invoiceId));
+        return new PreferenceStatusDTO(invoiceId, PreferenceStatus.PENDING, null);
+    }
+
+    @Override
+    public PreferenceStatusDTO getStatus(UUID invoiceId) {
+        Invoice invoice = getInvoice(invoiceId);
+        return new PreferenceStatusDTO(invoiceId, invoice.getPreferenceStatus(), invoice.getPreferenceId());
+    }
+
+    private Invoice getInvoice(UUID invoiceId) {
+        return invoiceRepository.findById(invoiceId).orElseThrow(() ->
+                new InvoicePaymentException(String.format(INVOICE_NOT_FOUND, invoiceId), HttpStatus.NOT_FOUND.value()));
+    }
+
+    /**
+     * Builds the preference of the items and creates it, unless MercadoPago has been failing lately or the invoice
+     * was already marked as failed for waiting too long.
+     *
+     * @param items The items of the invoice.
+     * @param deadline The time after which the preference is no longer created.
+     * @return The ID of the created preference.
+     */
+    private String createPreference(List<InvoiceItem> items, Instant deadline) {
+        Map<Long, BookPreferenceDTO> books = bookRepository.findPreferenceBooks(
+                        items.stream().map(InvoiceItem::getBookId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(BookPreferenceDTO::getId, Function.identity()));
+
+        List<PreferenceItemRequest> preferenceItems = items.stream()
+                .map(item -> {
+                    BookPreferenceDTO book = books.get(item.getBookId());
+                    return PreferenceItemRequest.builder()
+                            .title(book.getTitle())
+                            .description(book.getDescription())
+                            .quantity(item.getQuantity())
+                            .unitPrice(BigDecimal.valueOf(item.getUnitPrice()))
+                            .pictureUrl(book.getImageUrl())
+                            .build();
+                })
+                .collect(Collectors.toList());
+
+        PreferenceBackUrlsRequest backUrls = PreferenceBackUrlsRequest.builder()
+                .success(frontendBaseUrl + "/successful")
+                .pending(frontendBaseUrl + "/pending")
+                .failure(frontendBaseUrl + "/failure")
+                .build();
+
+        PreferenceRequest request = PreferenceRequest.builder()
+                .items(preferenceItems)
+                .backUrls(backUrls)
+                .autoReturn("approved")
+                .build();
+
+        if (Instant.now().isAfter(deadline)) {
+            throw new CompletionException(new TimeoutException(PREFERENCE_TIMED_OUT));
+        }
+        // Rejections of the request itself say nothing about the health of MercadoPago
+        return preferenceCircuitBreaker.execute(() -> preferenceGateway.create(request),
+                e -> !(e instanceof InvoicePaymentException)
+                        || ((InvoicePaymentException) e).getCode() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+    }
+
+    private void record(UUID invoiceId, String preferenceId, Throwable error) {
+        if (error == null) {
+            // Created after the invoice was marked as failed for timing out, it is still the one to pay with
+            if (updatePreference(invoiceId, PreferenceStatus.PENDING, PreferenceStatus.CREATED, preferenceId) == 0) {
+                updatePreference(invoiceId, PreferenceStatus.FAILED, PreferenceStatus.CREATED, preferenceId);
+            }
+            return;
+        }
+
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof CircuitOpenException) {
+            logger.warn("Preference of invoice {} not created, MercadoPago is failing", invoiceId);
+        } else if (cause instanceof TimeoutException) {
+            logger.warn("Preference of invoice {} not created in time", invoiceId);
+        } else {
+            logger.error("Preference of invoice {} not created", invoiceId, cause);
+        }
+        updatePreference(invoiceId, PreferenceStatus.PENDING, PreferenceStatus.FAILED, null);
+    }
+
+    /**
+     * Moves the preference of an invoice from one status to another and, when it moved, evicts the cached views of
+     * the invoice. The outcome is mostly recorded by a background thread, out of reach of the cache annotations.
+     *
+     * @param invoiceId The ID of the invoice.
+     * @param expected The status the preference must be in.
+     * @param status The new status of the preference.
+     * @param preferenceId The ID of the created preference, null unless it was created.
+     * @return The number of updated invoices, 0 when the invoice was no longer in the expected status.
+     */
+    private int updatePreference(UUID invoiceId, PreferenceStatus expected, PreferenceStatus status, String preferenceId) {
+        int updated = invoiceRepository.updatePreference(invoiceId, expected, status, preferenceId);
+        if (updated > 0) {
+            evict("invoice", invoiceId);
+            clear("invoices");
+            clear("userInvoices");
+        }
+        return updated;
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
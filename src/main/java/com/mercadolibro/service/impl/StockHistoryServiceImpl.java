@@ -0,0 +1,62 @@
+package com.mercadolibro.service.impl;
+
+import com.mercadolibro.dto.MonthlyStockDTO;
+import com.mercadolibro.dto.PageDTO;
+import com.mercadolibro.repository.StockSnapshotRepository;
+import com.mercadolibro.service.StockHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+@Service
+public class StockHistoryServiceImpl implements StockHistoryService {
+    /* Months are named as the dashboard shows them */
+    private static final Locale MONTH_LOCALE = new Locale("es");
+
+    private final StockSnapshotRepository stockSnapshotRepository;
+
+    @Autowired
+    public StockHistoryServiceImpl(StockSnapshotRepository stockSnapshotRepository) {
+        this.stockSnapshotRepository = stockSnapshotRepository;
+    }
+
+    @CacheEvict(value = "monthlyStock", allEntries = true)
+    @Override
+    @Transactional
+    public int snapshot(YearMonth month) {
+        return stockSnapshotRepository.snapshot(month.atDay(1));
+    }
+
+    @Cacheable(value = "monthlyStock")
+    @Override
+    public PageDTO<MonthlyStockDTO> getMonthlyStock(int page, int size) {
+        Page<StockSnapshotRepository.MonthlyStock> monthlyStockPage =
+                stockSnapshotRepository.findMonthlyStock(PageRequest.of(page, size));
+        return new PageDTO<>(
+                monthlyStockPage.getContent().stream()
+                        .map(StockHistoryServiceImpl::toMonthlyStockDTO)
+                        .collect(Collectors.toList()),
+                monthlyStockPage.getTotalPages(),
+                monthlyStockPage.getTotalElements(),
+                monthlyStockPage.getNumber(),
+                monthlyStockPage.getSize()
+        );
+    }
+
+    private static MonthlyStockDTO toMonthlyStockDTO(StockSnapshotRepository.MonthlyStock monthlyStock) {
+        String month = monthlyStock.getPeriodStart().getMonth().getDisplayName(TextStyle.FULL, MONTH_LOCALE);
+        return new MonthlyStockDTO(
+                String.valueOf(monthlyStock.getPeriodStart().getYear()),
+                month.substring(0, 1).toUpperCase(MONTH_LOCALE) + month.substring(1),
+                monthlyStock.getStock());
+    }
+}
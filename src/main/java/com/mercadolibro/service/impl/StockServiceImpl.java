@@ -0,0 +1,165 @@
+package com.mercadolibro.service.impl;
+
+import com.mercadolibro.dto.BookStockDTO;
+import com.mercadolibro.entity.StockReservation;
+import com.mercadolibro.events.BookContentChanged;
+import com.mercadolibro.exception.BookNotFoundException;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.StockReservationRepository;
+import com.mercadolibro.service.StockService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+import static com.mercadolibro.service.impl.BookServiceImpl.NOT_FOUND_ERROR_FORMAT;
+import static com.mercadolibro.service.impl.InvoiceRequestServiceImpl.INSUFFICIENT_STOCK_FOR_BOOK;
+
+@Service
+public class StockServiceImpl implements StockService {
+    public static final String STOCK_CHANGED = "Stock of book '%s' changed while checking out";
+
+    private final BookRepository bookRepository;
+    private final StockReservationRepository reservationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration reservationTtl;
+
+    @Autowired
+    public StockServiceImpl(BookRepository bookRepository, StockReservationRepository reservationRepository,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${app.stock.reservation.ttl-minutes:15}") long reservationTtlMinutes) {
+        this.bookRepository = bookRepository;
+        this.reservationRepository = reservationRepository;
+        this.eventPublisher = eventPublisher;
+        this.reservationTtl = Duration.ofMinutes(reservationTtlMinutes);
+    }
+
+    @Override
+    public void checkStock(Map<Long, Integer> quantities) {
+        checkStock(quantities, bookRepository.findStocks(quantities.keySet()));
+    }
+
+    @Override
+    @Transactional
+    public void decrementStock(Map<Long, Integer> quantities) {
+        Map<Long, BookStockDTO> stocks = checkStock(quantities, bookRepository.findStocks(quantities.keySet()));
+
+        // Any conflict rolls back the decrements already applied, so the whole checkout can be retried
+        quantities.forEach((bookId, quantity) -> {
+            if (bookRepository.decrementStock(bookId, quantity, stocks.get(bookId).getVersion()) == 0) {
+                throw new OptimisticLockingFailureException(String.format(STOCK_CHANGED, bookId));
+            }
+        });
+        eventPublisher.publishEvent(new BookContentChanged(new ArrayList<>(quantities.keySet())));
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public void reserve(UUID invoiceId, Map<Long, Integer> quantities) {
+        decrementStock(quantities);
+
+        LocalDateTime expiresAt = LocalDateTime.now().plus(reservationTtl);
+        reservationRepository.saveAll(quantities.entrySet().stream()
+                .map(quantity -> StockReservation.builder()
+                        .invoiceId(invoiceId)
+                        .bookId(quantity.getKey())
+                        .quantity(quantity.getValue())
+                        .expiresAt(expiresAt)
+                        .build())
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public boolean isReserved(UUID invoiceId) {
+        return reservationRepository.existsByInvoiceId(invoiceId);
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public boolean claim(UUID invoiceId) {
+        return reservationRepository.updateExpiresAt(invoiceId, LocalDateTime.now().plus(reservationTtl)) > 0;
+    }
+
+    @Override
+    @Transactional
+    public boolean confirm(UUID invoiceId) {
+        return reservationRepository.deleteByInvoiceId(invoiceId) > 0;
+    }
+
+    @Override
+    @Transactional
+    public int release(UUID invoiceId) {
+        return release(invoiceId, () -> reservationRepository.deleteByInvoiceId(invoiceId));
+    }
+
+    @Override
+    @Transactional
+    public int releaseExpired(LocalDateTime now, int limit) {
+        int released = 0;
+        for (UUID invoiceId : reservationRepository.findExpiredInvoiceIds(now, PageRequest.of(0, limit))) {
+            if (release(invoiceId, () -> reservationRepository.deleteExpiredByInvoiceId(invoiceId, now)) > 0) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Gives the units of a reservation back to the stock, provided the caller deletes all of its rows.
+     *
+     * @param invoiceId The ID of the invoice.
+     * @param delete Deletes the rows of the reservation and returns how many were deleted.
+     * @return The number of books whose stock was given back.
+     */
+    private int release(UUID invoiceId, IntSupplier delete) {
+        List<StockReservation> reservations = reservationRepository.findByInvoiceId(invoiceId);
+        // Another caller released, confirmed or claimed the reservation in the meantime
+        if (reservations.isEmpty() || delete.getAsInt() != reservations.size()) {
+            return 0;
+        }
+
+        reservations.forEach(reservation ->
+                bookRepository.incrementStock(reservation.getBookId(), reservation.getQuantity()));
+        eventPublisher.publishEvent(new BookContentChanged(reservations.stream()
+                .map(StockReservation::getBookId)
+                .collect(Collectors.toList())));
+        return reservations.size();
+    }
+
+    private Map<Long, BookStockDTO> checkStock(Map<Long, Integer> quantities, List<BookStockDTO> stocks) {
+        Map<Long, BookStockDTO> stockById = stocks.stream()
+                .collect(Collectors.toMap(BookStockDTO::getId, Function.identity()));
+
+        List<String> insufficientStockBooks = new ArrayList<>();
+        for (Map.Entry<Long, Integer> quantity : quantities.entrySet()) {
+            BookStockDTO stock = stockById.get(quantity.getKey());
+            if (stock == null) {
+                throw new BookNotFoundException(String.format(NOT_FOUND_ERROR_FORMAT, "book", quantity.getKey()));
+            }
+            if (stock.getStock() == null || stock.getStock() < quantity.getValue()) {
+                insufficientStockBooks.add(stock.getTitle());
+            }
+        }
+
+        if (!insufficientStockBooks.isEmpty()) {
+            throw new InvoicePaymentException(String.format(INSUFFICIENT_STOCK_FOR_BOOK,
+                    String.join(", ", insufficientStockBooks)), HttpStatus.CONFLICT.value());
+        }
+        return stockById;
+    }
+}
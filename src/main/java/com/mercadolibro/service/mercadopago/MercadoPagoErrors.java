@@ -0,0 +1,45 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercadolibro.dto.MercadoPagoErrorResponse;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.exceptions.MPException;
+import org.springframework.http.HttpStatus;
+
+final class MercadoPagoErrors {
+    private MercadoPagoErrors() {
+    }
+
+    /* A failure to reach MercadoPago, such as a timeout */
+    static InvoicePaymentException translate(MPException e) {
+        return new InvoicePaymentException(e.getMessage());
+    }
+
+    /* Failures to reach MercadoPago, throttling and server errors may go away on a repeated call */
+    static boolean isTransient(RuntimeException e) {
+        if (!(e instanceof InvoicePaymentException)) {
+            return false;
+        }
+        int code = ((InvoicePaymentException) e).getCode();
+        return code == HttpStatus.TOO_MANY_REQUESTS.value() || code >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    /* An error response of MercadoPago, keeping its HTTP status, as the body may be missing or not even JSON */
+    static InvoicePaymentException translate(MPApiException e, ObjectMapper mapper) {
+        String message = e.getMessage();
+        String content = e.getApiResponse().getContent();
+        if (content != null) {
+            try {
+                MercadoPagoErrorResponse mercadoPagoError = mapper.readValue(content, MercadoPagoErrorResponse.class);
+                if (mercadoPagoError.getMessage() != null) {
+                    message = mercadoPagoError.getMessage();
+                }
+            } catch (JsonProcessingException jsonException) {
+                // The body of a gateway or proxy error, keeping the message of the exception
+            }
+        }
+        return new InvoicePaymentException(message, e.getApiResponse().getStatusCode());
+    }
+}
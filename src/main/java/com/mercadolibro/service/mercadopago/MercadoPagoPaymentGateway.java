@@ -0,0 +1,55 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercadolibro.util.Bulkhead;
+import com.mercadolibro.util.RetryPolicy;
+import com.mercadopago.client.payment.PaymentClient;
+import com.mercadopago.client.payment.PaymentCreateRequest;
+import com.mercadopago.core.MPRequestOptions;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.exceptions.MPException;
+import com.mercadopago.net.MPHttpClient;
+import com.mercadopago.resources.payment.Payment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+public class MercadoPagoPaymentGateway implements PaymentGateway {
+    private static final String IDEMPOTENCY_KEY_HEADER = "x-idempotency-key";
+
+    private final PaymentClient paymentClient;
+    private final MercadoPagoRequestOptions requestOptions;
+    private final Bulkhead paymentBulkhead;
+    private final RetryPolicy paymentRetryPolicy;
+    private final ObjectMapper mapper;
+
+    @Autowired
+    public MercadoPagoPaymentGateway(MPHttpClient mercadoPagoHttpClient, MercadoPagoRequestOptions requestOptions,
+                                     Bulkhead paymentBulkhead, RetryPolicy paymentRetryPolicy, ObjectMapper mapper) {
+        this.paymentClient = new PaymentClient(mercadoPagoHttpClient);
+        this.requestOptions = requestOptions;
+        this.paymentBulkhead = paymentBulkhead;
+        this.paymentRetryPolicy = paymentRetryPolicy;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public Payment create(PaymentCreateRequest request, String idempotencyKey) {
+        MPRequestOptions options = requestOptions.build(Map.of(IDEMPOTENCY_KEY_HEADER, idempotencyKey));
+        // Each attempt takes its own slot, so the backoff between attempts does not hold one
+        return paymentRetryPolicy.execute(() -> paymentBulkhead.execute(() -> create(request, options)),
+                MercadoPagoErrors::isTransient);
+    }
+
+    private Payment create(PaymentCreateRequest request, MPRequestOptions options) {
+        try {
+            return paymentClient.create(request, options);
+        } catch (MPException e) {
+            throw MercadoPagoErrors.translate(e);
+        } catch (MPApiException e) {
+            throw MercadoPagoErrors.translate(e, mapper);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercadopago.client.preference.PreferenceClient;
+import com.mercadopago.client.preference.PreferenceRequest;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.exceptions.MPException;
+import com.mercadopago.net.MPHttpClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MercadoPagoPreferenceGateway implements PreferenceGateway {
+    private final PreferenceClient preferenceClient;
+    private final MercadoPagoRequestOptions requestOptions;
+    private final ObjectMapper mapper;
+
+    @Autowired
+    public MercadoPagoPreferenceGateway(MPHttpClient mercadoPagoHttpClient, MercadoPagoRequestOptions requestOptions,
+                                        ObjectMapper mapper) {
+        this.preferenceClient = new PreferenceClient(mercadoPagoHttpClient);
+        this.requestOptions = requestOptions;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public String create(PreferenceRequest request) {
+        try {
+            return preferenceClient.create(request, requestOptions.build()).getId();
+        } catch (MPException e) {
+            throw MercadoPagoErrors.translate(e);
+        } catch (MPApiException e) {
+            throw MercadoPagoErrors.translate(e, mapper);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.mercadopago.core.MPRequestOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Builds the options of every MercadoPago call, so all of them carry the access token and the timeouts. Without
+ * timeouts a stalled MercadoPago would hold the calling thread indefinitely.
+ */
+@Component
+public class MercadoPagoRequestOptions {
+    private final String accessToken;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    @Autowired
+    public MercadoPagoRequestOptions(String mercadoPagoAccessToken,
+                                     @Value("${app.mercadopago.connect-timeout-ms:2000}") int connectTimeout,
+                                     @Value("${app.mercadopago.read-timeout-ms:5000}") int readTimeout) {
+        this.accessToken = mercadoPagoAccessToken;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    public MPRequestOptions build() {
+        return build(Map.of());
+    }
+
+    public MPRequestOptions build(Map<String, String> customHeaders) {
+        return MPRequestOptions.builder()
+                .accessToken(accessToken)
+                .customHeaders(customHeaders)
+                // Also bounds the wait for a free connection of the pool
+                .connectionRequestTimeout(connectTimeout)
+                .connectionTimeout(connectTimeout)
+                .socketTimeout(readTimeout)
+                .build();
+    }
+}
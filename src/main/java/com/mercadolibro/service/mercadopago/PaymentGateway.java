@@ -0,0 +1,22 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadopago.client.payment.PaymentCreateRequest;
+import com.mercadopago.resources.payment.Payment;
+
+/**
+ * Charges payments through MercadoPago. Kept behind an interface so the remote call can be replaced locally.
+ */
+public interface PaymentGateway {
+    /**
+     * Creates a payment. Calls with the same idempotency key charge at most once, so they can be repeated safely.
+     *
+     * @param request The payment to create.
+     * @param idempotencyKey The key MercadoPago uses to recognize a repeated call.
+     * @return The created payment.
+     * @throws InvoicePaymentException If MercadoPago could not be reached or rejected the payment, with the HTTP
+     * status of the failure as its code.
+     * @throws com.mercadolibro.exception.BulkheadFullException If too many payments are in progress.
+     */
+    Payment create(PaymentCreateRequest request, String idempotencyKey);
+}
@@ -0,0 +1,19 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadopago.client.preference.PreferenceRequest;
+
+/**
+ * Creates checkout preferences in MercadoPago. Kept behind an interface so the remote call can be replaced locally.
+ */
+public interface PreferenceGateway {
+    /**
+     * Creates a checkout preference.
+     *
+     * @param request The items and back URLs of the preference.
+     * @return The ID of the created preference.
+     * @throws InvoicePaymentException If MercadoPago could not be reached or rejected the preference, with the HTTP
+     * status of the failure as its code.
+     */
+    String create(PreferenceRequest request);
+}
@@ -0,0 +1,146 @@
+package com.mercadolibro.service.projection;
+
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.BookAuthor;
+import com.mercadolibro.events.BookChanged;
+import com.mercadolibro.repository.BookAuthorRepository;
+import com.mercadolibro.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.transaction.Transactional;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the book_authors table in sync with the JSON authors column of the books. Changes are applied before the
+ * book transaction commits, so both are committed together, and the "authors" cache is evicted once they are, so a
+ * concurrent read can not put the old counts back in it.
+ */
+@Component
+public class BookAuthorProjection {
+    public static final String AUTHORS_CACHE = "authors";
+    private static final int PAGE_SIZE = 500;
+
+    private final BookAuthorRepository bookAuthorRepository;
+    private final BookRepository bookRepository;
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public BookAuthorProjection(BookAuthorRepository bookAuthorRepository, BookRepository bookRepository,
+                                CacheManager cacheManager) {
+        this.bookAuthorRepository = bookAuthorRepository;
+        this.bookRepository = bookRepository;
+        this.cacheManager = cacheManager;
+    }
+
+    @Transactional
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void handleBookChangedEvent(BookChanged bookChanged) {
+        Long bookId = bookChanged.getBookId();
+        Map<String, BookAuthor> current = bookAuthorRepository.findByBookId(bookId).stream()
+                .collect(Collectors.toMap(author -> nameKey(author.getName()), Function.identity(),
+                        (first, second) -> first));
+
+        List<BookAuthor> added = new ArrayList<>();
+        boolean renamed = false;
+        for (String name : namesOf(bookChanged.getAfter())) {
+            BookAuthor author = current.remove(nameKey(name));
+            if (author == null) {
+                added.add(BookAuthor.builder().bookId(bookId).name(name).build());
+            } else if (!author.getName().equals(name)) {
+                // Renamed in place, a delete and insert of the same key would hit the unique key as inserts go first
+                author.setName(name);
+                renamed = true;
+            }
+        }
+        Collection<BookAuthor> removed = current.values();
+
+        if (removed.isEmpty() && added.isEmpty() && !renamed) {
+            return;
+        }
+        bookAuthorRepository.deleteAll(removed);
+        bookAuthorRepository.saveAll(added);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleBookChangeCommittedEvent(BookChanged bookChanged) {
+        if (!namesOf(bookChanged.getBefore()).equals(namesOf(bookChanged.getAfter()))) {
+            evictAuthors();
+        }
+    }
+
+    /**
+     * Fills the projection from the books when it is empty, as it is the first time the application starts with it.
+     *
+     * @return The number of books projected, zero if the projection was already filled.
+     */
+    @Transactional
+    public long backfillIfEmpty() {
+        if (bookAuthorRepository.findFirstByOrderByIdAsc().isPresent()) {
+            return 0;
+        }
+
+        long projected = 0;
+        long lastId = 0;
+        List<Book> books;
+        do {
+            books = bookRepository.findNextById(lastId, PageRequest.of(0, PAGE_SIZE));
+            List<BookAuthor> authors = new ArrayList<>();
+            for (Book book : books) {
+                namesOf(book).forEach(name -> authors.add(BookAuthor.builder().bookId(book.getId()).name(name).build()));
+                lastId = book.getId();
+            }
+            bookAuthorRepository.saveAll(authors);
+            projected += books.size();
+        } while (books.size() == PAGE_SIZE);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictAuthors();
+                }
+            });
+        } else {
+            evictAuthors();
+        }
+        return projected;
+    }
+
+    private void evictAuthors() {
+        Cache cache = cacheManager.getCache(AUTHORS_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /* The author names of a book, keeping the first spelling of names that only differ in case or accents */
+    private static Set<String> namesOf(Book book) {
+        if (book == null || book.getAuthors() == null) {
+            return Collections.emptySet();
+        }
+        Map<String, String> names = new LinkedHashMap<>();
+        book.getAuthors().stream()
+                .map(Book.Author::getName)
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .forEach(name -> names.putIfAbsent(nameKey(name), name));
+        return new LinkedHashSet<>(names.values());
+    }
+
+    /* Compares names like the case and accent insensitive collation of the unique key */
+    private static String nameKey(String name) {
+        return Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,373 @@
+package com.mercadolibro.service.projection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercadolibro.dto.InvoiceItemSearchDTO;
+import com.mercadolibro.dto.InvoiceSearchDTO;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.entity.SalesRollup;
+import com.mercadolibro.entity.SalesRollup.Dimension;
+import com.mercadolibro.entity.SalesRollup.Granularity;
+import com.mercadolibro.events.InvoicePaid;
+import com.mercadolibro.repository.BookAuthorRepository;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.repository.SalesRollupRepository;
+import com.mercadolibro.repository.SalesRollupStateRepository;
+import com.mercadolibro.service.analytics.SalesAnalyticsStore;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the sales_rollup table in sync with the paid invoices. The sales of an invoice are added before the
+ * transaction that marks it as paid commits, so both are committed together.
+ */
+@Component
+public class SalesRollupProjection {
+    private static final int BATCH_SIZE = 500;
+    /* Raised whenever the way sales are rolled up changes, so the next startup rebuilds the rollups once */
+    private static final int VERSION = 1;
+
+    private final Logger logger = LoggerFactory.getLogger(SalesRollupProjection.class);
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final SalesRollupStateRepository salesRollupStateRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final BookRepository bookRepository;
+    private final BookAuthorRepository bookAuthorRepository;
+    private final ObjectMapper mapper;
+    private final EntityManager entityManager;
+    private final SalesAnalyticsStore salesAnalyticsStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public SalesRollupProjection(SalesRollupRepository salesRollupRepository,
+                                 SalesRollupStateRepository salesRollupStateRepository,
+                                 InvoiceRepository invoiceRepository, BookRepository bookRepository,
+                                 BookAuthorRepository bookAuthorRepository, ObjectMapper mapper,
+                                 EntityManager entityManager, SalesAnalyticsStore salesAnalyticsStore,
+                                 TransactionTemplate transactionTemplate) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.salesRollupStateRepository = salesRollupStateRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.bookRepository = bookRepository;
+        this.bookAuthorRepository = bookAuthorRepository;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+        this.salesAnalyticsStore = salesAnalyticsStore;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Transactional
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void handleInvoicePaidEvent(InvoicePaid invoicePaid) {
+        InvoiceSearchDTO invoice = invoicePaid.getInvoice();
+        if (invoice.getDateCreated() == null) {
+            return;
+        }
+        Map<RollupKey, SalesRollup> rollups = new TreeMap<>();
+        Set<Long> bookIds = bookIdsOf(List.of(invoice));
+        addSales(invoice, findCategories(bookIds, new HashMap<>()), findAuthors(bookIds, new HashMap<>()), rollups);
+        write(rollups);
+        afterCommit(() -> salesAnalyticsStore.add(invoice.getId(), rollups.values()));
+    }
+
+    /**
+     * Rebuilds the rollups from the paid invoices unless they were already rebuilt by this version, as when the
+     * application first starts with them, or after the sales were first added up by author and by item totals.
+     *
+     * @return The number of invoices rolled up, zero if the rollups were already rebuilt.
+     */
+    public long backfillIfNeeded() {
+        salesRollupStateRepository.createIfMissing();
+        if (salesRollupStateRepository.findVersion() >= VERSION) {
+            return 0;
+        }
+        long rolledUp = rebuild();
+        salesRollupStateRepository.updateVersion(VERSION);
+        return rolledUp;
+    }
+
+    /**
+     * Recomputes every rollup from the paid invoices, from the first month with either of them to the last, each
+     * month in a transaction of its own.
+     *
+     * @return The number of invoices rolled up.
+     */
+    public long rebuild() {
+        List<LocalDate> bounds = new ArrayList<>();
+        for (List<Object[]> range : List.of(invoiceRepository.findPaidDateRange(),
+                salesRollupRepository.findPeriodRange())) {
+            range.stream().flatMap(Arrays::stream).filter(Objects::nonNull).map(LocalDate.class::cast).forEach(bounds::add);
+        }
+        long rolledUp = 0;
+        if (!bounds.isEmpty()) {
+            YearMonth last = YearMonth.from(Collections.max(bounds));
+            for (YearMonth month = YearMonth.from(Collections.min(bounds)); !month.isAfter(last);
+                 month = month.plusMonths(1)) {
+                rolledUp += rebuildMonth(month);
+            }
+        }
+        afterCommit(salesAnalyticsStore::reload);
+        return rolledUp;
+    }
+
+    /**
+     * Recomputes the rollups of a single month from the invoices created in it, leaving the other months as they
+     * are.
+     *
+     * @param month The month to recompute.
+     * @return The number of invoices rolled up.
+     */
+    public long rebuild(YearMonth month) {
+        long rolledUp = rebuildMonth(month);
+        afterCommit(salesAnalyticsStore::reload);
+        return rolledUp;
+    }
+
+    /**
+     * Corrects the rollups of a month by the difference between its paid invoices and the rollups, as both were
+     * when first read. Those reads take no locks, so payments go on adding their sales meanwhile, and adding the
+     * difference keeps them: only the short write at the end waits for the rows payments are writing, and only
+     * the rows of this month are locked, through the period_start index.
+     * Rebuilds lock a single row first, so they never correct a month twice, and before anything is read, so each
+     * one reads what the previous one committed.
+     *
+     * @return The number of invoices rolled up.
+     */
+    private long rebuildMonth(YearMonth month) {
+        LocalDate start = month.atDay(1);
+        LocalDate end = month.plusMonths(1).atDay(1);
+        Long rolledUp = transactionTemplate.execute(status -> {
+            salesRollupStateRepository.createIfMissing();
+            salesRollupStateRepository.lock();
+
+            Map<RollupKey, SalesRollup> corrections = new TreeMap<>();
+            for (SalesRollup rollup : salesRollupRepository.findRollups(start, end)) {
+                SalesRollup correction = corrections.computeIfAbsent(new RollupKey(rollup.getGranularity(),
+                        rollup.getPeriodStart(), rollup.getDimension(), rollup.getDimensionKey()), RollupKey::toRollup);
+                correction.setInvoices(-rollup.getInvoices());
+                correction.setUnits(-rollup.getUnits());
+                correction.setRevenue(-rollup.getRevenue());
+            }
+            entityManager.clear();
+
+            long invoices;
+            try (Stream<Object[]> rows = invoiceRepository.streamPaidWithItems(start, end)) {
+                invoices = rollUp(rows, corrections);
+            }
+            corrections.values().removeIf(correction -> correction.getInvoices() == 0
+                    && correction.getUnits() == 0 && correction.getRevenue() == 0);
+            write(corrections);
+            salesRollupRepository.deleteEmptyRollups(start, end);
+            return invoices;
+        });
+        return rolledUp == null ? 0 : rolledUp;
+    }
+
+    /**
+     * Adds the invoices of rows to the rollups, looking up the categories and authors of their books a batch at a
+     * time, and discarding the entities read along with each batch.
+     *
+     * @param rows The pairs of invoice and item, or null for an invoice without items, with those of an invoice
+     *             adjacent.
+     * @return The number of invoices rolled up.
+     */
+    private long rollUp(Stream<Object[]> rows, Map<RollupKey, SalesRollup> rollups) {
+        Map<Long, Set<String>> categories = new HashMap<>();
+        Map<Long, Set<String>> authors = new HashMap<>();
+        List<InvoiceSearchDTO> batch = new ArrayList<>();
+        long rolledUp = 0;
+        InvoiceSearchDTO current = null;
+        for (Iterator<Object[]> iterator = rows.iterator(); iterator.hasNext(); ) {
+            Object[] row = iterator.next();
+            Invoice invoice = (Invoice) row[0];
+            InvoiceItem item = (InvoiceItem) row[1];
+
+            if (current == null || !current.getId().equals(invoice.getId())) {
+                if (batch.size() == BATCH_SIZE) {
+                    rolledUp += rollUp(batch, categories, authors, rollups);
+                }
+                current = mapper.convertValue(invoice, InvoiceSearchDTO.class);
+                current.setListInvoiceItems(new ArrayList<>());
+                batch.add(current);
+            }
+            if (item != null) {
+                current.getListInvoiceItems().add(mapper.convertValue(item, InvoiceItemSearchDTO.class));
+            }
+        }
+        return rolledUp + rollUp(batch, categories, authors, rollups);
+    }
+
+    private long rollUp(List<InvoiceSearchDTO> invoices, Map<Long, Set<String>> categories,
+                        Map<Long, Set<String>> authors, Map<RollupKey, SalesRollup> rollups) {
+        Set<Long> bookIds = bookIdsOf(invoices);
+        findCategories(bookIds, categories);
+        findAuthors(bookIds, authors);
+        invoices.forEach(invoice -> addSales(invoice, categories, authors, rollups));
+
+        long rolledUp = invoices.size();
+        invoices.clear();
+        entityManager.clear();
+        return rolledUp;
+    }
+
+    /**
+     * Adds the sales of an invoice to the rollups of its day and month: to the totals, to its payment method, and
+     * to each of its books and their categories and authors. Units and revenue come from the quantity and total
+     * of each item, for every dimension, so the revenue of the months adds up to that of the books.
+     */
+    private static void addSales(InvoiceSearchDTO invoice, Map<Long, Set<String>> categories,
+                                 Map<Long, Set<String>> authors, Map<RollupKey, SalesRollup> rollups) {
+        long units = invoice.getListInvoiceItems().stream().mapToLong(InvoiceItemSearchDTO::getQuantity).sum();
+        double revenue = invoice.getListInvoiceItems().stream().mapToDouble(InvoiceItemSearchDTO::getTotal).sum();
+        Map<RollupKey, SalesRollup> sales = new HashMap<>();
+        for (Granularity granularity : Granularity.values()) {
+            LocalDate periodStart = granularity == Granularity.DAY
+                    ? invoice.getDateCreated() : invoice.getDateCreated().withDayOfMonth(1);
+
+            add(sales, new RollupKey(granularity, periodStart, Dimension.TOTAL, SalesRollup.TOTAL_KEY), units, revenue);
+            if (invoice.getPaymentMethod() != null) {
+                add(sales, new RollupKey(granularity, periodStart, Dimension.PAYMENT_METHOD,
+                        invoice.getPaymentMethod().name()), units, revenue);
+            }
+            for (InvoiceItemSearchDTO item : invoice.getListInvoiceItems()) {
+                add(sales, new RollupKey(granularity, periodStart, Dimension.BOOK, item.getBookId().toString()),
+                        item.getQuantity(), item.getTotal());
+                for (String category : categories.getOrDefault(item.getBookId(), Collections.emptySet())) {
+                    add(sales, new RollupKey(granularity, periodStart, Dimension.CATEGORY, category),
+                            item.getQuantity(), item.getTotal());
+                }
+                for (String author : authors.getOrDefault(item.getBookId(), Collections.emptySet())) {
+                    add(sales, new RollupKey(granularity, periodStart, Dimension.AUTHOR, author),
+                            item.getQuantity(), item.getTotal());
+                }
+            }
+        }
+
+        // A book, category or author in several items is still a single invoice
+        sales.forEach((key, sale) -> {
+            SalesRollup rollup = rollups.computeIfAbsent(key, RollupKey::toRollup);
+            rollup.setInvoices(rollup.getInvoices() + 1);
+            rollup.setUnits(rollup.getUnits() + sale.getUnits());
+            rollup.setRevenue(rollup.getRevenue() + sale.getRevenue());
+        });
+    }
+
+    private static void add(Map<RollupKey, SalesRollup> sales, RollupKey key, long units, double revenue) {
+        SalesRollup sale = sales.computeIfAbsent(key, RollupKey::toRollup);
+        sale.setUnits(sale.getUnits() + units);
+        sale.setRevenue(sale.getRevenue() + revenue);
+    }
+
+    /**
+     * Runs an update of the in-memory analytics once the rollups are committed, so they never see sales that were
+     * rolled back. A failure is only logged, the periodic reload of the analytics catches up with it.
+     */
+    private void afterCommit(Runnable update) {
+        Runnable guarded = () -> {
+            try {
+                update.run();
+            } catch (RuntimeException e) {
+                logger.error("Sales analytics not updated", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
+    }
+
+    /* In key order, so concurrent payments lock the rows they share alike */
+    private void write(Map<RollupKey, SalesRollup> rollups) {
+        rollups.values().forEach(salesRollupRepository::add);
+    }
+
+    private Map<Long, Set<String>> findCategories(Set<Long> bookIds, Map<Long, Set<String>> categories) {
+        return findNames(bookIds, categories, bookRepository::findCategoryNames);
+    }
+
+    private Map<Long, Set<String>> findAuthors(Set<Long> bookIds, Map<Long, Set<String>> authors) {
+        return findNames(bookIds, authors, bookAuthorRepository::findAuthorNames);
+    }
+
+    /**
+     * Looks up the names related to the books not known yet, such as their categories or authors.
+     *
+     * @param bookIds The books whose names are needed.
+     * @param names The names already known by book ID, where the new ones are added.
+     * @param lookup The query of the pairs of book ID and name.
+     * @return The names by book ID.
+     */
+    private static Map<Long, Set<String>> findNames(Set<Long> bookIds, Map<Long, Set<String>> names,
+                                                    Function<Set<Long>, List<Object[]>> lookup) {
+        Set<Long> unknown = bookIds.stream()
+                .filter(bookId -> !names.containsKey(bookId))
+                .collect(Collectors.toSet());
+        if (unknown.isEmpty()) {
+            return names;
+        }
+        unknown.forEach(bookId -> names.put(bookId, new TreeSet<>()));
+        for (Object[] row : lookup.apply(unknown)) {
+            names.get((Long) row[0]).add((String) row[1]);
+        }
+        return names;
+    }
+
+    private static Set<Long> bookIdsOf(List<InvoiceSearchDTO> invoices) {
+        return invoices.stream()
+                .flatMap(invoice -> invoice.getListInvoiceItems().stream())
+                .map(InvoiceItemSearchDTO::getBookId)
+                .collect(Collectors.toSet());
+    }
+
+    @Value
+    private static class RollupKey implements Comparable<RollupKey> {
+        private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::getGranularity)
+                .thenComparing(RollupKey::getPeriodStart)
+                .thenComparing(RollupKey::getDimension)
+                .thenComparing(RollupKey::getDimensionKey);
+
+        Granularity granularity;
+        LocalDate periodStart;
+        Dimension dimension;
+        String dimensionKey;
+
+        SalesRollup toRollup() {
+            return SalesRollup.builder()
+                    .granularity(granularity)
+                    .periodStart(periodStart)
+                    .dimension(dimension)
+                    .dimensionKey(dimensionKey)
+                    .build();
+        }
+
+        @Override
+        public int compareTo(RollupKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
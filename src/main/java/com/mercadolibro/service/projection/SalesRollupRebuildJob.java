@@ -0,0 +1,39 @@
+package com.mercadolibro.service.projection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Recomputes the sales rollups of the month of yesterday and of the month before from their paid invoices, fixing
+ * any drift from invoices changed by hand. Sales are rolled up by the creation date of their invoice, so a payment
+ * can still change a month after it ends, but only the latest months are read again, through the date_created
+ * index: a change to an older month is only repaired by a full rebuild.
+ */
+@Component
+public class SalesRollupRebuildJob {
+    private final Logger logger = LoggerFactory.getLogger(SalesRollupRebuildJob.class);
+
+    private final SalesRollupProjection salesRollupProjection;
+
+    @Autowired
+    public SalesRollupRebuildJob(SalesRollupProjection salesRollupProjection) {
+        this.salesRollupProjection = salesRollupProjection;
+    }
+
+    /* From yesterday, so the run on the first day of a month still covers the invoices paid late in the last two */
+    @Scheduled(cron = "${app.analytics.rollup.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        YearMonth latest = YearMonth.from(LocalDate.now().minusDays(1));
+        for (YearMonth month : List.of(latest.minusMonths(1), latest)) {
+            long rolledUp = salesRollupProjection.rebuild(month);
+            logger.info("Sales rollups of {} rebuilt from {} paid invoices", month, rolledUp);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.mercadolibro.service.search;
+
+import com.mercadolibro.entity.Book;
+
+/**
+ * In-memory index over the books, rebuilt from the database on startup by the SearchIndexRunner and kept up to
+ * date by the index itself with the book changes.
+ */
+public interface BookIndex {
+    /**
+     * Removes every book from the index, before a rebuild.
+     */
+    void clear();
+
+    /**
+     * Adds a book during a rebuild. It may not be visible until {@link #commit()}.
+     *
+     * @param book The book to add.
+     */
+    void add(Book book);
+
+    /**
+     * Makes the books added since the last commit visible.
+     */
+    void commit();
+}
@@ -0,0 +1,449 @@
+package com.mercadolibro.service.search;
+
+import com.mercadolibro.dto.BookCursor;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.events.BookChanged;
+import com.mercadolibro.util.MonthWindow;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.*;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Inverted index over the title, authors, publisher and description of the books, used by the keyword search
+ * instead of LIKE predicates that no database index can serve. The category, publisher, creation date and sort
+ * keys are indexed too, so a keyword listing is filtered, sorted and paged without the database. Book changes are
+ * indexed once they are committed.
+ */
+@Component
+public class BookSearchIndex implements BookIndex {
+    static final String ID = "id";
+    static final String TITLE = "title";
+    static final String AUTHORS = "authors";
+    static final String PUBLISHER = "publisher";
+    static final String DESCRIPTION = "description";
+    /* Filter and sort fields, matching the columns the database listing filters and sorts by */
+    static final String CATEGORY = "category";
+    static final String PUBLISHER_KEY = "publisher_key";
+    static final String CREATED_AT = "created_at";
+    static final String TITLE_SORT = "title_sort";
+    static final String PUBLISHED_DATE = "published_date";
+
+    /* Field boosts: a keyword found in the title is worth more than one found in the description */
+    private static final Map<String, Float> FIELDS = Map.of(TITLE, 4f, AUTHORS, 3f, PUBLISHER, 2f, DESCRIPTION, 1f);
+    /* Prefix matches keep the last word being typed useful, but rank below whole words */
+    private static final float PREFIX_BOOST = 0.5f;
+    /* Thread safe, each thread reuses its own token stream */
+    private static final Analyzer ANALYZER = new FoldingAnalyzer();
+
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    @Autowired
+    public BookSearchIndex(@Value("${app.search.index-path:}") String indexPath) throws IOException {
+        this.directory = indexPath.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Paths.get(indexPath));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(ANALYZER)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    @Override
+    public void clear() {
+        try {
+            writer.deleteAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void add(Book book) {
+        try {
+            writer.addDocument(toDocument(book));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void commit() {
+        try {
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds a book to the index, replacing its previous version if there is one.
+     *
+     * @param book The book to index.
+     */
+    public void index(Book book) {
+        try {
+            writer.updateDocument(new Term(ID, book.getId().toString()), toDocument(book));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commit();
+    }
+
+    /**
+     * Removes a book from the index.
+     *
+     * @param bookId The ID of the book to remove.
+     */
+    public void remove(Long bookId) {
+        try {
+            writer.deleteDocuments(new Term(ID, bookId.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        commit();
+    }
+
+    /**
+     * Searches a page of the books containing every word of the keyword, in its title, authors, publisher or
+     * description. Words are compared without case nor accents, and the last one also matches as a prefix. The
+     * filters, order and page are all resolved by the index, so only the IDs of the page are read.
+     *
+     * @param keyword The words to search.
+     * @param categoryIds The IDs of the accepted categories, or null to accept any category.
+     * @param publisher The publisher of the books, or null to accept any publisher.
+     * @param releases Whether to only accept the books created in the current month.
+     * @param pageable The page being requested. Without a sort, the most relevant books come first.
+     * @return The IDs of the books of the page, with the total number of matching books.
+     */
+    public Page<Long> search(String keyword, Collection<Long> categoryIds, String publisher, boolean releases,
+                             Pageable pageable) {
+        Query query = buildQuery(keyword, categoryIds, publisher, releases);
+        if (query == null) {
+            return Page.empty(pageable);
+        }
+
+        int offset = (int) pageable.getOffset();
+        int numHits = Math.max(offset + pageable.getPageSize(), 1);
+        // Every hit is counted, but only the best offset + size are kept in the priority queue
+        TopDocsCollector<?> collector = pageable.getSort().isUnsorted()
+                ? TopScoreDocCollector.create(numHits, Integer.MAX_VALUE)
+                : TopFieldCollector.create(toSort(pageable.getSort()), numHits, Integer.MAX_VALUE);
+
+        return withSearcher(searcher -> {
+            searcher.search(query, collector);
+            TopDocs topDocs = collector.topDocs(offset, pageable.getPageSize());
+            return new PageImpl<>(readIds(searcher, topDocs.scoreDocs), pageable, topDocs.totalHits.value);
+        });
+    }
+
+    /**
+     * Searches the books matching the keyword and filters placed after a cursor, in the same order as the keyset
+     * listing of the database: the sort keys, then the book ID.
+     *
+     * @param keyword The words to search.
+     * @param categoryIds The IDs of the accepted categories, or null to accept any category.
+     * @param publisher The publisher of the books, or null to accept any publisher.
+     * @param releases Whether to only accept the books created in the current month.
+     * @param sort The order of the listing, on title and/or publishedDate.
+     * @param cursor The sort keys and ID of the last book already returned, or null to start from the beginning.
+     * @param size The number of books of the slice.
+     * @return The IDs of the books of the slice, telling whether more books follow.
+     */
+    public Slice<Long> searchAfter(String keyword, Collection<Long> categoryIds, String publisher, boolean releases,
+                                   Sort sort, BookCursor cursor, int size) {
+        Pageable pageable = PageRequest.of(0, size, sort);
+        Query query = buildQuery(keyword, categoryIds, publisher, releases);
+        if (query == null) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, false);
+        }
+
+        org.apache.lucene.search.Sort luceneSort = toSort(sort);
+        FieldDoc after = cursor == null ? null : toFieldDoc(sort, cursor);
+        // One extra hit tells whether there is a next slice without counting the whole result
+        TopFieldCollector collector = TopFieldCollector.create(luceneSort, size + 1, after, size + 1);
+
+        return withSearcher(searcher -> {
+            searcher.search(query, collector);
+            List<Long> ids = readIds(searcher, collector.topDocs().scoreDocs);
+            boolean hasNext = ids.size() > size;
+            return new SliceImpl<>(hasNext ? ids.subList(0, size) : ids, pageable, hasNext);
+        });
+    }
+
+    /* Before the book caches are evicted, so a page cached after the eviction is built from the new index */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleBookChangedEvent(BookChanged bookChanged) {
+        if (bookChanged.getAfter() == null) {
+            remove(bookChanged.getBookId());
+        } else {
+            index(bookChanged.getAfter());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    /* The keyword query with the filters as non-scoring clauses, or null when the keyword has no words */
+    private Query buildQuery(String keyword, Collection<Long> categoryIds, String publisher, boolean releases) {
+        List<String> terms = analyze(keyword);
+        if (terms.isEmpty()) {
+            return null;
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < terms.size(); i++) {
+            query.add(termQuery(terms.get(i), i == terms.size() - 1), BooleanClause.Occur.MUST);
+        }
+
+        if (categoryIds != null) {
+            query.add(categoryIds.isEmpty()
+                    ? new MatchNoDocsQuery()
+                    : new TermInSetQuery(CATEGORY, categoryIds.stream()
+                            .map(id -> new BytesRef(id.toString()))
+                            .collect(Collectors.toList())),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (publisher != null) {
+            query.add(new TermQuery(new Term(PUBLISHER_KEY, fold(publisher))), BooleanClause.Occur.FILTER);
+        }
+        if (releases) {
+            MonthWindow currentMonth = MonthWindow.current();
+            query.add(LongPoint.newRangeQuery(CREATED_AT, epochSecond(currentMonth.getStart()),
+                    epochSecond(currentMonth.getEnd()) - 1), BooleanClause.Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    private Query termQuery(String term, boolean matchPrefix) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        FIELDS.forEach((field, boost) -> {
+            query.add(new BoostQuery(new TermQuery(new Term(field, term)), boost), BooleanClause.Occur.SHOULD);
+            if (matchPrefix) {
+                query.add(new BoostQuery(new PrefixQuery(new Term(field, term)), boost * PREFIX_BOOST),
+                        BooleanClause.Occur.SHOULD);
+            }
+        });
+        return query.build();
+    }
+
+    /**
+     * Translates the order of a book listing to the index. NULL values are placed first in ascending orders and
+     * last in descending ones, like MySQL does, and the book ID breaks ties.
+     */
+    private static org.apache.lucene.search.Sort toSort(Sort sort) {
+        List<SortField> sortFields = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            switch (order.getProperty()) {
+                case "title":
+                    SortField title = new SortField(TITLE_SORT, SortField.Type.STRING, order.isDescending());
+                    title.setMissingValue(SortField.STRING_FIRST);
+                    sortFields.add(title);
+                    break;
+                case "publishedDate":
+                    SortField publishedDate = new SortField(PUBLISHED_DATE, SortField.Type.LONG,
+                            order.isDescending());
+                    publishedDate.setMissingValue(Long.MIN_VALUE);
+                    sortFields.add(publishedDate);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Books can not be sorted by " + order.getProperty());
+            }
+        }
+        sortFields.add(new SortField(ID, SortField.Type.LONG));
+        return new org.apache.lucene.search.Sort(sortFields.toArray(new SortField[0]));
+    }
+
+    /* The sort values of the cursor, its book being excluded as no other book shares its ID */
+    private static FieldDoc toFieldDoc(Sort sort, BookCursor cursor) {
+        List<Object> values = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (order.getProperty().equals("title")) {
+                values.add(cursor.getTitle() == null ? null : new BytesRef(fold(cursor.getTitle())));
+            } else {
+                values.add(cursor.getPublishedDate() == null
+                        ? Long.MIN_VALUE
+                        : cursor.getPublishedDate().toEpochDay());
+            }
+        }
+        values.add(cursor.getId());
+        return new FieldDoc(Integer.MAX_VALUE, Float.NaN, values.toArray());
+    }
+
+    /* Reads the book IDs of the hits from the doc values, without loading their stored documents */
+    private static List<Long> readIds(IndexSearcher searcher, ScoreDoc[] scoreDocs) throws IOException {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        List<Long> ids = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+            NumericDocValues idValues = DocValues.getNumeric(leaf.reader(), ID);
+            if (idValues.advanceExact(scoreDoc.doc - leaf.docBase)) {
+                ids.add(idValues.longValue());
+            }
+        }
+        return ids;
+    }
+
+    private <T> T withSearcher(SearcherFunction<T> function) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return function.apply(searcher);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Splits a text in the words the index compares, lower cased and without accents, as the keyword search and
+     * the indexed fields are split.
+     *
+     * @param text The text to split, may be null.
+     * @return The words of the text, in order.
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream tokenStream = ANALYZER.tokenStream(TITLE, text)) {
+            CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private static Document toDocument(Book book) {
+        Document document = new Document();
+        document.add(new StringField(ID, book.getId().toString(), Field.Store.NO));
+        document.add(new NumericDocValuesField(ID, book.getId()));
+        addText(document, TITLE, book.getTitle());
+        if (book.getAuthors() != null) {
+            addText(document, AUTHORS, book.getAuthors().stream()
+                    .map(Book.Author::getName)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.joining(" ")));
+        }
+        addText(document, PUBLISHER, book.getPublisher());
+        addText(document, DESCRIPTION, book.getDescription());
+
+        if (book.getCategories() != null) {
+            book.getCategories().stream()
+                    .map(Category::getId)
+                    .filter(Objects::nonNull)
+                    .forEach(categoryId -> document.add(new StringField(CATEGORY, categoryId.toString(),
+                            Field.Store.NO)));
+        }
+        if (book.getPublisher() != null) {
+            document.add(new StringField(PUBLISHER_KEY, fold(book.getPublisher()), Field.Store.NO));
+        }
+        if (book.getCreatedAt() != null) {
+            document.add(new LongPoint(CREATED_AT, epochSecond(book.getCreatedAt())));
+        }
+        if (book.getTitle() != null) {
+            document.add(new SortedDocValuesField(TITLE_SORT, new BytesRef(fold(book.getTitle()))));
+        }
+        if (book.getPublishedDate() != null) {
+            document.add(new NumericDocValuesField(PUBLISHED_DATE, book.getPublishedDate().toEpochDay()));
+        }
+        return document;
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    /* Compares like the case and accent insensitive collation of the database, keeping the text whole */
+    private static String fold(String value) {
+        char[] lowerCase = value.toLowerCase(Locale.ROOT).toCharArray();
+        char[] folded = new char[lowerCase.length * 4];
+        int length = ASCIIFoldingFilter.foldToASCII(lowerCase, 0, folded, 0, lowerCase.length);
+        return new String(folded, 0, length);
+    }
+
+    private static long epochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private interface SearcherFunction<T> {
+        T apply(IndexSearcher searcher) throws IOException;
+    }
+
+    /**
+     * Splits text in words, lower cases them and removes their accents, so "Márquez" is found as "marquez".
+     */
+    static class FoldingAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            StandardTokenizer tokenizer = new StandardTokenizer();
+            TokenStream tokenStream = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+            return new TokenStreamComponents(tokenizer, tokenStream);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.mercadolibro.service.search;
+
+import com.mercadolibro.dto.SuggestionDTO;
+import com.mercadolibro.dto.SuggestionType;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.events.BookChanged;
+import lombok.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Prefix tree over the titles, author names and publishers of the books, serving the search suggestions while the
+ * user types. Every text is reachable from the start of each of its words, compared without case nor accents, so
+ * "potter" suggests "Harry Potter". A text shared by several books is suggested once, and leaves the tree when
+ * its last book does.
+ */
+@Component
+public class BookSuggestIndex implements BookIndex {
+    /* Longer prefixes are resolved by filtering, keeping the tree size linear in the text length */
+    static final int MAX_KEY_LENGTH = 32;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private final Map<Suggestion, Integer> bookCounts = new HashMap<>();
+    private final Map<Long, Set<Suggestion>> bookSuggestions = new HashMap<>();
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root = new Node();
+            bookCounts.clear();
+            bookSuggestions.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(Book book) {
+        index(book);
+    }
+
+    @Override
+    public void commit() {
+        // Changes are visible as soon as they are made
+    }
+
+    /**
+     * Adds the texts of a book, replacing the ones of its previous version.
+     *
+     * @param book The book to index.
+     */
+    public void index(Book book) {
+        Set<Suggestion> suggestions = suggestionsOf(book);
+        lock.writeLock().lock();
+        try {
+            removeBook(book.getId());
+            bookSuggestions.put(book.getId(), suggestions);
+            suggestions.forEach(suggestion -> {
+                if (bookCounts.merge(suggestion, 1, Integer::sum) == 1) {
+                    keysOf(suggestion.getText()).forEach(key -> root.insert(key, 0, suggestion));
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the texts that only the given book contributed.
+     *
+     * @param bookId The ID of the book to remove.
+     */
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeBook(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suggests the titles, authors and publishers having a word that starts with the prefix.
+     *
+     * @param prefix The text typed so far.
+     * @param limit The maximum number of suggestions.
+     * @return The suggestions, the texts whose matching word ends closer to the prefix first.
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String folded = fold(prefix).trim();
+        if (folded.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String key = folded.length() > MAX_KEY_LENGTH ? folded.substring(0, MAX_KEY_LENGTH) : folded;
+
+        Set<Suggestion> found = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            Node node = root.find(key);
+            if (node != null) {
+                node.collect(found, limit, suggestion -> folded.length() <= MAX_KEY_LENGTH
+                        || fold(suggestion.getText()).contains(folded));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return found.stream()
+                .map(suggestion -> new SuggestionDTO(suggestion.getText(), suggestion.getType()))
+                .collect(Collectors.toList());
+    }
+
+    /* Before the book caches are evicted, so a page cached after the eviction is built from the new index */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleBookChangedEvent(BookChanged bookChanged) {
+        if (bookChanged.getAfter() == null) {
+            remove(bookChanged.getBookId());
+        } else {
+            index(bookChanged.getAfter());
+        }
+    }
+
+    private void removeBook(Long bookId) {
+        Set<Suggestion> previous = bookSuggestions.remove(bookId);
+        if (previous == null) {
+            return;
+        }
+        previous.forEach(suggestion -> {
+            if (bookCounts.merge(suggestion, -1, Integer::sum) == 0) {
+                bookCounts.remove(suggestion);
+                keysOf(suggestion.getText()).forEach(key -> root.delete(key, 0, suggestion));
+            }
+        });
+    }
+
+    private static Set<Suggestion> suggestionsOf(Book book) {
+        Set<Suggestion> suggestions = new HashSet<>();
+        addSuggestion(suggestions, book.getTitle(), SuggestionType.TITLE);
+        addSuggestion(suggestions, book.getPublisher(), SuggestionType.PUBLISHER);
+        if (book.getAuthors() != null) {
+            book.getAuthors().forEach(author -> addSuggestion(suggestions, author.getName(), SuggestionType.AUTHOR));
+        }
+        return suggestions;
+    }
+
+    private static void addSuggestion(Set<Suggestion> suggestions, String text, SuggestionType type) {
+        if (text != null && !text.isBlank()) {
+            suggestions.add(new Suggestion(text.trim(), type));
+        }
+    }
+
+    /**
+     * Builds the keys a text is reachable from: the text itself from the start of each of its words.
+     */
+    private static Set<String> keysOf(String text) {
+        String folded = fold(text);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < folded.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(folded.charAt(i - 1));
+            if (wordStart && Character.isLetterOrDigit(folded.charAt(i))) {
+                keys.add(folded.substring(i, Math.min(folded.length(), i + MAX_KEY_LENGTH)));
+            }
+        }
+        return keys;
+    }
+
+    private static String fold(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase();
+    }
+
+    @Value
+    private static class Suggestion {
+        String text;
+        SuggestionType type;
+    }
+
+    /**
+     * Node of a radix tree: a chain of nodes with a single child and no suggestion is kept as one node whose label
+     * holds the whole chain, and the children and suggestions are only allocated once there is something to hold.
+     */
+    private static class Node {
+        private static final Comparator<Suggestion> SUGGESTION_ORDER = Comparator
+                .comparing((Suggestion suggestion) -> suggestion.getText().length())
+                .thenComparing(Suggestion::getText)
+                .thenComparing(Suggestion::getType);
+
+        /* The characters from the parent to this node */
+        private String label;
+        private TreeMap<Character, Node> children;
+        private Set<Suggestion> suggestions;
+
+        Node() {
+            this("");
+        }
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        void insert(String key, int position, Suggestion suggestion) {
+            if (position == key.length()) {
+                if (suggestions == null) {
+                    suggestions = new TreeSet<>(SUGGESTION_ORDER);
+                }
+                suggestions.add(suggestion);
+                return;
+            }
+            if (children == null) {
+                children = new TreeMap<>();
+            }
+
+            char first = key.charAt(position);
+            Node child = children.get(first);
+            if (child == null) {
+                Node leaf = new Node(key.substring(position));
+                leaf.insert(key, key.length(), suggestion);
+                children.put(first, leaf);
+                return;
+            }
+
+            int common = commonPrefixLength(child.label, key, position);
+            if (common < child.label.length()) {
+                // The key leaves the label halfway, so the label is split where they part
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children = new TreeMap<>();
+                split.children.put(child.label.charAt(0), child);
+                children.put(first, split);
+                child = split;
+            }
+            child.insert(key, position + common, suggestion);
+        }
+
+        /**
+         * Deletes a suggestion, pruning the nodes left empty and merging the chains left with a single child.
+         *
+         * @return true if this node is now empty.
+         */
+        boolean delete(String key, int position, Suggestion suggestion) {
+            if (position == key.length()) {
+                if (suggestions != null && suggestions.remove(suggestion) && suggestions.isEmpty()) {
+                    suggestions = null;
+                }
+            } else if (children != null) {
+                char first = key.charAt(position);
+                Node child = children.get(first);
+                if (child != null && key.startsWith(child.label, position)) {
+                    if (child.delete(key, position + child.label.length(), suggestion)) {
+                        children.remove(first);
+                    } else if (child.suggestions == null && child.children.size() == 1) {
+                        Node grandchild = child.children.firstEntry().getValue();
+                        grandchild.label = child.label + grandchild.label;
+                        children.put(first, grandchild);
+                    }
+                }
+                if (children.isEmpty()) {
+                    children = null;
+                }
+            }
+            return suggestions == null && children == null;
+        }
+
+        /**
+         * Finds the node under which every key starting with the given one is, which may be past the end of the
+         * key when the key ends halfway through a label.
+         */
+        Node find(String key) {
+            Node node = this;
+            int position = 0;
+            while (position < key.length()) {
+                Node child = node.children == null ? null : node.children.get(key.charAt(position));
+                if (child == null) {
+                    return null;
+                }
+                int common = commonPrefixLength(child.label, key, position);
+                if (position + common == key.length()) {
+                    return child;
+                }
+                if (common < child.label.length()) {
+                    return null;
+                }
+                position += common;
+                node = child;
+            }
+            return node;
+        }
+
+        /**
+         * Collects suggestions by the length of their key, and then by their key, so the texts ending closer to
+         * the prefix come first whatever letters follow it.
+         */
+        void collect(Set<Suggestion> found, int limit, Predicate<Suggestion> filter) {
+            PriorityQueue<Path> pending = new PriorityQueue<>(Comparator
+                    .comparingInt((Path path) -> path.getKey().length())
+                    .thenComparing(Path::getKey));
+            pending.add(new Path("", this));
+            while (!pending.isEmpty()) {
+                Path path = pending.poll();
+                Node node = path.getNode();
+                if (node.suggestions != null) {
+                    for (Suggestion suggestion : node.suggestions) {
+                        if (found.size() >= limit) {
+                            return;
+                        }
+                        if (filter.test(suggestion)) {
+                            found.add(suggestion);
+                        }
+                    }
+                }
+                if (node.children != null) {
+                    node.children.values().forEach(child -> pending.add(new Path(path.getKey() + child.label, child)));
+                }
+            }
+        }
+
+        private static int commonPrefixLength(String label, String key, int position) {
+            int length = Math.min(label.length(), key.length() - position);
+            int common = 0;
+            while (common < length && label.charAt(common) == key.charAt(position + common)) {
+                common++;
+            }
+            return common;
+        }
+    }
+
+    @Value
+    private static class Path {
+        String key;
+        Node node;
+    }
+}
@@ -1,34 +1,36 @@
 package com.mercadolibro.service.specification;
 
+import com.mercadolibro.dto.BookCursor;
 import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.util.MonthWindow;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import javax.persistence.criteria.*;
-import java.util.Calendar;
+import java.util.Collection;
 
 public class BookSpecification {
     /**
-     * Builds a condition that validates that a book has the same category as the one provided.
+     * Builds a condition that validates that a book belongs to one of the provided categories. It is a semi-join on
+     * book_categories, which the (category_id, book_id) index serves without reading the book rows.
      *
-     * @param category The category by which it is compared.
+     * @param categoryIds The IDs of the categories by which it is compared, resolved from the category name.
      * @return a Specification object that is used to construct a condition that filters the results of a query.
      */
-    public static Specification<Book> categorySpec(String category) {
+    public static Specification<Book> categorySpec(Collection<Long> categoryIds) {
         return (root, query, criteriaBuilder) -> {
+            if (categoryIds.isEmpty()) {
+                return criteriaBuilder.disjunction();
+            }
+
             Subquery<Long> subquery = query.subquery(Long.class);
-            Root<Book> subqueryRoot = subquery.from(Book.class);
-            subquery.select(criteriaBuilder.count(subqueryRoot));
-            subquery.where(
-                    criteriaBuilder.and(
-                            criteriaBuilder.equal(subqueryRoot, root),
-                            criteriaBuilder.equal(
-                                    subqueryRoot.join("categories").get("name"),
-                                    category
-                            )
-                    )
-            );
+            Root<Book> subqueryRoot = subquery.correlate(root);
+            Join<Book, Category> categories = subqueryRoot.join("categories");
+            subquery.select(categories.get("id"))
+                    .where(categories.get("id").in(categoryIds));
 
-            return criteriaBuilder.greaterThan(subquery, 0L);
+            return criteriaBuilder.exists(subquery);
         };
     }
 
@@ -43,52 +45,71 @@ public class BookSpecification {
     }
 
     /**
-     * Builds a condition that validates that a book has been published in the current month.
+     * Builds a condition that validates that a book has been published in the current month. It is a range on
+     * createdAt, so the created_at index serves it.
      *
      * @return a Specification object that is used to construct a condition that filters the results of a query.
      */
     public static Specification<Book> releasesSpec() {
         return (root, query, criteriaBuilder) -> {
-            Calendar calendar = Calendar.getInstance();
-            int currentYear = calendar.get(Calendar.YEAR);
-            int currentMonth = calendar.get(Calendar.MONTH) + 1;
+            MonthWindow currentMonth = MonthWindow.current();
 
             return criteriaBuilder.and(
-                    criteriaBuilder.equal(
-                            criteriaBuilder.function("year", Integer.class, root.get("createdAt")),
-                            currentYear
-                    ),
-                    criteriaBuilder.equal(
-                            criteriaBuilder.function("month", Integer.class, root.get("createdAt")),
-                            currentMonth
-                    )
+                    criteriaBuilder.greaterThanOrEqualTo(root.get("createdAt"), currentMonth.getStart()),
+                    criteriaBuilder.lessThan(root.get("createdAt"), currentMonth.getEnd())
             );
         };
     }
 
     /**
-     * Builds a specification that filters based on the keyword by title, author, or publisher.
+     * Builds a keyset condition that only keeps the books placed after the cursor in the given order. The order is
+     * completed with the book ID, so the condition is a lexicographic comparison on (sort keys..., id). NULL values
+     * are placed first in ascending orders and last in descending ones, like MySQL does.
      *
-     * @param keyword The keyword by which it is filtering.
-     * @return a Specification object used to build a condition that filters the results of a query.
+     * @param sort The order of the listing, on title and/or publishedDate.
+     * @param cursor The sort keys and ID of the last book already returned.
+     * @return a Specification object that is used to construct a condition that filters the results of a query.
      */
-    public static Specification<Book> titleOrAuthorOrPublisherContainingSpec(String keyword) {
-        String[] keywords = keyword.toLowerCase().split("\\s+");
-
+    public static Specification<Book> afterCursorSpec(Sort sort, BookCursor cursor) {
         return (root, query, criteriaBuilder) -> {
-            Predicate predicate = criteriaBuilder.isFalse(criteriaBuilder.literal(false));
+            Predicate previousKeysEqual = criteriaBuilder.conjunction();
+            Predicate after = criteriaBuilder.disjunction();
 
-            for (String kw : keywords) {
-                predicate = criteriaBuilder.and(
-                        predicate,
-                        criteriaBuilder.or(
-                                criteriaBuilder.like(criteriaBuilder.lower(root.get("title")), "%" + kw + "%"),
-                                criteriaBuilder.like(criteriaBuilder.lower(root.get("authors")), "%" + kw + "%"),
-                                criteriaBuilder.like(criteriaBuilder.lower(root.get("publisher")), "%" + kw + "%")
-                        )
-                );
+            for (Sort.Order order : sort) {
+                Path<Comparable<Object>> path = root.get(order.getProperty());
+                Comparable<Object> value = cursorValue(cursor, order.getProperty());
+
+                Predicate keyAfter;
+                if (order.isAscending()) {
+                    keyAfter = value == null
+                            ? criteriaBuilder.isNotNull(path)
+                            : criteriaBuilder.greaterThan(path, value);
+                } else {
+                    keyAfter = value == null
+                            ? criteriaBuilder.disjunction()
+                            : criteriaBuilder.or(criteriaBuilder.lessThan(path, value), criteriaBuilder.isNull(path));
+                }
+
+                after = criteriaBuilder.or(after, criteriaBuilder.and(previousKeysEqual, keyAfter));
+                previousKeysEqual = criteriaBuilder.and(previousKeysEqual, value == null
+                        ? criteriaBuilder.isNull(path)
+                        : criteriaBuilder.equal(path, value));
             }
-            return predicate;
+
+            return criteriaBuilder.or(after, criteriaBuilder.and(previousKeysEqual,
+                    criteriaBuilder.greaterThan(root.get("id"), cursor.getId())));
         };
     }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> cursorValue(BookCursor cursor, String property) {
+        switch (property) {
+            case "title":
+                return (Comparable<Object>) (Comparable<?>) cursor.getTitle();
+            case "publishedDate":
+                return (Comparable<Object>) (Comparable<?>) cursor.getPublishedDate();
+            default:
+                throw new IllegalArgumentException("Books can not be scrolled by " + property);
+        }
+    }
 }
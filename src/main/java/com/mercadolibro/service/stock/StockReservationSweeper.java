@@ -0,0 +1,45 @@
+package com.mercadolibro.service.stock;
+
+import com.mercadolibro.service.StockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Gives back the stock held by invoices that were not paid before their reservation expired. Every run releases
+ * batches until no expired reservation is left, each batch in its own transaction.
+ */
+@Component
+public class StockReservationSweeper {
+    private final Logger logger = LoggerFactory.getLogger(StockReservationSweeper.class);
+
+    private final StockService stockService;
+    private final int batchSize;
+
+    @Autowired
+    public StockReservationSweeper(StockService stockService,
+                                   @Value("${app.stock.reservation.sweep-batch-size:100}") int batchSize) {
+        this.stockService = stockService;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock.reservation.sweep-interval-ms:60000}")
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        int released = 0;
+        int batch;
+        do {
+            batch = stockService.releaseExpired(now, batchSize);
+            released += batch;
+        } while (batch == batchSize);
+
+        if (released > 0) {
+            logger.info("Released the expired stock reservations of {} invoices", released);
+        }
+    }
+}
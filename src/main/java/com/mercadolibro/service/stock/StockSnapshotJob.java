@@ -0,0 +1,33 @@
+package com.mercadolibro.service.stock;
+
+import com.mercadolibro.service.StockHistoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+
+/**
+ * Records the stock of every book for the current month. Each run replaces the previous one of the month, so
+ * running often keeps the current month fresh while closed months keep their last recorded stock.
+ */
+@Component
+public class StockSnapshotJob {
+    private final Logger logger = LoggerFactory.getLogger(StockSnapshotJob.class);
+
+    private final StockHistoryService stockHistoryService;
+
+    @Autowired
+    public StockSnapshotJob(StockHistoryService stockHistoryService) {
+        this.stockHistoryService = stockHistoryService;
+    }
+
+    @Scheduled(cron = "${app.stock.snapshot.cron:0 0 * * * *}")
+    public void snapshot() {
+        YearMonth month = YearMonth.now();
+        int books = stockHistoryService.snapshot(month);
+        logger.debug("Stock of {} books recorded for {}", books, month);
+    }
+}
@@ -0,0 +1,59 @@
+package com.mercadolibro.util;
+
+import com.mercadolibro.exception.BulkheadFullException;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Caps the concurrent calls to a remote dependency, so a slow dependency ties up a bounded number of request
+ * threads instead of all of them. Callers over the cap wait a short while for a free slot and are rejected after it.
+ */
+public class Bulkhead {
+    private final String name;
+    @Getter
+    private final int maxConcurrentCalls;
+    @Getter
+    private final Duration maxWait;
+    private final Semaphore permits;
+
+    public Bulkhead(String name, int maxConcurrentCalls, Duration maxWait) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("The maximum concurrent calls must be at least 1");
+        }
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /**
+     * Runs the action once a slot is free.
+     *
+     * @param action The call to the remote dependency.
+     * @return The result of the action.
+     * @throws BulkheadFullException If no slot was freed within the maximum wait, without running the action.
+     */
+    public <T> T execute(Supplier<T> action) {
+        try {
+            if (!permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new BulkheadFullException(String.format("%s is busy, try again later", name));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException(String.format("Interrupted while waiting for %s", name));
+        }
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getAvailableCalls() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,67 @@
+package com.mercadolibro.util;
+
+import lombok.Getter;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Half-open [start, end) range of timestamps of a month. Filtering with a range instead of YEAR() and MONTH()
+ * functions lets the database use the index of the column. The window of the current month is computed once and
+ * shared until the month ends.
+ */
+@Getter
+public final class MonthWindow {
+    private static final AtomicReference<MonthWindow> CURRENT = new AtomicReference<>();
+    private static volatile Clock clock = Clock.systemDefaultZone();
+
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+
+    private MonthWindow(LocalDateTime start, LocalDateTime end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Builds the window of a month.
+     *
+     * @param month The month of the window.
+     * @return A window from the first instant of the month to the first instant of the next one.
+     */
+    public static MonthWindow of(YearMonth month) {
+        return new MonthWindow(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+    }
+
+    /**
+     * Retrieves the window of the current month, replacing the shared one once the month is over.
+     *
+     * @return The window of the current month.
+     */
+    public static MonthWindow current() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        MonthWindow window = CURRENT.get();
+        if (window == null || !window.contains(now)) {
+            window = of(YearMonth.from(now));
+            CURRENT.set(window);
+        }
+        return window;
+    }
+
+    /**
+     * Checks whether a timestamp is part of the window.
+     *
+     * @param dateTime The timestamp to check.
+     * @return true if the timestamp is at or after the start and before the end.
+     */
+    public boolean contains(LocalDateTime dateTime) {
+        return !dateTime.isBefore(start) && dateTime.isBefore(end);
+    }
+
+    /* Lets tests move the current month */
+    static void setClock(Clock newClock) {
+        clock = newClock;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mercadolibro.util;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Retries an action a bounded number of times, waiting an exponentially growing and randomized time between
+ * attempts. The randomization spreads retries of concurrent callers that failed together, so they do not collide
+ * again on the next attempt.
+ */
+@Getter
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("The maximum attempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Runs the action until it succeeds, it fails with an exception that is not retryable, or the attempts run out.
+     *
+     * @param action The action to run.
+     * @param retryOn The exception type that makes the action be retried.
+     * @return The result of the first successful attempt.
+     * @throws RuntimeException The exception of the last attempt if all of them failed.
+     */
+    public <T> T execute(Supplier<T> action, Class<? extends RuntimeException> retryOn) {
+        return execute(action, (Predicate<RuntimeException>) retryOn::isInstance);
+    }
+
+    /**
+     * Runs the action until it succeeds, it fails with an exception that is not retryable, or the attempts run out.
+     *
+     * @param action The action to run.
+     * @param retryIf Tells whether the failure of an attempt is worth retrying.
+     * @return The result of the first successful attempt.
+     * @throws RuntimeException The exception of the last attempt if all of them failed.
+     */
+    public <T> T execute(Supplier<T> action, Predicate<RuntimeException> retryIf) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                if (!retryIf.test(e) || attempt >= maxAttempts) {
+                    throw e;
+                }
+                sleep(backoff(attempt));
+            }
+        }
+    }
+
+    public void execute(Runnable action, Class<? extends RuntimeException> retryOn) {
+        execute(() -> {
+            action.run();
+            return null;
+        }, retryOn);
+    }
+
+    /**
+     * Picks a random wait between zero and the exponential backoff of the attempt, capped by the maximum backoff.
+     */
+    long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -6,6 +6,8 @@ import com.mercadolibro.exception.BookAlreadyExistsException;
 import com.mercadolibro.exception.BookNotFoundException;
 import com.mercadolibro.dto.BookReqDTO;
 import com.mercadolibro.dto.BookRespDTO;
+import com.mercadolibro.dto.SuggestionDTO;
+import com.mercadolibro.dto.SuggestionType;
 import com.mercadolibro.service.BookService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -183,4 +185,19 @@ public class BookControllerTest {
         assertEquals(200, response.getStatusCodeValue()); // Verificar que la respuesta sea OK
         assertEquals(mockPageDTO, response.getBody()); // Verificar que el cuerpo de la respuesta coincida con el PageDTO simulado
     }
+
+    @Test
+    public void testSuggestBooks() {
+        // Arrange
+        List<SuggestionDTO> suggestions = List.of(new SuggestionDTO("Harry Potter", SuggestionType.TITLE));
+
+        when(bookService.suggest("harry", 10)).thenReturn(suggestions);
+
+        // Act
+        ResponseEntity<List<SuggestionDTO>> response = bookController.suggest("harry", 10);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(suggestions, response.getBody());
+    }
 }
@@ -0,0 +1,68 @@
+package com.mercadolibro.repository;
+
+import com.mercadolibro.entity.InvoiceItem;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true"
+})
+class InvoiceItemRepositoryTest {
+    private static final int ITEMS = 120;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private InvoiceItemRepository invoiceItemRepository;
+
+    @Test
+    @DisplayName("should insert the items of an invoice in batches, taking their IDs in blocks")
+    void shouldBatchInserts() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        List<InvoiceItem> items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            InvoiceItem item = new InvoiceItem();
+            item.setBookId((long) i);
+            item.setQuantity(1);
+            item.setUnitPrice(10.0);
+            item.setTotal(10.0);
+            item.setInvoiceId(invoiceId);
+            items.add(item);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // WHEN
+        List<InvoiceItem> saved = invoiceItemRepository.saveAll(items);
+        entityManager.flush();
+
+        // THEN
+        assertEquals(ITEMS, saved.stream().map(InvoiceItem::getId).filter(Objects::nonNull).distinct().count());
+        assertEquals(ITEMS, statistics.getEntityInsertCount());
+        // Three sequence calls and three insert batches, instead of a round trip per item
+        assertTrue(statistics.getPrepareStatementCount() <= 6, "statements: " + statistics.getPrepareStatementCount());
+        entityManager.clear();
+        assertEquals(ITEMS, invoiceItemRepository.findByInvoiceId(invoiceId).size());
+    }
+}
@@ -11,6 +11,8 @@ import com.mercadolibro.repository.BookRepository;
 import com.mercadolibro.repository.CategoryRepository;
 import com.mercadolibro.service.impl.BookServiceImpl;
 import com.mercadolibro.service.impl.CategoryServiceImpl;
+import com.mercadolibro.service.search.BookSearchIndex;
+import com.mercadolibro.service.search.BookSuggestIndex;
 
 import static org.mockito.Mockito.*;
 
@@ -21,6 +23,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.data.domain.*;
@@ -47,6 +50,15 @@ public class BookServiceTest {
     @Spy
     private ModelMapper modelMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private BookSuggestIndex bookSuggestIndex;
+
     @InjectMocks
     private BookServiceImpl bookService;
 
@@ -608,15 +620,11 @@ public class BookServiceTest {
         String keyword = "test";
         short page = 0;
         short size = 1;
-        Pageable pageable = PageRequest.of(page, 9);
+        Pageable pageable = PageRequest.of(page, size);
 
-        List<Book> mockBooks = Arrays.asList(new Book(), new Book());
-        Page<Book> mockPage = new PageImpl<>(mockBooks, pageable, mockBooks.size());
-
-        when(bookRepository.findAll(
-                any(Specification.class),
-                any(Pageable.class)))
-                .thenReturn(mockPage);
+        when(bookSearchIndex.search(eq(keyword), isNull(), isNull(), eq(false), eq(pageable)))
+                .thenReturn(new PageImpl<>(List.of(1L), pageable, 2));
+        when(bookRepository.findAllRanked(List.of(1L))).thenReturn(List.of(new Book()));
 
         // WHEN
         PageDTO<BookRespDTO> result = bookService.findAll(keyword, null, null, false,
@@ -624,8 +632,8 @@ public class BookServiceTest {
 
         // THEN
         assertNotNull(result);
-        assertFalse(result.getContent().isEmpty());
-        assertEquals(mockPage.getTotalPages(), result.getTotalPages());
-        assertEquals(mockPage.getTotalElements(), result.getTotalElements());
+        assertEquals(1, result.getContent().size());
+        assertEquals(2, result.getTotalPages());
+        assertEquals(2, result.getTotalElements());
     }
 }
@@ -0,0 +1,154 @@
+package com.mercadolibro.service.analytics;
+
+import com.mercadolibro.entity.SalesRollup;
+import com.mercadolibro.entity.SalesRollup.Dimension;
+import com.mercadolibro.entity.SalesRollup.Granularity;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.repository.SalesRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The rollups are upserted with MySQL syntax, so H2 runs in its MySQL mode.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:sales-analytics;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+class SalesAnalyticsStoreTest {
+    @Autowired
+    private SalesRollupRepository salesRollupRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    private SalesAnalyticsStore salesAnalyticsStore;
+
+    @BeforeEach
+    void setUp() {
+        salesAnalyticsStore = new SalesAnalyticsStore(salesRollupRepository, invoiceRepository);
+        salesRollupRepository.add(day(LocalDate.of(2023, 1, 10), Dimension.TOTAL, SalesRollup.TOTAL_KEY, 2, 5, 80));
+        salesRollupRepository.add(day(LocalDate.of(2023, 2, 3), Dimension.TOTAL, SalesRollup.TOTAL_KEY, 1, 1, 10));
+        salesRollupRepository.add(day(LocalDate.of(2023, 1, 10), Dimension.CATEGORY, "Fantasy", 2, 5, 80));
+        salesRollupRepository.add(day(LocalDate.of(2023, 1, 10), Dimension.CATEGORY, "Horror", 1, 4, 80));
+        salesRollupRepository.add(day(LocalDate.of(2023, 2, 3), Dimension.CATEGORY, "Horror", 1, 1, 10));
+        // Month rows are read by the database queries only
+        salesRollupRepository.add(SalesRollup.builder().granularity(Granularity.MONTH)
+                .periodStart(LocalDate.of(2023, 1, 1)).dimension(Dimension.TOTAL).dimensionKey(SalesRollup.TOTAL_KEY)
+                .invoices(2).units(5).revenue(80).build());
+    }
+
+    @Test
+    @DisplayName("should answer nothing until it is loaded")
+    void shouldRequireLoad() {
+        assertFalse(salesAnalyticsStore.isLoaded());
+        assertThrows(IllegalStateException.class, () -> salesAnalyticsStore.sumByMonth(SalesMetric.INVOICES, null, null));
+    }
+
+    @Test
+    @DisplayName("should add up the day rollups by month and rank the keys of a dimension")
+    void shouldAggregateDays() {
+        // WHEN
+        salesAnalyticsStore.reload();
+
+        // THEN
+        assertEquals(Map.of(YearMonth.of(2023, 1), 2.0, YearMonth.of(2023, 2), 1.0),
+                salesAnalyticsStore.sumByMonth(SalesMetric.INVOICES, null, null));
+        assertEquals(List.of(new SalesTotal("Fantasy", 5), new SalesTotal("Horror", 5)),
+                salesAnalyticsStore.rank(Dimension.CATEGORY, SalesMetric.UNITS, null, null));
+        assertEquals(List.of(new SalesTotal("Horror", 90), new SalesTotal("Fantasy", 80)),
+                salesAnalyticsStore.rank(Dimension.CATEGORY, SalesMetric.REVENUE, null, null));
+        assertEquals(List.of(new SalesTotal("Horror", 1)),
+                salesAnalyticsStore.rank(Dimension.CATEGORY, SalesMetric.UNITS, LocalDate.of(2023, 2, 1), null));
+    }
+
+    @Test
+    @DisplayName("should add the sales of new payments to the loaded rollups")
+    void shouldAddPayments() {
+        // GIVEN
+        salesAnalyticsStore.reload();
+
+        // WHEN
+        salesAnalyticsStore.add(UUID.randomUUID(), List.of(
+                day(LocalDate.of(2023, 2, 3), Dimension.CATEGORY, "Fantasy", 1, 3, 30),
+                day(LocalDate.of(2023, 2, 4), Dimension.CATEGORY, "Poetry", 1, 1, 5),
+                SalesRollup.builder().granularity(Granularity.MONTH).periodStart(LocalDate.of(2023, 2, 1))
+                        .dimension(Dimension.CATEGORY).dimensionKey("Fantasy").invoices(1).units(3).revenue(30).build()));
+
+        // THEN
+        assertEquals(List.of(new SalesTotal("Fantasy", 8), new SalesTotal("Horror", 5), new SalesTotal("Poetry", 1)),
+                salesAnalyticsStore.rank(Dimension.CATEGORY, SalesMetric.UNITS, null, null));
+    }
+
+    @Test
+    @DisplayName("should keep the sales added while reloading that the rollups read did not have yet, only once")
+    void shouldKeepPaymentsAddedWhileReloading() {
+        // GIVEN
+        UUID read = UUID.randomUUID();
+        UUID missed = UUID.randomUUID();
+        SalesRollupRepository rollups = mock(SalesRollupRepository.class);
+        InvoiceRepository invoices = mock(InvoiceRepository.class);
+        SalesAnalyticsStore store = new SalesAnalyticsStore(rollups, invoices);
+        Object[] readRow = {LocalDate.of(2023, 1, 10), Dimension.TOTAL, SalesRollup.TOTAL_KEY, 1L, 2L, 20.0};
+        // Both payments commit while the rollups are read, only the first one before the rows were
+        when(rollups.streamColumns(Granularity.DAY)).thenReturn(Stream.<Object[]>of(readRow).peek(row -> {
+            store.add(read, List.of(day(LocalDate.of(2023, 1, 10), Dimension.TOTAL, SalesRollup.TOTAL_KEY, 1, 2, 20)));
+            store.add(missed, List.of(day(LocalDate.of(2023, 1, 11), Dimension.TOTAL, SalesRollup.TOTAL_KEY, 1, 3, 30)));
+        }));
+        when(invoices.findPaidIds(anyCollection())).thenReturn(List.of(read));
+
+        // WHEN
+        store.reload();
+
+        // THEN
+        assertEquals(Map.of(YearMonth.of(2023, 1), 5.0), store.sumByMonth(SalesMetric.UNITS, null, null));
+    }
+
+    @Test
+    @DisplayName("should add up every metric of a dimension or of the months within a range of days")
+    void shouldSummarize() {
+        // GIVEN
+        salesAnalyticsStore.reload();
+
+        // WHEN
+        List<SalesSummary> byRevenue = salesAnalyticsStore.summarize(Dimension.CATEGORY, SalesMetric.REVENUE, null, null);
+        List<SalesSummary> january = salesAnalyticsStore.summarize(Dimension.CATEGORY, SalesMetric.UNITS,
+                LocalDate.of(2023, 1, 1), LocalDate.of(2023, 2, 1));
+        List<SalesSummary> months = salesAnalyticsStore.summarizeByMonth(null, null);
+
+        // THEN
+        assertEquals(List.of(new SalesSummary("Horror", 2, 5, 90), new SalesSummary("Fantasy", 2, 5, 80)), byRevenue);
+        assertEquals(List.of(new SalesSummary("Fantasy", 2, 5, 80), new SalesSummary("Horror", 1, 4, 80)), january);
+        assertEquals(List.of(new SalesSummary("2023-02", 1, 1, 10), new SalesSummary("2023-01", 2, 5, 80)), months);
+    }
+
+    private static SalesRollup day(LocalDate day, Dimension dimension, String key, long invoices, long units,
+                                   double revenue) {
+        return SalesRollup.builder()
+                .granularity(Granularity.DAY)
+                .periodStart(day)
+                .dimension(dimension)
+                .dimensionKey(key)
+                .invoices(invoices)
+                .units(units)
+                .revenue(revenue)
+                .build();
+    }
+}
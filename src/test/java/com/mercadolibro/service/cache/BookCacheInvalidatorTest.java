@@ -0,0 +1,145 @@
+package com.mercadolibro.service.cache;
+
+import com.mercadolibro.dto.BookRespDTO;
+import com.mercadolibro.dto.PageDTO;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.events.BookChanged;
+import com.mercadolibro.events.BookContentChanged;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static com.mercadolibro.service.cache.BookCacheInvalidator.BOOKS_CACHE;
+import static com.mercadolibro.service.cache.BookCacheInvalidator.BOOK_CACHE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookCacheInvalidatorTest {
+    private Cache booksCache;
+    private Cache bookCache;
+    private BookCacheInvalidator bookCacheInvalidator;
+
+    @BeforeEach
+    void setUp() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        booksCache = cacheManager.getCache(BOOKS_CACHE);
+        bookCache = cacheManager.getCache(BOOK_CACHE);
+        bookCacheInvalidator = new BookCacheInvalidator(cacheManager);
+    }
+
+    @Test
+    @DisplayName("should only evict the pages whose filters match the changed book")
+    void shouldEvictOnlyMatchingPages() {
+        // GIVEN
+        BookPageKey fiction = pageKey("Fiction", null);
+        BookPageKey poetry = pageKey("Poetry", null);
+        BookPageKey all = pageKey(null, null);
+        booksCache.put(fiction, page());
+        booksCache.put(poetry, page());
+        booksCache.put(all, page());
+        bookCache.put(1L, new BookRespDTO());
+
+        Book before = book(1L, "Planeta", "Fiction");
+        Book after = book(1L, "Planeta", "Fiction");
+
+        // WHEN
+        bookCacheInvalidator.handleBookChangedEvent(new BookChanged(1L, before, after));
+
+        // THEN
+        assertNull(booksCache.get(fiction));
+        assertNull(booksCache.get(all));
+        assertNotNull(booksCache.get(poetry));
+        assertNull(bookCache.get(1L));
+    }
+
+    @Test
+    @DisplayName("should evict the pages of both the old and the new publisher")
+    void shouldEvictOldAndNewPublisherPages() {
+        // GIVEN
+        BookPageKey planeta = pageKey(null, "Planeta");
+        BookPageKey alfaguara = pageKey(null, "Alfaguara");
+        BookPageKey anagrama = pageKey(null, "Anagrama");
+        booksCache.put(planeta, page());
+        booksCache.put(alfaguara, page());
+        booksCache.put(anagrama, page());
+
+        // WHEN
+        bookCacheInvalidator.handleBookChangedEvent(new BookChanged(1L,
+                book(1L, "Planeta", "Fiction"), book(1L, "Alfaguara", "Fiction")));
+
+        // THEN
+        assertNull(booksCache.get(planeta));
+        assertNull(booksCache.get(alfaguara));
+        assertNotNull(booksCache.get(anagrama));
+    }
+
+    @Test
+    @DisplayName("should only evict the pages containing a book whose stock changed")
+    void shouldEvictPagesContainingBook() {
+        // GIVEN
+        BookPageKey firstPage = pageKey(null, null);
+        BookPageKey secondPage = new BookPageKey(null, null, null, false, null, null, (short) 1, (short) 10);
+        booksCache.put(firstPage, page(BookRespDTO.builder().id(1L).build()));
+        booksCache.put(secondPage, page(BookRespDTO.builder().id(2L).build()));
+
+        // WHEN
+        bookCacheInvalidator.handleBookContentChangedEvent(new BookContentChanged(List.of(2L)));
+
+        // THEN
+        assertNotNull(booksCache.get(firstPage));
+        assertNull(booksCache.get(secondPage));
+    }
+
+    @Test
+    @DisplayName("should evict the keyword pages the search index would find the changed book in")
+    void shouldMatchKeywordsLikeSearchIndex() {
+        // GIVEN
+        BookPageKey folded = keywordPageKey("strasse");
+        BookPageKey lastWordPrefix = keywordPageKey("cortazar rayu");
+        BookPageKey innerWordPrefix = keywordPageKey("rayu cortazar");
+        BookPageKey otherAuthor = keywordPageKey("borges");
+        List.of(folded, lastWordPrefix, innerWordPrefix, otherAuthor).forEach(key -> booksCache.put(key, page()));
+
+        Book book = Book.builder()
+                .id(1L)
+                .title("Rayuela")
+                .authors(List.of(new Book.Author("Julio Cortázar", "julio@example.com")))
+                .publisher("Straße Verlag")
+                .build();
+
+        // WHEN
+        bookCacheInvalidator.handleBookChangedEvent(new BookChanged(1L, null, book));
+
+        // THEN
+        assertNull(booksCache.get(folded));
+        assertNull(booksCache.get(lastWordPrefix));
+        assertNotNull(booksCache.get(innerWordPrefix));
+        assertNotNull(booksCache.get(otherAuthor));
+    }
+
+    private static BookPageKey keywordPageKey(String keyword) {
+        return new BookPageKey(keyword, null, null, false, null, null, (short) 0, (short) 10);
+    }
+
+    private static BookPageKey pageKey(String category, String publisher) {
+        return new BookPageKey(null, category, publisher, false, null, null, (short) 0, (short) 10);
+    }
+
+    private static PageDTO<BookRespDTO> page(BookRespDTO... books) {
+        return new PageDTO<>(List.of(books), 1, (long) books.length, 0, 10);
+    }
+
+    private static Book book(Long id, String publisher, String category) {
+        return Book.builder()
+                .id(id)
+                .title("a title")
+                .publisher(publisher)
+                .categories(Set.of(Category.builder().id(1L).name(category).build()))
+                .build();
+    }
+}
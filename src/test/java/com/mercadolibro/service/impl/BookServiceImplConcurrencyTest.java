@@ -0,0 +1,138 @@
+package com.mercadolibro.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercadolibro.dto.BookReqPatchDTO;
+import com.mercadolibro.dto.BookStockDTO;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.CategoryRepository;
+import com.mercadolibro.service.BookImageService;
+import com.mercadolibro.service.StockService;
+import com.mercadolibro.service.search.BookSearchIndex;
+import com.mercadolibro.service.search.BookSuggestIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs admin edits of a book while checkouts commit in other threads, each in its own transaction.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(StockServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookServiceImplConcurrencyTest {
+    private static final int STOCK = 10;
+    private static final int CHECKOUTS = 3;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private BookServiceImpl bookService;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        bookService = new BookServiceImpl(bookRepository, categoryRepository, objectMapper, new ModelMapper(),
+                mock(BookImageService.class), mock(ApplicationEventPublisher.class), mock(BookSearchIndex.class),
+                mock(BookSuggestIndex.class));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("should keep the checkouts committed while a patch of the book was in progress")
+    void shouldNotWriteBackStaleStock() {
+        // GIVEN
+        Book book = bookRepository.save(book("Dune", "isbn-dune", STOCK));
+        BookReqPatchDTO patch = new BookReqPatchDTO();
+        patch.setTitle("Dune Messiah");
+
+        // WHEN
+        transactionTemplate.executeWithoutResult(status -> {
+            // The patch reads the book before the checkouts and saves it after they committed
+            assertEquals(STOCK, bookRepository.findById(book.getId()).orElseThrow().getStock());
+            runCheckouts(book.getId());
+            bookService.patch(book.getId(), patch);
+        });
+
+        // THEN
+        Book patched = bookRepository.findById(book.getId()).orElseThrow();
+        assertEquals("Dune Messiah", patched.getTitle());
+        assertEquals(STOCK - CHECKOUTS, patched.getStock());
+    }
+
+    @Test
+    @DisplayName("should set the stock of a patch through a versioned update")
+    void shouldBumpVersionOnStockPatch() {
+        // GIVEN
+        Book book = bookRepository.save(book("Dune", "isbn-dune", STOCK));
+        BookStockDTO before = bookRepository.findStocks(List.of(book.getId())).get(0);
+        BookReqPatchDTO patch = new BookReqPatchDTO();
+        patch.setStock(50);
+
+        // WHEN
+        transactionTemplate.executeWithoutResult(status -> bookService.patch(book.getId(), patch));
+
+        // THEN
+        BookStockDTO after = bookRepository.findStocks(List.of(book.getId())).get(0);
+        assertEquals(50, after.getStock());
+        assertEquals(before.getVersion() + 1, after.getVersion());
+    }
+
+    private void runCheckouts(Long bookId) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                executor.submit(() -> stockService.decrementStock(Map.of(bookId, 1))).get(1, TimeUnit.MINUTES);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Book book(String title, String isbn, int stock) {
+        return Book.builder()
+                .title(title)
+                .isbn(isbn)
+                .price(BigDecimal.TEN)
+                .stock(stock)
+                .build();
+    }
+}
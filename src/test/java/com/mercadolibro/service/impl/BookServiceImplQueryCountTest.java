@@ -0,0 +1,240 @@
+package com.mercadolibro.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mercadolibro.dto.BookRespDTO;
+import com.mercadolibro.dto.CursorPageDTO;
+import com.mercadolibro.dto.PageDTO;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.BookImage;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.CategoryRepository;
+import com.mercadolibro.service.BookImageService;
+import com.mercadolibro.service.search.BookSearchIndex;
+import com.mercadolibro.service.search.BookSuggestIndex;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class BookServiceImplQueryCountTest {
+    private static final int BOOKS = 30;
+    private static final int IMAGES_PER_BOOK = 2;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    private BookImageService bookImageService;
+    private BookServiceImpl bookService;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        bookImageService = mock(BookImageService.class);
+        bookService = new BookServiceImpl(bookRepository, categoryRepository, objectMapper, new ModelMapper(),
+                bookImageService, mock(ApplicationEventPublisher.class), mock(BookSearchIndex.class),
+                mock(BookSuggestIndex.class));
+
+        Category category = entityManager.persist(Category.builder().name("Fiction").build());
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = entityManager.persist(Book.builder()
+                    .title("title " + i)
+                    .isbn("isbn-" + i)
+                    .publisher("Planeta")
+                    .price(BigDecimal.TEN)
+                    .stock(10)
+                    .publishedDate(i % 3 == 0 ? null : LocalDate.of(2000 + i % 5, 1, 1))
+                    .categories(Set.of(category))
+                    .build());
+            for (int j = 0; j < IMAGES_PER_BOOK; j++) {
+                BookImage image = new BookImage();
+                image.setBook(book);
+                image.setName("image-" + i + "-" + j);
+                image.setUrl("https://bucket.s3.amazonaws.com/image-" + i + "-" + j);
+                entityManager.persist(image);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @DisplayName("should run the same number of statements whatever the page size")
+    void shouldRunConstantStatementsPerPage() {
+        // WHEN
+        long smallPageStatements = countStatements((short) 5);
+        long bigPageStatements = countStatements((short) 25);
+
+        // THEN
+        assertEquals(smallPageStatements, bigPageStatements);
+        verifyNoInteractions(bookImageService);
+    }
+
+    @Test
+    @DisplayName("should resolve the image links of every book of the page")
+    void shouldResolveImagesFromEntityGraph() {
+        // WHEN
+        PageDTO<BookRespDTO> page = bookService.findAll(null, null, null, false, null, null,
+                (short) 0, (short) 10);
+
+        // THEN
+        assertEquals(10, page.getContent().size());
+        page.getContent().forEach(book -> assertEquals(IMAGES_PER_BOOK, book.getImageLinks().size()));
+    }
+
+    @Test
+    @DisplayName("should only load the books of the requested page")
+    void shouldLimitPageInDatabase() {
+        // GIVEN
+        entityManager.clear();
+        statistics.clear();
+
+        // WHEN
+        PageDTO<BookRespDTO> page = bookService.findAll(null, null, null, false, null, "asc",
+                (short) 1, (short) 10);
+
+        // THEN
+        assertEquals(10, page.getContent().size());
+        assertEquals(BOOKS, page.getTotalElements());
+        assertEquals("title 18", page.getContent().get(0).getTitle());
+        assertEquals(10, statistics.getEntityStatistics(Book.class.getName()).getLoadCount());
+    }
+
+    @ParameterizedTest
+    @CsvSource(value = {"null,null", "asc,null", "desc,null", "null,newer", "null,older", "asc,newer", "desc,older"},
+            nullValues = "null")
+    @DisplayName("should scroll every book once, in the same order as the paged listing")
+    void shouldScrollInPageOrder(String sort, String selection) {
+        // GIVEN
+        List<Long> expected = bookService.findAll(null, null, null, false, selection, sort, (short) 0, (short) BOOKS)
+                .getContent().stream().map(BookRespDTO::getId).collect(Collectors.toList());
+
+        // WHEN
+        List<Long> scrolled = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<BookRespDTO> page = bookService.findAllByCursor(null, null, null, false, selection, sort,
+                    cursor, (short) 7);
+            page.getContent().forEach(book -> scrolled.add(book.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // THEN
+        assertEquals(expected, scrolled);
+    }
+
+    @Test
+    @DisplayName("should scroll without counting the books")
+    void shouldScrollWithoutCount() {
+        // GIVEN
+        String cursor = bookService.findAllByCursor(null, null, null, false, null, "asc", null, (short) 10)
+                .getNextCursor();
+        entityManager.clear();
+        statistics.clear();
+
+        // WHEN
+        CursorPageDTO<BookRespDTO> page = bookService.findAllByCursor(null, null, null, false, null, "asc",
+                cursor, (short) 10);
+
+        // THEN
+        assertEquals(10, page.getContent().size());
+        assertEquals("title 18", page.getContent().get(0).getTitle());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("should reject a cursor that was not issued by the listing")
+    void shouldRejectInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> bookService.findAllByCursor(null, null, null, false,
+                null, null, "not a cursor", (short) 10));
+    }
+
+    @Test
+    @DisplayName("should rank the best sellers by the units of paid invoices and load them in a single batch")
+    void shouldRankBestSellers() {
+        // GIVEN
+        List<Long> ids = bookRepository.findAll().stream().map(Book::getId).sorted().collect(Collectors.toList());
+        sell(true, ids.get(3), 1, ids.get(3), 1, ids.get(7), 1);
+        sell(true, ids.get(5), 4);
+        sell(false, ids.get(9), 10);
+        bookRepository.recountUnitsSold();
+        bookRepository.addUnitsSold(ids.get(7), 2);
+        entityManager.clear();
+        statistics.clear();
+
+        // WHEN
+        List<Long> bestSellerIds = bookRepository.findBestSellerIds(PageRequest.of(0, 10)).getContent();
+        List<BookRespDTO> bestSellers = bookService.findAllByIDs(bestSellerIds);
+
+        // THEN
+        assertEquals(List.of(ids.get(5), ids.get(7), ids.get(3)), bestSellerIds);
+        assertEquals(List.of("title 5", "title 7", "title 3"),
+                bestSellers.stream().map(BookRespDTO::getTitle).collect(Collectors.toList()));
+        bestSellers.forEach(book -> assertEquals(IMAGES_PER_BOOK, book.getImageLinks().size()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    /* Persists an invoice with an item per book and quantity pair */
+    private void sell(boolean paid, Object... bookQuantities) {
+        Invoice invoice = new Invoice();
+        invoice.setPaid(paid);
+        invoice = entityManager.persist(invoice);
+        for (int i = 0; i < bookQuantities.length; i += 2) {
+            InvoiceItem item = new InvoiceItem();
+            item.setInvoiceId(invoice.getId());
+            item.setBookId((Long) bookQuantities[i]);
+            item.setQuantity((Integer) bookQuantities[i + 1]);
+            entityManager.persist(item);
+        }
+        entityManager.flush();
+    }
+
+    private long countStatements(short size) {
+        entityManager.clear();
+        statistics.clear();
+        PageDTO<BookRespDTO> page = bookService.findAll(null, null, null, false, null, null, (short) 0, size);
+        assertEquals(size, page.getContent().size());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,148 @@
+package com.mercadolibro.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mercadolibro.dto.ExportFormat;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.repository.InvoiceRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class InvoiceExportServiceImplTest {
+    private static final int INVOICES = 1200;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    private ObjectMapper objectMapper;
+    private InvoiceExportServiceImpl exportService;
+    private Map<UUID, Integer> itemsPerInvoice;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new InvoiceExportServiceImpl(invoiceRepository, objectMapper, entityManager.getEntityManager());
+
+        // Invoices have zero, one or two items, and span several cursor fetches
+        itemsPerInvoice = new HashMap<>();
+        for (int i = 0; i < INVOICES; i++) {
+            Invoice invoice = new Invoice();
+            invoice.setDateCreated(LocalDate.of(2023, 1 + i % 12, 1));
+            invoice.setTotal(10.0 * (i % 3));
+            invoice = entityManager.persist(invoice);
+            itemsPerInvoice.put(invoice.getId(), i % 3);
+            for (int j = 0; j < i % 3; j++) {
+                InvoiceItem item = new InvoiceItem();
+                item.setBookId((long) j);
+                item.setQuantity(1);
+                item.setUnitPrice(10.0);
+                item.setTotal(10.0);
+                item.setInvoiceId(invoice.getId());
+                entityManager.persist(item);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("should write every invoice with its items as one JSON line, reading them with a single query")
+    void shouldExportNdjson() throws IOException {
+        // WHEN
+        StringWriter writer = new StringWriter();
+        exportService.export(ExportFormat.NDJSON, writer);
+
+        // THEN
+        String[] lines = writer.toString().split("\n");
+        assertEquals(INVOICES, lines.length);
+        Map<UUID, Integer> exported = new HashMap<>();
+        for (String line : lines) {
+            JsonNode invoice = objectMapper.readTree(line);
+            exported.put(UUID.fromString(invoice.get("id").asText()), invoice.get("invoice_item").size());
+        }
+        assertEquals(itemsPerInvoice, exported);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("should write every invoice with its items as a JSON array, reading them with a single query")
+    void shouldExportJson() throws IOException {
+        // WHEN
+        StringWriter writer = new StringWriter();
+        exportService.export(ExportFormat.JSON, writer);
+
+        // THEN
+        JsonNode invoices = objectMapper.readTree(writer.toString());
+        assertEquals(INVOICES, invoices.size());
+        Map<UUID, Integer> exported = new HashMap<>();
+        for (JsonNode invoice : invoices) {
+            exported.put(UUID.fromString(invoice.get("id").asText()), invoice.get("invoice_item").size());
+        }
+        assertEquals(itemsPerInvoice, exported);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("should write a CSV row per invoice item, and a row without item for invoices without items")
+    void shouldExportCsv() throws IOException {
+        // WHEN
+        StringWriter writer = new StringWriter();
+        exportService.export(ExportFormat.CSV, writer);
+
+        // THEN
+        String[] lines = writer.toString().split("\n");
+        assertEquals(InvoiceExportServiceImpl.CSV_HEADER, lines[0]);
+        Map<UUID, Integer> exported = new HashMap<>();
+        List<Integer> columnCounts = new ArrayList<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] columns = lines[i].split(",", -1);
+            columnCounts.add(columns.length);
+            exported.merge(UUID.fromString(columns[0]), columns[9].isEmpty() ? 0 : 1, Integer::sum);
+        }
+        assertEquals(itemsPerInvoice, exported);
+        assertTrue(columnCounts.stream().allMatch(count -> count == 14));
+    }
+
+    @Test
+    @DisplayName("should reject an unknown export format")
+    void shouldRejectUnknownFormat() {
+        assertEquals(ExportFormat.CSV, ExportFormat.of("CSV"));
+        assertThrows(IllegalArgumentException.class, () -> ExportFormat.of("xml"));
+    }
+}
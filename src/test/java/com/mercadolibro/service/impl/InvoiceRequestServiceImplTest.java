@@ -0,0 +1,390 @@
+package com.mercadolibro.service.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mercadolibro.dto.CategorySalesDTO;
+import com.mercadolibro.dto.ClientDTO;
+import com.mercadolibro.dto.InvoiceExpand;
+import com.mercadolibro.dto.InvoiceItemSearchDTO;
+import com.mercadolibro.dto.InvoiceSearchDTO;
+import com.mercadolibro.dto.PageDTO;
+import com.mercadolibro.dto.PaymentReqDTO;
+import com.mercadolibro.dto.PaymentRespDTO;
+import com.mercadolibro.dto.SalesDimension;
+import com.mercadolibro.dto.SalesSummaryDTO;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.entity.InvoiceRequest;
+import com.mercadolibro.entity.SalesRollup;
+import com.mercadolibro.events.InvoicePaid;
+import com.mercadolibro.exception.BookNotFoundException;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.repository.AppUserRepository;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.InvoiceItemRepository;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.repository.SalesRollupRepository;
+import com.mercadolibro.service.BookService;
+import com.mercadolibro.service.PreferenceService;
+import com.mercadolibro.service.mercadopago.PaymentGateway;
+import com.mercadolibro.service.StockService;
+import com.mercadolibro.service.UserService;
+import com.mercadolibro.service.analytics.SalesAnalyticsStore;
+import com.mercadolibro.service.analytics.SalesMetric;
+import com.mercadolibro.service.analytics.SalesSummary;
+import com.mercadolibro.service.analytics.SalesTotal;
+import com.mercadolibro.util.RetryPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import com.mercadopago.resources.payment.Payment;
+import com.mercadopago.serialization.Serializer;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InvoiceRequestServiceImplTest {
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    @Mock
+    private InvoiceItemRepository invoiceItemRepository;
+
+    @Mock
+    private SalesRollupRepository salesRollupRepository;
+
+    @Mock
+    private SalesAnalyticsStore salesAnalyticsStore;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private AppUserRepository appUserRepository;
+
+    @Mock
+    private BookService bookService;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private PreferenceService preferenceService;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    private InvoiceRequestServiceImpl invoiceService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        invoiceService = new InvoiceRequestServiceImpl(invoiceRepository, invoiceItemRepository, salesRollupRepository, salesAnalyticsStore, objectMapper,
+                paymentGateway, new TransactionTemplate(transactionManager), bookRepository, appUserRepository, bookService, stockService,
+                new RetryPolicy(1, Duration.ZERO, Duration.ZERO), preferenceService, userService, applicationContext);
+    }
+
+    @Test
+    @DisplayName("should load the items of every invoice of the page with a single query")
+    void shouldLoadPageItemsAtOnce() {
+        // GIVEN
+        Invoice first = invoice();
+        Invoice second = invoice();
+        Invoice withoutItems = invoice();
+        Page<Invoice> invoicePage = new PageImpl<>(List.of(first, second, withoutItems), PageRequest.of(0, 3), 3);
+        when(invoiceRepository.findByUserId(1L, PageRequest.of(0, 3))).thenReturn(invoicePage);
+        when(invoiceItemRepository.findByInvoiceIdIn(any())).thenReturn(List.of(
+                item(1L, first.getId()), item(2L, second.getId()), item(3L, first.getId())));
+
+        // WHEN
+        PageDTO<InvoiceSearchDTO> page = invoiceService.findByUserId(1L, 0, 3, Collections.emptySet());
+
+        // THEN
+        verify(invoiceItemRepository).findByInvoiceIdIn(
+                Set.of(first.getId(), second.getId(), withoutItems.getId()));
+        verify(invoiceItemRepository, never()).findByInvoiceId(any());
+        verifyNoInteractions(bookRepository, appUserRepository);
+        assertEquals(List.of(first.getId(), second.getId(), withoutItems.getId()),
+                page.getContent().stream().map(InvoiceSearchDTO::getId).collect(Collectors.toList()));
+        assertEquals(List.of(1L, 3L), itemIds(page.getContent().get(0)));
+        assertEquals(List.of(2L), itemIds(page.getContent().get(1)));
+        assertEquals(Collections.emptyList(), itemIds(page.getContent().get(2)));
+    }
+
+    @Test
+    @DisplayName("should not query the items of an empty page")
+    void shouldSkipItemsOfEmptyPage() {
+        // GIVEN
+        when(invoiceRepository.findAll(PageRequest.of(2, 10)))
+                .thenReturn(new PageImpl<>(Collections.emptyList(), PageRequest.of(2, 10), 5));
+
+        // WHEN
+        PageDTO<InvoiceSearchDTO> page = invoiceService.findAll(2, 10, Set.of(InvoiceExpand.BOOK, InvoiceExpand.USER));
+
+        // THEN
+        assertTrue(page.getContent().isEmpty());
+        verifyNoInteractions(invoiceItemRepository);
+    }
+
+    @Test
+    @DisplayName("should expand the books and users of a page with one query each")
+    void shouldExpandPageInBatches() {
+        // GIVEN
+        Invoice first = invoice(1L);
+        Invoice second = invoice(2L);
+        Invoice sameUser = invoice(1L);
+        when(invoiceRepository.findAll(PageRequest.of(0, 3)))
+                .thenReturn(new PageImpl<>(List.of(first, second, sameUser), PageRequest.of(0, 3), 3));
+        when(invoiceItemRepository.findByInvoiceIdIn(any())).thenReturn(List.of(
+                item(1L, first.getId()), item(2L, second.getId()), item(1L, sameUser.getId())));
+        when(bookRepository.findByIdIn(Set.of(1L, 2L))).thenReturn(List.of(book(1L), book(2L)));
+        when(appUserRepository.findClientsByIdIn(Set.of(1, 2))).thenReturn(List.of(
+                new ClientDTO(1, "Jorge", "Perez", "jorge@perez.com"),
+                new ClientDTO(2, "Ana", "Gomez", "ana@gomez.com")));
+
+        // WHEN
+        PageDTO<InvoiceSearchDTO> page = invoiceService.findAll(0, 3, InvoiceExpand.of(List.of("book", "user")));
+
+        // THEN
+        verify(bookRepository).findByIdIn(any());
+        verify(appUserRepository).findClientsByIdIn(any());
+        assertEquals(List.of("Jorge", "Ana", "Jorge"), page.getContent().stream()
+                .map(invoice -> invoice.getClientDTO().getName()).collect(Collectors.toList()));
+        assertEquals(List.of("title 1", "title 2", "title 1"), page.getContent().stream()
+                .map(invoice -> invoice.getListInvoiceItems().get(0).getBookDTO().getTitle())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("should reject an unknown expansion")
+    void shouldRejectUnknownExpand() {
+        assertThrows(IllegalArgumentException.class, () -> InvoiceExpand.of(List.of("book", "payment")));
+    }
+
+    @Test
+    @DisplayName("should check every book of a new invoice with a single query")
+    void shouldRejectMissingBookAtOnce() {
+        // GIVEN
+        InvoiceRequest invoiceRequest = new InvoiceRequest(invoice(1L),
+                List.of(item(1L, null), item(2L, null), item(1L, null)));
+        when(bookRepository.findExistingIds(Set.of(1L, 2L))).thenReturn(List.of(1L));
+
+        // WHEN
+        BookNotFoundException exception = assertThrows(BookNotFoundException.class,
+                () -> invoiceService.save(invoiceRequest));
+
+        // THEN
+        assertTrue(exception.getMessage().contains("2"));
+        verify(bookRepository, never()).existsById(any());
+        verifyNoInteractions(invoiceRepository, invoiceItemRepository, stockService);
+    }
+
+    @Test
+    @DisplayName("should not hold a transaction while MercadoPago charges the payment")
+    void shouldChargeOutsideTransaction() {
+        // GIVEN
+        Invoice invoice = invoice(1L);
+        invoice.setPaid(false);
+        when(invoiceRepository.findById(invoice.getId())).thenReturn(Optional.of(invoice));
+        when(invoiceItemRepository.findByInvoiceId(invoice.getId())).thenReturn(List.of(item(1L, invoice.getId())));
+        when(stockService.claim(invoice.getId())).thenReturn(true);
+        when(paymentGateway.create(any(), eq(invoice.getId().toString()))).thenAnswer(invocation -> {
+            verifyNoInteractions(transactionManager);
+            return Serializer.deserializeFromJson(Payment.class,
+                    "{\"id\": 1, \"status\": \"approved\", \"card\": {\"cardholder\": {\"name\": \"APRO\"}}}");
+        });
+        when(invoiceRepository.markAsPaid(invoice.getId())).thenReturn(1);
+        when(stockService.confirm(invoice.getId())).thenReturn(true);
+
+        // WHEN
+        PaymentRespDTO payment = invoiceService.processPayment(invoice.getId(), paymentRequest());
+
+        // THEN
+        assertEquals("approved", payment.getStatus());
+        InOrder inOrder = inOrder(paymentGateway, transactionManager, invoiceRepository);
+        inOrder.verify(paymentGateway).create(any(), any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(invoiceRepository).markAsPaid(invoice.getId());
+        inOrder.verify(transactionManager).commit(any());
+        verify(bookRepository).addUnitsSold(1L, 1L);
+        verify(applicationContext).publishEvent(any(InvoicePaid.class));
+    }
+
+    @Test
+    @DisplayName("should reserve the units again before charging when the reservation was released")
+    void shouldReserveReleasedUnitsBeforeCharging() {
+        // GIVEN
+        Invoice invoice = invoice(1L);
+        invoice.setPaid(false);
+        when(invoiceRepository.findById(invoice.getId())).thenReturn(Optional.of(invoice));
+        when(invoiceItemRepository.findByInvoiceId(invoice.getId())).thenReturn(List.of(item(1L, invoice.getId())));
+        when(stockService.claim(invoice.getId())).thenReturn(false);
+        doThrow(new InvoicePaymentException("Insufficient stock", HttpStatus.CONFLICT.value()))
+                .when(stockService).reserve(invoice.getId(), Map.of(1L, 1));
+
+        // WHEN
+        assertThrows(InvoicePaymentException.class,
+                () -> invoiceService.processPayment(invoice.getId(), paymentRequest()));
+
+        // THEN
+        verifyNoInteractions(paymentGateway, transactionManager);
+    }
+
+    @Test
+    @DisplayName("should roll back the paid flag with the stock when the expired units can not be taken again")
+    void shouldRollBackPaymentWithStock() {
+        // GIVEN
+        Invoice invoice = invoice(1L);
+        invoice.setPaid(false);
+        when(invoiceRepository.findById(invoice.getId())).thenReturn(Optional.of(invoice));
+        when(invoiceItemRepository.findByInvoiceId(invoice.getId())).thenReturn(List.of(item(1L, invoice.getId())));
+        when(stockService.claim(invoice.getId())).thenReturn(true);
+        when(paymentGateway.create(any(), eq(invoice.getId().toString()))).thenAnswer(invocation ->
+                Serializer.deserializeFromJson(Payment.class,
+                        "{\"id\": 1, \"status\": \"approved\", \"card\": {\"cardholder\": {\"name\": \"APRO\"}}}"));
+        when(invoiceRepository.markAsPaid(invoice.getId())).thenReturn(1);
+        doThrow(new OptimisticLockingFailureException("changed")).when(stockService).decrementStock(Map.of(1L, 1));
+
+        // WHEN
+        InvoicePaymentException exception = assertThrows(InvoicePaymentException.class,
+                () -> invoiceService.processPayment(invoice.getId(), paymentRequest()));
+
+        // THEN
+        assertEquals(HttpStatus.CONFLICT.value(), exception.getCode());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(bookRepository, never()).addUnitsSold(anyLong(), anyLong());
+        verify(applicationContext, never()).publishEvent(any(InvoicePaid.class));
+    }
+
+    @Test
+    @DisplayName("should page the sales by category from memory once the analytics are loaded")
+    void shouldPageSalesFromMemory() {
+        // GIVEN
+        when(salesAnalyticsStore.isLoaded()).thenReturn(true);
+        when(salesAnalyticsStore.rank(SalesRollup.Dimension.CATEGORY, SalesMetric.UNITS, null, null)).thenReturn(List.of(
+                new SalesTotal("Fantasy", 8), new SalesTotal("Horror", 5), new SalesTotal("Poetry", 1)));
+
+        // WHEN
+        PageDTO<CategorySalesDTO> page = invoiceService.getSalesByCategory(1, 2);
+
+        // THEN
+        verifyNoInteractions(salesRollupRepository);
+        assertEquals(3, page.getTotalElements());
+        assertEquals(2, page.getTotalPages());
+        assertEquals(List.of("Poetry"), page.getContent().stream()
+                .map(CategorySalesDTO::getCategory_name).collect(Collectors.toList()));
+        assertEquals(1L, page.getContent().get(0).getSales());
+    }
+
+    @Test
+    @DisplayName("should add up the sales of a range by book, naming the books of the page only")
+    void shouldSummarizeSalesByBook() {
+        // GIVEN
+        when(salesAnalyticsStore.isLoaded()).thenReturn(true);
+        when(salesAnalyticsStore.summarize(SalesRollup.Dimension.BOOK, SalesMetric.REVENUE,
+                LocalDate.of(2023, 1, 1), LocalDate.of(2023, 2, 1))).thenReturn(List.of(
+                new SalesSummary("2", 3, 6, 120), new SalesSummary("1", 1, 4, 40)));
+        when(bookRepository.findTitles(Set.of(2L))).thenReturn(List.<Object[]>of(new Object[]{2L, "Coraline"}));
+
+        // WHEN
+        PageDTO<SalesSummaryDTO> page = invoiceService.getSales(SalesDimension.BOOK, SalesMetric.REVENUE,
+                LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 31), 0, 1);
+
+        // THEN
+        verify(salesAnalyticsStore, never()).reload();
+        assertEquals(2, page.getTotalElements());
+        SalesSummaryDTO sale = page.getContent().get(0);
+        assertEquals("Coraline", sale.getName());
+        assertEquals(6, sale.getUnitsSold());
+        assertEquals(120.0, sale.getRevenue());
+    }
+
+    @Test
+    @DisplayName("should reject a date range that ends before it starts")
+    void shouldRejectInvertedRange() {
+        assertThrows(IllegalArgumentException.class, () -> invoiceService.getSales(SalesDimension.MONTH,
+                SalesMetric.REVENUE, LocalDate.of(2023, 2, 1), LocalDate.of(2023, 1, 1), 0, 10));
+        verifyNoInteractions(salesAnalyticsStore);
+    }
+
+    private static PaymentReqDTO paymentRequest() {
+        return PaymentReqDTO.builder()
+                .token("card-token")
+                .transactionAmount(BigDecimal.TEN)
+                .installments(1)
+                .payer(PaymentReqDTO.Payer.builder()
+                        .email("jorge@perez.com")
+                        .identification(PaymentReqDTO.Payer.Identification.builder().type("DNI").number("12345678").build())
+                        .build())
+                .build();
+    }
+
+    private static Invoice invoice() {
+        return invoice(null);
+    }
+
+    private static Invoice invoice(Long userId) {
+        Invoice invoice = new Invoice();
+        invoice.setId(UUID.randomUUID());
+        invoice.setUserId(userId);
+        return invoice;
+    }
+
+    private static Book book(Long id) {
+        return Book.builder().id(id).title("title " + id).build();
+    }
+
+    private static InvoiceItem item(Long id, UUID invoiceId) {
+        InvoiceItem item = new InvoiceItem();
+        item.setId(id);
+        item.setBookId(id);
+        item.setQuantity(1);
+        item.setInvoiceId(invoiceId);
+        return item;
+    }
+
+    private static List<Long> itemIds(InvoiceSearchDTO invoice) {
+        return invoice.getListInvoiceItems().stream().map(InvoiceItemSearchDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,257 @@
+package com.mercadolibro.service.impl;
+
+import com.mercadolibro.dto.BookPreferenceDTO;
+import com.mercadolibro.dto.PreferenceStatus;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.InvoiceItemRepository;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.service.mercadopago.StubPreferenceGateway;
+import com.mercadolibro.util.CircuitBreaker;
+import com.mercadopago.client.preference.PreferenceItemRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PreferenceServiceImplTest {
+    private static final long TIMEOUT_MS = 500;
+
+    @Mock
+    private InvoiceRepository invoiceRepository;
+
+    @Mock
+    private InvoiceItemRepository invoiceItemRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private final StubPreferenceGateway preferenceGateway = new StubPreferenceGateway();
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager("invoice", "invoices", "userInvoices");
+    private PreferenceServiceImpl preferenceService;
+
+    @BeforeEach
+    void setUp() {
+        // A single thread and no queue, so a hanging call leaves no room for another
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        preferenceService = new PreferenceServiceImpl(invoiceRepository, invoiceItemRepository, bookRepository,
+                preferenceGateway, executor, new CircuitBreaker("MercadoPago", 2, Duration.ofMinutes(1)),
+                cacheManager, "http://localhost", TIMEOUT_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("should create the preference in the background, reading its books with a single query")
+    void shouldCreatePreference() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        when(bookRepository.findPreferenceBooks(Set.of(1L, 2L))).thenReturn(List.of(book(1L), book(2L)));
+
+        // WHEN
+        preferenceService.requestPreference(invoiceId, List.of(item(1L), item(2L), item(1L)));
+
+        // THEN
+        verify(invoiceRepository, timeout(TIMEOUT_MS))
+                .updatePreference(invoiceId, PreferenceStatus.PENDING, PreferenceStatus.CREATED, "preference-1");
+        verify(bookRepository).findPreferenceBooks(any());
+        assertEquals(List.of("title 1", "title 2", "title 1"), preferenceGateway.getRequests().get(0).getItems()
+                .stream().map(PreferenceItemRequest::getTitle).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("should evict the cached invoice when its preference is requested again")
+    void shouldEvictCachedInvoiceOnRetry() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        Cache invoiceCache = cacheManager.getCache("invoice");
+        invoiceCache.put(invoiceId, "failed invoice");
+        when(invoiceRepository.findById(invoiceId)).thenReturn(Optional.of(new Invoice()));
+        when(invoiceRepository.updatePreference(invoiceId, PreferenceStatus.FAILED, PreferenceStatus.PENDING, null))
+                .thenReturn(1);
+        when(invoiceItemRepository.findByInvoiceId(invoiceId)).thenReturn(List.of(item(1L)));
+        when(bookRepository.findPreferenceBooks(any())).thenReturn(List.of(book(1L)));
+
+        // WHEN
+        preferenceService.retryPreference(invoiceId);
+
+        // THEN
+        assertNull(invoiceCache.get(invoiceId));
+        verify(invoiceRepository, timeout(TIMEOUT_MS))
+                .updatePreference(invoiceId, PreferenceStatus.PENDING, PreferenceStatus.CREATED, "preference-1");
+    }
+
+    @Test
+    @DisplayName("should stop calling MercadoPago while it keeps failing, and mark the preferences as failed")
+    void shouldOpenCircuitOnFailures() {
+        // GIVEN
+        preferenceGateway.failWith(HttpStatus.BAD_GATEWAY.value());
+        when(bookRepository.findPreferenceBooks(any())).thenReturn(List.of(book(1L)));
+
+        // WHEN
+        for (int i = 1; i <= 3; i++) {
+            preferenceService.requestPreference(UUID.randomUUID(), List.of(item(1L)));
+            verify(invoiceRepository, timeout(TIMEOUT_MS).times(i))
+                    .updatePreference(any(), eq(PreferenceStatus.PENDING), eq(PreferenceStatus.FAILED), isNull());
+        }
+
+        // THEN
+        assertEquals(2, preferenceGateway.getRequests().size());
+    }
+
+    @Test
+    @DisplayName("should mark the preference as failed when MercadoPago does not answer in time")
+    void shouldTimeOut() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        CountDownLatch hang = preferenceGateway.hang();
+        when(bookRepository.findPreferenceBooks(any())).thenReturn(List.of(book(1L)));
+
+        // WHEN
+        preferenceService.requestPreference(invoiceId, List.of(item(1L)));
+
+        // THEN
+        verify(invoiceRepository, timeout(TIMEOUT_MS * 4))
+                .updatePreference(invoiceId, PreferenceStatus.PENDING, PreferenceStatus.FAILED, null);
+        hang.countDown();
+    }
+
+    @Test
+    @DisplayName("should keep a preference MercadoPago creates after the invoice was marked as failed")
+    void shouldRecordLateCreation() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        CountDownLatch hang = preferenceGateway.hang();
+        when(bookRepository.findPreferenceBooks(any())).thenReturn(List.of(book(1L)));
+        preferenceService.requestPreference(invoiceId, List.of(item(1L)));
+        verify(invoiceRepository, timeout(TIMEOUT_MS * 4))
+                .updatePreference(invoiceId, PreferenceStatus.PENDING, PreferenceStatus.FAILED, null);
+
+        // WHEN
+        hang.countDown();
+
+        // THEN
+        verify(invoiceRepository, timeout(TIMEOUT_MS))
+                .updatePreference(invoiceId, PreferenceStatus.FAILED, PreferenceStatus.CREATED, "preference-1");
+    }
+
+    @Test
+    @DisplayName("should not call MercadoPago for a request that waited past its timeout")
+    void shouldSkipExpiredRequest() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        PreferenceServiceImpl expiredService = new PreferenceServiceImpl(invoiceRepository, invoiceItemRepository,
+                bookRepository, preferenceGateway, executor, new CircuitBreaker("MercadoPago", 2, Duration.ofMinutes(1)),
+                cacheManager, "http://localhost", -1);
+        when(bookRepository.findPreferenceBooks(any())).thenReturn(List.of(book(1L)));
+
+        // WHEN
+        expiredService.requestPreference(invoiceId, List.of(item(1L)));
+
+        // THEN
+        verify(invoiceRepository, timeout(TIMEOUT_MS).atLeastOnce())
+                .updatePreference(invoiceId, PreferenceStatus.PENDING, PreferenceStatus.FAILED, null);
+        verify(bookRepository, timeout(TIMEOUT_MS)).findPreferenceBooks(any());
+        assertTrue(preferenceGateway.getRequests().isEmpty());
+    }
+
+    @Test
+    @DisplayName("should mark the preference as failed at once when every preference thread is busy")
+    void shouldRejectWhenSaturated() {
+        // GIVEN
+        CountDownLatch hang = preferenceGateway.hang();
+        when(bookRepository.findPreferenceBooks(any())).thenReturn(List.of(book(1L)));
+        preferenceService.requestPreference(UUID.randomUUID(), List.of(item(1L)));
+        verify(bookRepository, timeout(TIMEOUT_MS)).findPreferenceBooks(any());
+        UUID rejectedId = UUID.randomUUID();
+
+        // WHEN
+        preferenceService.requestPreference(rejectedId, List.of(item(1L)));
+
+        // THEN
+        verify(invoiceRepository).updatePreference(rejectedId, PreferenceStatus.PENDING, PreferenceStatus.FAILED, null);
+        hang.countDown();
+    }
+
+    @Test
+    @DisplayName("should only request again the preferences that failed")
+    void shouldRetryOnlyFailed() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        when(invoiceRepository.findById(invoiceId)).thenReturn(Optional.of(new Invoice()));
+        when(invoiceRepository.updatePreference(invoiceId, PreferenceStatus.FAILED, PreferenceStatus.PENDING, null))
+                .thenReturn(0);
+
+        // WHEN
+        InvoicePaymentException exception = assertThrows(InvoicePaymentException.class,
+                () -> preferenceService.retryPreference(invoiceId));
+
+        // THEN
+        assertEquals(HttpStatus.CONFLICT.value(), exception.getCode());
+        verifyNoInteractions(invoiceItemRepository, bookRepository);
+    }
+
+    private static InvoiceItem item(Long bookId) {
+        InvoiceItem item = new InvoiceItem();
+        item.setBookId(bookId);
+        item.setQuantity(1);
+        item.setUnitPrice(10.0);
+        return item;
+    }
+
+    private static BookPreferenceDTO book(Long id) {
+        return new BookPreferenceDTO() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getTitle() {
+                return "title " + id;
+            }
+
+            @Override
+            public String getDescription() {
+                return null;
+            }
+
+            @Override
+            public String getImageUrl() {
+                return null;
+            }
+        };
+    }
+}
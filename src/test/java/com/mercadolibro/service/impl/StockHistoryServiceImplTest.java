@@ -0,0 +1,82 @@
+package com.mercadolibro.service.impl;
+
+import com.mercadolibro.dto.MonthlyStockDTO;
+import com.mercadolibro.dto.PageDTO;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.StockSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The snapshots are upserted with MySQL syntax, so H2 runs in its MySQL mode.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:stock-history;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+class StockHistoryServiceImplTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private StockSnapshotRepository stockSnapshotRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private StockHistoryServiceImpl stockHistoryService;
+
+    @BeforeEach
+    void setUp() {
+        stockHistoryService = new StockHistoryServiceImpl(stockSnapshotRepository);
+    }
+
+    @Test
+    @DisplayName("should keep the last stock recorded in each month, latest month first")
+    void shouldListMonthlyStock() {
+        // GIVEN
+        Book first = entityManager.persist(book("isbn-1", 10));
+        entityManager.persist(book("isbn-2", 5));
+        entityManager.flush();
+        stockHistoryService.snapshot(YearMonth.of(2023, 1));
+        bookRepository.setStock(first.getId(), 4);
+        stockHistoryService.snapshot(YearMonth.of(2023, 1));
+        bookRepository.setStock(first.getId(), 20);
+        stockHistoryService.snapshot(YearMonth.of(2023, 2));
+
+        // WHEN
+        PageDTO<MonthlyStockDTO> page = stockHistoryService.getMonthlyStock(0, 1);
+        PageDTO<MonthlyStockDTO> all = stockHistoryService.getMonthlyStock(0, 10);
+
+        // THEN
+        assertEquals(2, page.getTotalElements());
+        assertEquals(2, page.getTotalPages());
+        assertEquals(List.of("2023 Febrero 25", "2023 Enero 9"), all.getContent().stream()
+                .map(stock -> stock.getYear() + " " + stock.getMonth() + " " + stock.getStock())
+                .collect(Collectors.toList()));
+        assertEquals(4, stockSnapshotRepository.count());
+    }
+
+    private static Book book(String isbn, int stock) {
+        return Book.builder()
+                .title("title " + isbn)
+                .isbn(isbn)
+                .price(BigDecimal.TEN)
+                .stock(stock)
+                .build();
+    }
+}
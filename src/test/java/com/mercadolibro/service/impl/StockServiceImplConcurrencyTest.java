@@ -0,0 +1,100 @@
+package com.mercadolibro.service.impl;
+
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.service.StockService;
+import com.mercadolibro.util.RetryPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs concurrent checkouts against committed data, each decrement in its own transaction as in a payment.
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import(StockServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockServiceImplConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int CHECKOUTS = 60;
+    private static final int HOT_STOCK = 25;
+    private static final int OTHER_STOCK = 40;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(100, Duration.ofMillis(1), Duration.ofMillis(20));
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("should never sell more units than in stock under concurrent checkouts")
+    void shouldNotOversell() throws Exception {
+        // GIVEN
+        Book hot = bookRepository.save(book("Hot launch", "isbn-hot", HOT_STOCK));
+        Book other = bookRepository.save(book("Backlist", "isbn-other", OTHER_STOCK));
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        // WHEN
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> checkouts = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            checkouts.add(executor.submit(() -> {
+                start.await();
+                try {
+                    retryPolicy.execute(() -> stockService.decrementStock(Map.of(hot.getId(), 1, other.getId(), 1)),
+                            ConcurrencyFailureException.class);
+                    sold.incrementAndGet();
+                } catch (InvoicePaymentException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> checkout : checkouts) {
+            checkout.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // THEN
+        assertEquals(HOT_STOCK, sold.get());
+        assertEquals(CHECKOUTS - HOT_STOCK, rejected.get());
+        assertEquals(0, bookRepository.findById(hot.getId()).orElseThrow().getStock());
+        assertEquals(OTHER_STOCK - HOT_STOCK, bookRepository.findById(other.getId()).orElseThrow().getStock());
+    }
+
+    private static Book book(String title, String isbn, int stock) {
+        return Book.builder()
+                .title(title)
+                .isbn(isbn)
+                .price(BigDecimal.TEN)
+                .stock(stock)
+                .build();
+    }
+}
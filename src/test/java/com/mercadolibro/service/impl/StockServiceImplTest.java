@@ -0,0 +1,181 @@
+package com.mercadolibro.service.impl;
+
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.events.BookContentChanged;
+import com.mercadolibro.exception.BookNotFoundException;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.StockReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class StockServiceImplTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    private ApplicationEventPublisher eventPublisher;
+    private StockServiceImpl stockService;
+    private Book dune;
+    private Book emma;
+
+    @BeforeEach
+    void setUp() {
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        stockService = new StockServiceImpl(bookRepository, reservationRepository, eventPublisher, 15);
+        dune = persist("Dune", "isbn-1", 5);
+        emma = persist("Emma", "isbn-2", 1);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("should decrement the stock of every book")
+    void shouldDecrementStock() {
+        // WHEN
+        stockService.decrementStock(Map.of(dune.getId(), 3, emma.getId(), 1));
+        entityManager.clear();
+
+        // THEN
+        assertEquals(2, entityManager.find(Book.class, dune.getId()).getStock());
+        assertEquals(0, entityManager.find(Book.class, emma.getId()).getStock());
+        verify(eventPublisher).publishEvent(any(BookContentChanged.class));
+    }
+
+    @Test
+    @DisplayName("should report every book without stock and decrement none")
+    void shouldRejectInsufficientStock() {
+        // WHEN
+        InvoicePaymentException exception = assertThrows(InvoicePaymentException.class,
+                () -> stockService.decrementStock(Map.of(dune.getId(), 6, emma.getId(), 2)));
+        entityManager.clear();
+
+        // THEN
+        assertEquals(HttpStatus.CONFLICT.value(), exception.getCode());
+        assertTrue(exception.getMessage().contains("Dune"));
+        assertTrue(exception.getMessage().contains("Emma"));
+        assertEquals(5, entityManager.find(Book.class, dune.getId()).getStock());
+        assertEquals(1, entityManager.find(Book.class, emma.getId()).getStock());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("should reject books that do not exist")
+    void shouldRejectMissingBook() {
+        assertThrows(BookNotFoundException.class, () -> stockService.checkStock(Map.of(dune.getId(), 1, -1L, 1)));
+    }
+
+    @Test
+    @DisplayName("should hold the units of an invoice until it is paid")
+    void shouldConfirmReservation() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        stockService.reserve(invoiceId, Map.of(dune.getId(), 2));
+        entityManager.clear();
+
+        // WHEN
+        boolean reserved = stockService.isReserved(invoiceId);
+        boolean confirmed = stockService.confirm(invoiceId);
+
+        // THEN
+        assertTrue(reserved);
+        assertTrue(confirmed);
+        assertFalse(stockService.isReserved(invoiceId));
+        assertEquals(0, stockService.release(invoiceId));
+        assertEquals(3, entityManager.find(Book.class, dune.getId()).getStock());
+    }
+
+    @Test
+    @DisplayName("should give back the units of the expired reservations only")
+    void shouldReleaseExpiredReservations() {
+        // GIVEN
+        UUID expired = UUID.randomUUID();
+        UUID active = UUID.randomUUID();
+        stockService.reserve(expired, Map.of(dune.getId(), 2, emma.getId(), 1));
+        stockService.reserve(active, Map.of(dune.getId(), 1));
+        reservationRepository.findByInvoiceId(expired)
+                .forEach(reservation -> reservation.setExpiresAt(LocalDateTime.now().minusMinutes(1)));
+        entityManager.flush();
+        entityManager.clear();
+
+        // WHEN
+        int released = stockService.releaseExpired(LocalDateTime.now(), 10);
+        entityManager.clear();
+
+        // THEN
+        assertEquals(1, released);
+        assertFalse(stockService.isReserved(expired));
+        assertTrue(stockService.isReserved(active));
+        assertFalse(stockService.confirm(expired));
+        assertEquals(4, entityManager.find(Book.class, dune.getId()).getStock());
+        assertEquals(1, entityManager.find(Book.class, emma.getId()).getStock());
+    }
+
+    @Test
+    @DisplayName("should keep an expired reservation claimed for payment out of the release of the expired ones")
+    void shouldNotReleaseClaimedReservation() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+        stockService.reserve(invoiceId, Map.of(dune.getId(), 2));
+        reservationRepository.findByInvoiceId(invoiceId)
+                .forEach(reservation -> reservation.setExpiresAt(LocalDateTime.now().minusMinutes(1)));
+        entityManager.flush();
+        entityManager.clear();
+
+        // WHEN
+        boolean claimed = stockService.claim(invoiceId);
+        entityManager.clear();
+        int released = stockService.releaseExpired(LocalDateTime.now(), 10);
+
+        // THEN
+        assertTrue(claimed);
+        assertEquals(0, released);
+        assertTrue(stockService.confirm(invoiceId));
+        assertFalse(stockService.claim(invoiceId));
+        assertEquals(3, entityManager.find(Book.class, dune.getId()).getStock());
+    }
+
+    @Test
+    @DisplayName("should not hold anything when a book has insufficient stock")
+    void shouldNotReserveInsufficientStock() {
+        // GIVEN
+        UUID invoiceId = UUID.randomUUID();
+
+        // WHEN
+        assertThrows(InvoicePaymentException.class,
+                () -> stockService.reserve(invoiceId, Map.of(dune.getId(), 1, emma.getId(), 2)));
+
+        // THEN
+        assertFalse(stockService.isReserved(invoiceId));
+    }
+
+    private Book persist(String title, String isbn, int stock) {
+        return entityManager.persist(Book.builder()
+                .title(title)
+                .isbn(isbn)
+                .price(BigDecimal.TEN)
+                .stock(stock)
+                .build());
+    }
+}
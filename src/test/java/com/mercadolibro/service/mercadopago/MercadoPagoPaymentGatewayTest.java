@@ -0,0 +1,113 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadolibro.util.Bulkhead;
+import com.mercadolibro.util.RetryPolicy;
+import com.mercadopago.client.payment.PaymentCreateRequest;
+import com.mercadopago.exceptions.MPApiException;
+import com.mercadopago.net.MPHttpClient;
+import com.mercadopago.net.MPRequest;
+import com.mercadopago.net.MPResponse;
+import com.mercadopago.resources.payment.Payment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MercadoPagoPaymentGatewayTest {
+    private static final String IDEMPOTENCY_KEY = "7f0c6b5e-4a4f-4a52-9a84-4f3c1c2b8e10";
+
+    @Mock
+    private MPHttpClient httpClient;
+
+    private MercadoPagoPaymentGateway paymentGateway;
+
+    @BeforeEach
+    void setUp() {
+        paymentGateway = new MercadoPagoPaymentGateway(httpClient,
+                new MercadoPagoRequestOptions("token", 1000, 3000),
+                new Bulkhead("MercadoPago", 2, Duration.ofMillis(100)),
+                new RetryPolicy(3, Duration.ZERO, Duration.ZERO),
+                new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("should repeat a payment that failed on MercadoPago's side with the same idempotency key")
+    void shouldRetryTransientFailures() throws Exception {
+        // GIVEN
+        when(httpClient.send(any()))
+                .thenThrow(error(502))
+                .thenReturn(new MPResponse(201, Collections.emptyMap(), "{\"id\": 1, \"status\": \"approved\"}"));
+
+        // WHEN
+        Payment payment = paymentGateway.create(request(), IDEMPOTENCY_KEY);
+
+        // THEN
+        assertEquals("approved", payment.getStatus());
+        ArgumentCaptor<MPRequest> requests = ArgumentCaptor.forClass(MPRequest.class);
+        verify(httpClient, times(2)).send(requests.capture());
+        for (MPRequest request : requests.getAllValues()) {
+            assertEquals(IDEMPOTENCY_KEY, request.getHeaders().get("x-idempotency-key"));
+            assertEquals(1000, request.getConnectionTimeout());
+            assertEquals(3000, request.getSocketTimeout());
+        }
+    }
+
+    @Test
+    @DisplayName("should not repeat a payment that MercadoPago rejected")
+    void shouldNotRetryRejections() throws Exception {
+        // GIVEN
+        when(httpClient.send(any())).thenThrow(error(400));
+
+        // WHEN
+        InvoicePaymentException exception = assertThrows(InvoicePaymentException.class,
+                () -> paymentGateway.create(request(), IDEMPOTENCY_KEY));
+
+        // THEN
+        assertEquals(400, exception.getCode());
+        verify(httpClient, times(1)).send(any());
+    }
+
+    @Test
+    @DisplayName("should keep the HTTP status of an error whose body is not MercadoPago's")
+    void shouldKeepStatusOfUnparsableErrors() throws Exception {
+        // GIVEN
+        when(httpClient.send(any())).thenThrow(new MPApiException("Bad Gateway",
+                new MPResponse(502, Collections.emptyMap(), "<html><body>502 Bad Gateway</body></html>")));
+
+        // WHEN
+        InvoicePaymentException exception = assertThrows(InvoicePaymentException.class,
+                () -> paymentGateway.create(request(), IDEMPOTENCY_KEY));
+
+        // THEN
+        assertEquals(502, exception.getCode());
+        assertEquals("Bad Gateway", exception.getMessage());
+        verify(httpClient, times(3)).send(any());
+    }
+
+    private static MPApiException error(int status) {
+        return new MPApiException("error", new MPResponse(status, Collections.emptyMap(),
+                "{\"message\": \"error\", \"status\": " + status + "}"));
+    }
+
+    private static PaymentCreateRequest request() {
+        return PaymentCreateRequest.builder()
+                .transactionAmount(BigDecimal.TEN)
+                .token("card-token")
+                .installments(1)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.mercadolibro.service.mercadopago;
+
+import com.mercadolibro.exception.InvoicePaymentException;
+import com.mercadopago.client.preference.PreferenceRequest;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the MercadoPago preference API, which can answer, fail or hang on demand.
+ */
+public class StubPreferenceGateway implements PreferenceGateway {
+    private final List<PreferenceRequest> requests = new CopyOnWriteArrayList<>();
+    private volatile Integer failureStatus;
+    private volatile CountDownLatch hang;
+
+    @Override
+    public String create(PreferenceRequest request) {
+        requests.add(request);
+        CountDownLatch latch = hang;
+        if (latch != null) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failureStatus != null) {
+            throw new InvoicePaymentException("MercadoPago failed", failureStatus);
+        }
+        return "preference-" + requests.size();
+    }
+
+    public void failWith(int status) {
+        this.failureStatus = status;
+    }
+
+    /* Blocks every call until the returned latch is released */
+    public CountDownLatch hang() {
+        this.hang = new CountDownLatch(1);
+        return hang;
+    }
+
+    public List<PreferenceRequest> getRequests() {
+        return requests;
+    }
+}
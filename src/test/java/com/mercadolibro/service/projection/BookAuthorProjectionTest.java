@@ -0,0 +1,143 @@
+package com.mercadolibro.service.projection;
+
+import com.mercadolibro.dto.AuthorBookCountDTO;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.BookAuthor;
+import com.mercadolibro.events.BookChanged;
+import com.mercadolibro.repository.BookAuthorRepository;
+import com.mercadolibro.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.mercadolibro.service.projection.BookAuthorProjection.AUTHORS_CACHE;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class BookAuthorProjectionTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookAuthorRepository bookAuthorRepository;
+
+    private CacheManager cacheManager;
+    private BookAuthorProjection bookAuthorProjection;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(AUTHORS_CACHE);
+        bookAuthorProjection = new BookAuthorProjection(bookAuthorRepository, bookRepository, cacheManager);
+    }
+
+    @Test
+    @DisplayName("should count every co-author of a book")
+    void shouldCountCoAuthors() {
+        // GIVEN
+        bookAuthorProjection.handleBookChangedEvent(changed(persist("Good Omens", "Terry Pratchett", "Neil Gaiman")));
+        bookAuthorProjection.handleBookChangedEvent(changed(persist("Mort", "Terry Pratchett")));
+
+        // WHEN
+        Page<AuthorBookCountDTO> result = bookRepository.findAllAuthors(PageRequest.of(0, 10));
+
+        // THEN
+        assertEquals(2, result.getTotalElements());
+        assertEquals(Map.of("Neil Gaiman", 1L, "Terry Pratchett", 2L), counts(result));
+    }
+
+    @Test
+    @DisplayName("should follow the authors of an updated or deleted book")
+    void shouldFollowBookChanges() {
+        // GIVEN
+        Book book = persist("Good Omens", "Terry Pratchett", "Neil Gaiman");
+        bookAuthorProjection.handleBookChangedEvent(changed(book));
+        cacheManager.getCache(AUTHORS_CACHE).put("page", "stale");
+
+        // WHEN
+        book.setAuthors(List.of(new Book.Author("Neil Gaiman", null), new Book.Author("Terry Pratchett", null),
+                new Book.Author("Anonymous", null)));
+        bookAuthorProjection.handleBookChangedEvent(changed(book));
+        Object cachedBeforeCommit = cacheManager.getCache(AUTHORS_CACHE).get("page");
+        bookAuthorProjection.handleBookChangeCommittedEvent(changed(book));
+        Map<String, Long> afterUpdate = counts(bookRepository.findAllAuthors(PageRequest.of(0, 10)));
+        bookAuthorProjection.handleBookChangedEvent(new BookChanged(book.getId(), book, null));
+
+        // THEN
+        assertEquals(Map.of("Anonymous", 1L, "Neil Gaiman", 1L, "Terry Pratchett", 1L), afterUpdate);
+        assertTrue(bookAuthorRepository.findByBookId(book.getId()).isEmpty());
+        assertNotNull(cachedBeforeCommit);
+        assertNull(cacheManager.getCache(AUTHORS_CACHE).get("page"));
+    }
+
+    @Test
+    @DisplayName("should fill the projection from the existing books only once")
+    void shouldBackfillOnlyWhenEmpty() {
+        // GIVEN
+        persist("Good Omens", "Terry Pratchett", "Neil Gaiman");
+        persist("Coraline", "Neil Gaiman");
+
+        // WHEN
+        long firstRun = bookAuthorProjection.backfillIfEmpty();
+        long secondRun = bookAuthorProjection.backfillIfEmpty();
+
+        // THEN
+        assertEquals(2, firstRun);
+        assertEquals(0, secondRun);
+        assertEquals(Map.of("Neil Gaiman", 2L, "Terry Pratchett", 1L),
+                counts(bookRepository.findAllAuthors(PageRequest.of(0, 10))));
+    }
+
+    @Test
+    @DisplayName("should project the names differing only in case or accents once, and rename them in place")
+    void shouldDedupeNamesIgnoringCase() {
+        // GIVEN
+        Book book = persist("Good Omens", "Neil Gaiman", "neil gaiman", "Néil Gaiman");
+        bookAuthorProjection.handleBookChangedEvent(changed(book));
+        Long authorId = bookAuthorRepository.findByBookId(book.getId()).get(0).getId();
+
+        // WHEN
+        book.setAuthors(List.of(new Book.Author("NEIL GAIMAN", null)));
+        bookAuthorProjection.handleBookChangedEvent(changed(book));
+        entityManager.flush();
+
+        // THEN
+        List<BookAuthor> authors = bookAuthorRepository.findByBookId(book.getId());
+        assertEquals(1, authors.size());
+        assertEquals(authorId, authors.get(0).getId());
+        assertEquals("NEIL GAIMAN", authors.get(0).getName());
+    }
+
+    private Book persist(String title, String... authors) {
+        return entityManager.persistAndFlush(Book.builder()
+                .title(title)
+                .isbn(title)
+                .price(BigDecimal.TEN)
+                .authors(Arrays.stream(authors).map(name -> new Book.Author(name, null)).collect(Collectors.toList()))
+                .build());
+    }
+
+    private static BookChanged changed(Book book) {
+        return new BookChanged(book.getId(), null, book);
+    }
+
+    private static Map<String, Long> counts(Page<AuthorBookCountDTO> page) {
+        return page.getContent().stream()
+                .collect(Collectors.toMap(AuthorBookCountDTO::getAuthor, AuthorBookCountDTO::getTotal_books));
+    }
+}
@@ -0,0 +1,357 @@
+package com.mercadolibro.service.projection;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mercadolibro.dto.CategorySalesDTO;
+import com.mercadolibro.dto.InvoiceItemSearchDTO;
+import com.mercadolibro.dto.InvoiceSearchDTO;
+import com.mercadolibro.dto.MonthlySaleDTO;
+import com.mercadolibro.dto.PaymentMethod;
+import com.mercadolibro.dto.PaymentTypeSaleDTO;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.BookAuthor;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.entity.Invoice;
+import com.mercadolibro.entity.InvoiceItem;
+import com.mercadolibro.entity.SalesRollup;
+import com.mercadolibro.events.InvoicePaid;
+import com.mercadolibro.repository.BookAuthorRepository;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.InvoiceRepository;
+import com.mercadolibro.repository.SalesRollupRepository;
+import com.mercadolibro.repository.SalesRollupStateRepository;
+import com.mercadolibro.service.analytics.SalesAnalyticsStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The rollups are upserted with MySQL syntax, so H2 runs in its MySQL mode.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:rollups;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+class SalesRollupProjectionTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private SalesRollupRepository salesRollupRepository;
+
+    @Autowired
+    private SalesRollupStateRepository salesRollupStateRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookAuthorRepository bookAuthorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ObjectMapper objectMapper;
+    private SalesRollupProjection salesRollupProjection;
+    private Book fantasy;
+    private Book crossover;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.findAndRegisterModules();
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        salesRollupProjection = new SalesRollupProjection(salesRollupRepository, salesRollupStateRepository,
+                invoiceRepository, bookRepository, bookAuthorRepository, objectMapper, entityManager.getEntityManager(),
+                new SalesAnalyticsStore(salesRollupRepository, invoiceRepository), new TransactionTemplate(transactionManager));
+
+        Category fantasyCategory = entityManager.persist(Category.builder().name("Fantasy").build());
+        Category horrorCategory = entityManager.persist(Category.builder().name("Horror").build());
+        fantasy = entityManager.persist(book("Mort", "isbn-1", Set.of(fantasyCategory)));
+        crossover = entityManager.persist(book("Coraline", "isbn-2", Set.of(fantasyCategory, horrorCategory)));
+    }
+
+    @Test
+    @DisplayName("should add each paid invoice to the rollups of its day and month")
+    void shouldRollUpPaidInvoices() {
+        // GIVEN
+        pay(LocalDate.of(2023, 1, 10), PaymentMethod.MERCADO_PAGO, item(fantasy, 2, 10), item(crossover, 1, 20));
+        pay(LocalDate.of(2023, 1, 10), PaymentMethod.TRANSFER, item(crossover, 1, 20), item(crossover, 3, 20));
+        pay(LocalDate.of(2023, 2, 1), PaymentMethod.MERCADO_PAGO, item(fantasy, 1, 10));
+
+        // WHEN
+        List<String> monthly = monthlySales();
+        List<CategorySalesDTO> categories = salesRollupRepository.findSalesByCategory(PageRequest.of(0, 10)).getContent();
+        List<PaymentTypeSaleDTO> paymentTypes = salesRollupRepository.findSalesByPaymentType(PageRequest.of(0, 10)).getContent();
+
+        // THEN
+        assertEquals(List.of("2023-2:1", "2023-1:2"), monthly);
+        assertEquals(List.of("Fantasy:8", "Horror:5"), categories.stream()
+                .map(sale -> sale.getCategory_name() + ":" + sale.getSales())
+                .collect(Collectors.toList()));
+        assertEquals(List.of("MERCADO_PAGO:2", "TRANSFER:1"), paymentTypes.stream()
+                .map(sale -> sale.getPayment_type() + ":" + sale.getSales())
+                .collect(Collectors.toList()));
+
+        SalesRollup crossoverDay = rollup(SalesRollup.Granularity.DAY, LocalDate.of(2023, 1, 10),
+                SalesRollup.Dimension.BOOK, crossover.getId().toString());
+        assertEquals(2, crossoverDay.getInvoices());
+        assertEquals(5, crossoverDay.getUnits());
+        assertEquals(100.0, crossoverDay.getRevenue());
+    }
+
+    @Test
+    @DisplayName("should rebuild the same rollups from the paid invoices only")
+    void shouldRebuildFromPaidInvoices() {
+        // GIVEN
+        pay(LocalDate.of(2023, 1, 10), PaymentMethod.MERCADO_PAGO, item(fantasy, 2, 10), item(crossover, 1, 20));
+        pay(LocalDate.of(2023, 1, 31), PaymentMethod.TRANSFER, item(crossover, 1, 20), item(crossover, 3, 20));
+        pay(LocalDate.of(2023, 3, 5), PaymentMethod.MERCADO_PAGO, item(fantasy, 1, 10));
+        persistInvoice(LocalDate.of(2023, 3, 5), PaymentMethod.TRANSFER, false, item(fantasy, 7, 10));
+        Map<String, String> incremental = snapshot();
+
+        // WHEN
+        long rolledUp = salesRollupProjection.rebuild();
+
+        // THEN
+        assertEquals(3, rolledUp);
+        assertEquals(incremental, snapshot());
+    }
+
+    @Test
+    @DisplayName("should recompute a single month from its invoices, leaving the closed months as they are")
+    void shouldRebuildSingleMonth() {
+        // GIVEN
+        pay(LocalDate.of(2023, 1, 31), PaymentMethod.TRANSFER, item(fantasy, 1, 10));
+        pay(LocalDate.of(2023, 2, 1), PaymentMethod.TRANSFER, item(fantasy, 2, 10));
+        persistInvoice(LocalDate.of(2023, 2, 28), PaymentMethod.MERCADO_PAGO, true, item(crossover, 1, 20));
+        persistInvoice(LocalDate.of(2023, 1, 15), PaymentMethod.MERCADO_PAGO, true, item(crossover, 1, 20));
+
+        // WHEN
+        long rolledUp = salesRollupProjection.rebuild(YearMonth.of(2023, 2));
+
+        // THEN
+        assertEquals(2, rolledUp);
+        assertEquals(List.of("2023-2:2", "2023-1:1"), monthlySales());
+        assertEquals(3, rollup(SalesRollup.Granularity.MONTH, LocalDate.of(2023, 2, 1),
+                SalesRollup.Dimension.TOTAL, "").getUnits());
+    }
+
+    @Test
+    @DisplayName("should take back the sales of the invoices no longer paid")
+    void shouldRebuildWithoutUnpaidInvoices() {
+        // GIVEN
+        pay(LocalDate.of(2023, 2, 1), PaymentMethod.TRANSFER, item(fantasy, 2, 10));
+        Invoice refunded = persistInvoice(LocalDate.of(2023, 2, 1), PaymentMethod.MERCADO_PAGO, true,
+                item(crossover, 1, 20));
+        salesRollupProjection.rebuild(YearMonth.of(2023, 2));
+        refunded.setPaid(false);
+        entityManager.merge(refunded);
+        entityManager.flush();
+
+        // WHEN
+        long rolledUp = salesRollupProjection.rebuild(YearMonth.of(2023, 2));
+
+        // THEN
+        assertEquals(1, rolledUp);
+        assertEquals(List.of("2023-2:1"), monthlySales());
+        assertEquals(2, rollup(SalesRollup.Granularity.MONTH, LocalDate.of(2023, 2, 1),
+                SalesRollup.Dimension.TOTAL, "").getUnits());
+        assertTrue(snapshot().keySet().stream().noneMatch(key -> key.contains(crossover.getId().toString())
+                || key.contains("MERCADO_PAGO")));
+    }
+
+    @Test
+    @DisplayName("should add up the revenue of every dimension from the item totals")
+    void shouldTakeRevenueFromItems() {
+        // GIVEN
+        Invoice invoice = persistInvoice(LocalDate.of(2023, 4, 2), PaymentMethod.TRANSFER, true,
+                item(fantasy, 2, 10), item(crossover, 1, 20));
+        invoice.setTotal(45.0);
+        entityManager.merge(invoice);
+        entityManager.flush();
+
+        // WHEN
+        salesRollupProjection.rebuild(YearMonth.of(2023, 4));
+
+        // THEN
+        LocalDate april = LocalDate.of(2023, 4, 1);
+        assertEquals(40.0, rollup(SalesRollup.Granularity.MONTH, april, SalesRollup.Dimension.TOTAL, "").getRevenue());
+        assertEquals(40.0, rollup(SalesRollup.Granularity.MONTH, april, SalesRollup.Dimension.PAYMENT_METHOD,
+                PaymentMethod.TRANSFER.name()).getRevenue());
+        assertEquals(40.0, rollup(SalesRollup.Granularity.MONTH, april, SalesRollup.Dimension.BOOK,
+                fantasy.getId().toString()).getRevenue() + rollup(SalesRollup.Granularity.MONTH, april,
+                SalesRollup.Dimension.BOOK, crossover.getId().toString()).getRevenue());
+    }
+
+    @Test
+    @DisplayName("should keep the same month of different years apart, counting each month once")
+    void shouldGroupByYearAndMonth() {
+        // GIVEN
+        pay(LocalDate.of(2022, 3, 1), PaymentMethod.TRANSFER, item(fantasy, 1, 10));
+        pay(LocalDate.of(2023, 3, 1), PaymentMethod.TRANSFER, item(fantasy, 1, 10));
+        pay(LocalDate.of(2023, 3, 31), PaymentMethod.TRANSFER, item(fantasy, 1, 10));
+
+        // WHEN
+        Page<MonthlySaleDTO> page = salesRollupRepository.findMonthlySales(PageRequest.of(0, 1));
+
+        // THEN
+        assertEquals(2, page.getTotalElements());
+        assertEquals(2, page.getTotalPages());
+        assertEquals(List.of("2023-3:2", "2022-3:1"), monthlySales());
+    }
+
+    @Test
+    @DisplayName("should backfill the rollups only once")
+    void shouldBackfillOnlyOnce() {
+        // GIVEN
+        persistInvoice(LocalDate.of(2023, 1, 10), PaymentMethod.TRANSFER, true, item(fantasy, 1, 10));
+
+        // WHEN
+        long first = salesRollupProjection.backfillIfNeeded();
+        long second = salesRollupProjection.backfillIfNeeded();
+
+        // THEN
+        assertEquals(1, first);
+        assertEquals(0, second);
+    }
+
+    @Test
+    @DisplayName("should add the quantity and total of each item to every author of its book")
+    void shouldRollUpByAuthor() {
+        // GIVEN
+        entityManager.persist(BookAuthor.builder().bookId(fantasy.getId()).name("Terry Pratchett").build());
+        entityManager.persist(BookAuthor.builder().bookId(crossover.getId()).name("Neil Gaiman").build());
+        entityManager.persist(BookAuthor.builder().bookId(crossover.getId()).name("Dave McKean").build());
+
+        // WHEN
+        pay(LocalDate.of(2023, 1, 10), PaymentMethod.TRANSFER, item(fantasy, 2, 10), item(crossover, 3, 20));
+
+        // THEN
+        SalesRollup pratchett = rollup(SalesRollup.Granularity.MONTH, LocalDate.of(2023, 1, 1),
+                SalesRollup.Dimension.AUTHOR, "Terry Pratchett");
+        SalesRollup gaiman = rollup(SalesRollup.Granularity.DAY, LocalDate.of(2023, 1, 10),
+                SalesRollup.Dimension.AUTHOR, "Neil Gaiman");
+        assertEquals(2, pratchett.getUnits());
+        assertEquals(20.0, pratchett.getRevenue());
+        assertEquals(3, gaiman.getUnits());
+        assertEquals(60.0, gaiman.getRevenue());
+        assertEquals(60.0, rollup(SalesRollup.Granularity.DAY, LocalDate.of(2023, 1, 10),
+                SalesRollup.Dimension.AUTHOR, "Dave McKean").getRevenue());
+    }
+
+    @Test
+    @DisplayName("should backfill the rollups filled before the sales were added up by author")
+    void shouldBackfillAuthors() {
+        // GIVEN
+        pay(LocalDate.of(2023, 1, 10), PaymentMethod.TRANSFER, item(fantasy, 1, 10));
+        pay(LocalDate.of(2023, 1, 11), PaymentMethod.TRANSFER, item(crossover, 1, 20));
+        entityManager.persist(BookAuthor.builder().bookId(fantasy.getId()).name("Terry Pratchett").build());
+
+        // WHEN
+        long rolledUp = salesRollupProjection.backfillIfNeeded();
+
+        // THEN
+        assertEquals(2, rolledUp);
+        assertEquals(1, rollup(SalesRollup.Granularity.MONTH, LocalDate.of(2023, 1, 1),
+                SalesRollup.Dimension.AUTHOR, "Terry Pratchett").getUnits());
+        assertEquals(0, salesRollupProjection.backfillIfNeeded());
+    }
+
+    private void pay(LocalDate date, PaymentMethod paymentMethod, InvoiceItem... items) {
+        Invoice invoice = persistInvoice(date, paymentMethod, true, items);
+        InvoiceSearchDTO invoiceDTO = objectMapper.convertValue(invoice, InvoiceSearchDTO.class);
+        List<InvoiceItemSearchDTO> itemDTOs = new ArrayList<>();
+        for (InvoiceItem item : items) {
+            itemDTOs.add(objectMapper.convertValue(item, InvoiceItemSearchDTO.class));
+        }
+        invoiceDTO.setListInvoiceItems(itemDTOs);
+        salesRollupProjection.handleInvoicePaidEvent(new InvoicePaid(invoiceDTO));
+    }
+
+    private Invoice persistInvoice(LocalDate date, PaymentMethod paymentMethod, boolean paid, InvoiceItem... items) {
+        Invoice invoice = new Invoice();
+        invoice.setDateCreated(date);
+        invoice.setPaymentMethod(paymentMethod);
+        invoice.setPaid(paid);
+        double total = 0;
+        for (InvoiceItem item : items) {
+            total += item.getTotal();
+        }
+        invoice.setTotal(total);
+        invoice = entityManager.persist(invoice);
+        for (InvoiceItem item : items) {
+            item.setInvoiceId(invoice.getId());
+            entityManager.persist(item);
+        }
+        entityManager.flush();
+        return invoice;
+    }
+
+    private List<String> monthlySales() {
+        return salesRollupRepository.findMonthlySales(PageRequest.of(0, 10)).getContent().stream()
+                .map(sale -> sale.getYear() + "-" + sale.getMonth() + ":" + sale.getSales())
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, String> snapshot() {
+        entityManager.clear();
+        return salesRollupRepository.findAll().stream().collect(Collectors.toMap(
+                rollup -> rollup.getGranularity() + " " + rollup.getPeriodStart() + " " + rollup.getDimension() + " "
+                        + rollup.getDimensionKey(),
+                rollup -> rollup.getInvoices() + " " + rollup.getUnits() + " " + rollup.getRevenue()));
+    }
+
+    private SalesRollup rollup(SalesRollup.Granularity granularity, LocalDate periodStart,
+                               SalesRollup.Dimension dimension, String dimensionKey) {
+        return salesRollupRepository.findAll().stream()
+                .filter(rollup -> rollup.getGranularity() == granularity && rollup.getPeriodStart().equals(periodStart)
+                        && rollup.getDimension() == dimension && rollup.getDimensionKey().equals(dimensionKey))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static InvoiceItem item(Book book, int quantity, double unitPrice) {
+        InvoiceItem item = new InvoiceItem();
+        item.setBookId(book.getId());
+        item.setQuantity(quantity);
+        item.setUnitPrice(unitPrice);
+        item.setTotal(quantity * unitPrice);
+        return item;
+    }
+
+    private static Book book(String title, String isbn, Set<Category> categories) {
+        return Book.builder()
+                .title(title)
+                .isbn(isbn)
+                .price(BigDecimal.TEN)
+                .stock(10)
+                .categories(categories)
+                .build();
+    }
+}
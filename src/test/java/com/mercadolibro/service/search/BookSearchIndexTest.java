@@ -0,0 +1,166 @@
+package com.mercadolibro.service.search;
+
+import com.mercadolibro.dto.BookCursor;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.events.BookChanged;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+    private BookSearchIndex bookSearchIndex;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        bookSearchIndex = new BookSearchIndex("");
+
+        bookSearchIndex.add(book(1L, "Cien años de soledad", "Gabriel García Márquez", "Sudamericana",
+                "La historia de los Buendía"));
+        bookSearchIndex.add(book(2L, "El amor en los tiempos del cólera", "Gabriel García Márquez", "Oveja Negra",
+                null));
+        bookSearchIndex.add(book(3L, "Rayuela", "Julio Cortázar", "Sudamericana", "Una novela sobre el amor"));
+        bookSearchIndex.commit();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        bookSearchIndex.close();
+    }
+
+    @Test
+    @DisplayName("should find books by every word, ignoring case and accents")
+    void shouldMatchEveryWordWithoutAccents() {
+        // WHEN
+        List<Long> result = search("MARQUEZ colera");
+
+        // THEN
+        assertEquals(List.of(2L), result);
+    }
+
+    @Test
+    @DisplayName("should match the last word as a prefix")
+    void shouldMatchLastWordAsPrefix() {
+        // WHEN
+        List<Long> result = search("sudamer");
+
+        // THEN
+        assertEquals(2, result.size());
+        assertTrue(result.containsAll(List.of(1L, 3L)));
+    }
+
+    @Test
+    @DisplayName("should page the matches in the index, counting all of them")
+    void shouldPageInIndex() throws IOException {
+        // GIVEN
+        BookSearchIndex index = new BookSearchIndex("");
+        for (long id = 1; id <= 5; id++) {
+            index.add(book(id, "Rayuela " + id, "Julio Cortázar", "Sudamericana", null));
+        }
+        index.commit();
+
+        // WHEN
+        Page<Long> result = index.search("cortazar", null, null, false,
+                PageRequest.of(1, 2, Sort.by(Sort.Order.desc("title"))));
+        index.close();
+
+        // THEN
+        assertEquals(List.of(3L, 2L), result.getContent());
+        assertEquals(5, result.getTotalElements());
+        assertEquals(3, result.getTotalPages());
+    }
+
+    @Test
+    @DisplayName("should filter the matches by category, publisher and creation date")
+    void shouldFilterInIndex() {
+        // GIVEN
+        Book novel = book(4L, "Ficciones", "Jorge Luis Borges", "Emecé", null);
+        novel.setCategories(Set.of(Category.builder().id(7L).build()));
+        novel.setCreatedAt(LocalDateTime.now());
+        bookSearchIndex.index(novel);
+        Book old = book(5L, "El Aleph", "Jorge Luis Borges", "Emecé", null);
+        old.setCreatedAt(LocalDateTime.now().minusYears(1));
+        bookSearchIndex.index(old);
+
+        // WHEN
+        Page<Long> byCategory = bookSearchIndex.search("borges", List.of(7L, 8L), null, false, PageRequest.of(0, 10));
+        Page<Long> byMissingCategory = bookSearchIndex.search("borges", List.of(), null, false, PageRequest.of(0, 10));
+        Page<Long> byPublisher = bookSearchIndex.search("borges", null, "EMECE", false, PageRequest.of(0, 10));
+        Page<Long> releases = bookSearchIndex.search("borges", null, null, true, PageRequest.of(0, 10));
+
+        // THEN
+        assertEquals(List.of(4L), byCategory.getContent());
+        assertTrue(byMissingCategory.isEmpty());
+        assertEquals(2, byPublisher.getTotalElements());
+        assertEquals(List.of(4L), releases.getContent());
+    }
+
+    @Test
+    @DisplayName("should continue a sorted listing after its cursor")
+    void shouldSearchAfterCursor() {
+        // GIVEN
+        Sort sort = Sort.by(Sort.Order.asc("title"));
+
+        // WHEN
+        Slice<Long> first = bookSearchIndex.searchAfter("gabriel", null, null, false, sort, null, 1);
+        Slice<Long> second = bookSearchIndex.searchAfter("gabriel", null, null, false, sort,
+                new BookCursor("Cien años de soledad", null, 1L), 1);
+
+        // THEN
+        assertEquals(List.of(1L), first.getContent());
+        assertTrue(first.hasNext());
+        assertEquals(List.of(2L), second.getContent());
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    @DisplayName("should rank title matches above description matches")
+    void shouldRankTitleAboveDescription() {
+        // WHEN
+        List<Long> result = search("amor");
+
+        // THEN
+        assertEquals(List.of(2L, 3L), result);
+    }
+
+    @Test
+    @DisplayName("should follow the book changes")
+    void shouldIndexBookChanges() {
+        // WHEN
+        bookSearchIndex.handleBookChangedEvent(new BookChanged(3L, null,
+                book(3L, "Rayuela", "Julio Cortázar", "Alfaguara", null)));
+        bookSearchIndex.handleBookChangedEvent(new BookChanged(4L, null,
+                book(4L, "Ficciones", "Jorge Luis Borges", "Sudamericana", null)));
+        bookSearchIndex.handleBookChangedEvent(new BookChanged(1L, null, null));
+
+        // THEN
+        assertEquals(List.of(4L), search("sudamericana"));
+        assertEquals(List.of(3L), search("alfaguara"));
+    }
+
+    private List<Long> search(String keyword) {
+        return bookSearchIndex.search(keyword, null, null, false, PageRequest.of(0, 10)).getContent();
+    }
+
+    private static Book book(Long id, String title, String author, String publisher, String description) {
+        return Book.builder()
+                .id(id)
+                .title(title)
+                .authors(List.of(new Book.Author(author, null)))
+                .publisher(publisher)
+                .description(description)
+                .build();
+    }
+}
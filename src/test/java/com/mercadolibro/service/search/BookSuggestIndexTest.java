@@ -0,0 +1,127 @@
+package com.mercadolibro.service.search;
+
+import com.mercadolibro.dto.SuggestionDTO;
+import com.mercadolibro.dto.SuggestionType;
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.events.BookChanged;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSuggestIndexTest {
+    private BookSuggestIndex bookSuggestIndex;
+
+    @BeforeEach
+    void setUp() {
+        bookSuggestIndex = new BookSuggestIndex();
+        bookSuggestIndex.add(book(1L, "Harry Potter y la piedra filosofal", "J. K. Rowling", "Salamandra"));
+        bookSuggestIndex.add(book(2L, "Harry Potter y la cámara secreta", "J. K. Rowling", "Salamandra"));
+        bookSuggestIndex.add(book(3L, "Cien años de soledad", "Gabriel García Márquez", "Sudamericana"));
+        bookSuggestIndex.commit();
+    }
+
+    @Test
+    @DisplayName("should suggest texts having a word that starts with the prefix, ignoring case and accents")
+    void shouldSuggestByWordPrefix() {
+        // WHEN
+        List<SuggestionDTO> potter = bookSuggestIndex.suggest("POTT", 10);
+        List<SuggestionDTO> marquez = bookSuggestIndex.suggest("marq", 10);
+        List<SuggestionDTO> camara = bookSuggestIndex.suggest("harry potter y la cama", 10);
+
+        // THEN
+        assertEquals(List.of("Harry Potter y la cámara secreta", "Harry Potter y la piedra filosofal"), texts(potter));
+        assertEquals(List.of(new SuggestionDTO("Gabriel García Márquez", SuggestionType.AUTHOR)), marquez);
+        assertEquals(List.of("Harry Potter y la cámara secreta"), texts(camara));
+    }
+
+    @Test
+    @DisplayName("should suggest a text shared by several books only once")
+    void shouldSuggestSharedTextOnce() {
+        // WHEN
+        List<SuggestionDTO> result = bookSuggestIndex.suggest("sala", 10);
+
+        // THEN
+        assertEquals(List.of(new SuggestionDTO("Salamandra", SuggestionType.PUBLISHER)), result);
+    }
+
+    @Test
+    @DisplayName("should return at most the requested number of suggestions")
+    void shouldLimitSuggestions() {
+        // WHEN
+        List<SuggestionDTO> result = bookSuggestIndex.suggest("harry", 1);
+
+        // THEN
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    @DisplayName("should suggest the texts ending closer to the prefix first, whatever letters follow it")
+    void shouldSuggestShortestCompletionsFirst() {
+        // GIVEN
+        BookSuggestIndex index = new BookSuggestIndex();
+        index.add(book(1L, "Abracadabra", "Ana", "Zeta"));
+
+        // WHEN
+        List<SuggestionDTO> result = index.suggest("a", 1);
+
+        // THEN
+        assertEquals(List.of("Ana"), texts(result));
+    }
+
+    @Test
+    @DisplayName("should drop a shared text only when its last book is removed or changed")
+    void shouldFollowBookChanges() {
+        // WHEN
+        bookSuggestIndex.handleBookChangedEvent(new BookChanged(1L, null, null));
+        List<SuggestionDTO> afterFirstRemoval = bookSuggestIndex.suggest("sala", 10);
+        bookSuggestIndex.handleBookChangedEvent(new BookChanged(2L, null,
+                book(2L, "Harry Potter y la cámara secreta", "J. K. Rowling", "Emecé")));
+
+        // THEN
+        assertEquals(1, afterFirstRemoval.size());
+        assertTrue(bookSuggestIndex.suggest("sala", 10).isEmpty());
+        assertTrue(bookSuggestIndex.suggest("piedra", 10).isEmpty());
+        assertEquals(List.of(new SuggestionDTO("Emecé", SuggestionType.PUBLISHER)),
+                bookSuggestIndex.suggest("emece", 10));
+    }
+
+    @Test
+    @DisplayName("should keep suggesting the texts sharing a prefix as others are added and removed")
+    void shouldSplitAndMergeSharedPrefixes() {
+        // GIVEN
+        BookSuggestIndex index = new BookSuggestIndex();
+        index.add(book(1L, "Rayuela", "Julio Cortázar", "Alfaguara"));
+        index.add(book(2L, "Rayo", "Julio Cortázar", "Alfaguara"));
+        index.add(book(3L, "Ray Bradbury", "Ray Bradbury", "Minotauro"));
+
+        // WHEN
+        List<SuggestionDTO> all = index.suggest("ray", 10);
+        index.remove(2L);
+        List<SuggestionDTO> afterRemoval = index.suggest("rayu", 10);
+        index.remove(3L);
+
+        // THEN
+        assertEquals(List.of("Rayo", "Rayuela", "Ray Bradbury"), texts(all).subList(0, 3));
+        assertEquals(List.of("Rayuela"), texts(afterRemoval));
+        assertEquals(List.of("Rayuela"), texts(index.suggest("ra", 10)));
+        assertTrue(index.suggest("rayo", 10).isEmpty());
+    }
+
+    private static List<String> texts(List<SuggestionDTO> suggestions) {
+        return suggestions.stream().map(SuggestionDTO::getText).collect(Collectors.toList());
+    }
+
+    private static Book book(Long id, String title, String author, String publisher) {
+        return Book.builder()
+                .id(id)
+                .title(title)
+                .authors(List.of(new Book.Author(author, null)))
+                .publisher(publisher)
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.mercadolibro.service.specification;
+
+import com.mercadolibro.entity.Book;
+import com.mercadolibro.entity.Category;
+import com.mercadolibro.repository.BookRepository;
+import com.mercadolibro.repository.CategoryRepository;
+import com.mercadolibro.util.MonthWindow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class BookSpecificationTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Test
+    @DisplayName("should only keep the books of the category, once each")
+    void shouldFilterByCategory() {
+        // GIVEN
+        Category fiction = entityManager.persist(Category.builder().name("Fiction").build());
+        Category poetry = entityManager.persist(Category.builder().name("Poetry").build());
+        Book both = persist("both", Set.of(fiction, poetry));
+        Book fictionOnly = persist("fiction", Set.of(fiction));
+        persist("poetry", Set.of(poetry));
+        entityManager.flush();
+        entityManager.clear();
+
+        // WHEN
+        List<Long> fictionIds = categoryRepository.findIdsByName("Fiction");
+        List<Long> result = bookRepository.findAll(BookSpecification.categorySpec(fictionIds),
+                PageRequest.of(0, 10, Sort.by("title"))).map(Book::getId).getContent();
+
+        // THEN
+        assertEquals(List.of(fiction.getId()), fictionIds);
+        assertEquals(List.of(both.getId(), fictionOnly.getId()), result);
+        assertTrue(bookRepository.findAll(BookSpecification.categorySpec(categoryRepository.findIdsByName("Horror")),
+                PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("should only keep the books created in the current month")
+    void shouldFilterReleases() {
+        // GIVEN
+        LocalDateTime monthStart = MonthWindow.current().getStart();
+        Book firstInstant = persist("first instant", monthStart);
+        Book today = persist("today", LocalDateTime.now());
+        persist("last month", monthStart.minusNanos(1000));
+        persist("next month", MonthWindow.current().getEnd());
+        entityManager.flush();
+        entityManager.clear();
+
+        // WHEN
+        List<Long> result = bookRepository.findAll(BookSpecification.releasesSpec(),
+                PageRequest.of(0, 10, Sort.by("title"))).map(Book::getId).getContent();
+
+        // THEN
+        assertEquals(List.of(firstInstant.getId(), today.getId()), result);
+    }
+
+    @Test
+    @DisplayName("should page the same books as the previous COUNT subquery")
+    void shouldMatchCountSubquery() {
+        // GIVEN
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            categories.add(entityManager.persist(Category.builder().name("category " + i).build()));
+        }
+        for (int i = 0; i < 30; i++) {
+            persist("title " + i, Set.of(categories.get(i % 4), categories.get((i * 3 + 1) % 4)));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        PageRequest pageRequest = PageRequest.of(1, 5, Sort.by("title"));
+
+        // WHEN
+        Page<Book> countSubquery = bookRepository.findAll(countSubquerySpec("category 1"), pageRequest);
+        Page<Book> semiJoin = bookRepository.findAll(
+                BookSpecification.categorySpec(categoryRepository.findIdsByName("category 1")), pageRequest);
+
+        // THEN
+        assertEquals(countSubquery.getTotalElements(), semiJoin.getTotalElements());
+        assertEquals(countSubquery.map(Book::getId).getContent(), semiJoin.map(Book::getId).getContent());
+    }
+
+    /* The category filter as it was before the semi-join */
+    private static Specification<Book> countSubquerySpec(String category) {
+        return (root, query, criteriaBuilder) -> {
+            Subquery<Long> subquery = query.subquery(Long.class);
+            Root<Book> subqueryRoot = subquery.from(Book.class);
+            subquery.select(criteriaBuilder.count(subqueryRoot));
+            subquery.where(criteriaBuilder.and(
+                    criteriaBuilder.equal(subqueryRoot, root),
+                    criteriaBuilder.equal(subqueryRoot.join("categories").get("name"), category)));
+            return criteriaBuilder.greaterThan(subquery, 0L);
+        };
+    }
+
+    private Book persist(String title, LocalDateTime createdAt) {
+        return entityManager.persist(Book.builder()
+                .title(title)
+                .isbn(title)
+                .price(BigDecimal.TEN)
+                .createdAt(createdAt)
+                .build());
+    }
+
+    private Book persist(String title, Set<Category> categories) {
+        return entityManager.persist(Book.builder()
+                .title(title)
+                .isbn(title)
+                .price(BigDecimal.TEN)
+                .categories(categories)
+                .build());
+    }
+}
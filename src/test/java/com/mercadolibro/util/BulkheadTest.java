@@ -0,0 +1,63 @@
+package com.mercadolibro.util;
+
+import com.mercadolibro.exception.BulkheadFullException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+    private final Bulkhead bulkhead = new Bulkhead("Remote", 2, Duration.ofMillis(50));
+
+    @Test
+    @DisplayName("should reject the calls over the limit once the maximum wait is over")
+    void shouldRejectOverLimit() throws Exception {
+        // GIVEN
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> first = executor.submit(() -> hold(started, release));
+        Future<?> second = executor.submit(() -> hold(started, release));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        // WHEN
+        assertThrows(BulkheadFullException.class, () -> bulkhead.execute(() -> "rejected"));
+        release.countDown();
+        first.get(1, TimeUnit.SECONDS);
+        second.get(1, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // THEN
+        assertEquals("accepted", bulkhead.execute(() -> "accepted"));
+        assertEquals(2, bulkhead.getAvailableCalls());
+    }
+
+    @Test
+    @DisplayName("should free the slot of a call that failed")
+    void shouldReleaseOnFailure() {
+        assertThrows(IllegalStateException.class, () -> bulkhead.execute(() -> {
+            throw new IllegalStateException("unavailable");
+        }));
+
+        assertEquals(2, bulkhead.getAvailableCalls());
+    }
+
+    private String hold(CountDownLatch started, CountDownLatch release) {
+        return bulkhead.execute(() -> {
+            started.countDown();
+            try {
+                release.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "held";
+        });
+    }
+}
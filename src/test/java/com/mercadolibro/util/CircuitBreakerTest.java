@@ -0,0 +1,109 @@
+package com.mercadolibro.util;
+
+import com.mercadolibro.exception.CircuitOpenException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+    private final MutableClock clock = new MutableClock();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("Remote", 2, Duration.ofSeconds(30), clock);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    @DisplayName("should stop calling after consecutive failures until the open period is over")
+    void shouldOpenAfterFailures() {
+        // GIVEN
+        fail();
+        fail();
+
+        // WHEN
+        assertThrows(CircuitOpenException.class, () -> circuitBreaker.execute(calls::incrementAndGet, e -> true));
+
+        // THEN
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("should close again when the trial call after the open period succeeds")
+    void shouldCloseAfterSuccessfulTrial() {
+        // GIVEN
+        fail();
+        fail();
+        clock.advance(Duration.ofSeconds(30));
+
+        // WHEN
+        int result = circuitBreaker.execute(calls::incrementAndGet, e -> true);
+
+        // THEN
+        assertEquals(3, result);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    @DisplayName("should open again at once when the trial call fails")
+    void shouldReopenAfterFailedTrial() {
+        // GIVEN
+        fail();
+        fail();
+        clock.advance(Duration.ofSeconds(30));
+
+        // WHEN
+        fail();
+
+        // THEN
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertThrows(CircuitOpenException.class, () -> circuitBreaker.execute(calls::incrementAndGet, e -> true));
+    }
+
+    @Test
+    @DisplayName("should not count the errors that are not failures of the dependency")
+    void shouldIgnoreCallerErrors() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalArgumentException.class, () -> circuitBreaker.execute(() -> {
+                throw new IllegalArgumentException("bad request");
+            }, e -> !(e instanceof IllegalArgumentException)));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    private void fail() {
+        assertThrows(IllegalStateException.class, () -> circuitBreaker.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("unavailable");
+        }, e -> true));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2023-11-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
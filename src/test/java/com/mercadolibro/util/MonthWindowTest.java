@@ -0,0 +1,52 @@
+package com.mercadolibro.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonthWindowTest {
+    @AfterEach
+    void tearDown() {
+        MonthWindow.setClock(Clock.systemDefaultZone());
+    }
+
+    @Test
+    @DisplayName("should include the start of the month and exclude the start of the next one")
+    void shouldBeHalfOpen() {
+        // WHEN
+        MonthWindow window = MonthWindow.of(YearMonth.of(2024, 2));
+
+        // THEN
+        assertEquals(LocalDateTime.of(2024, 2, 1, 0, 0), window.getStart());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 0, 0), window.getEnd());
+        assertTrue(window.contains(LocalDateTime.of(2024, 2, 1, 0, 0)));
+        assertTrue(window.contains(LocalDateTime.of(2024, 2, 29, 23, 59, 59)));
+        assertFalse(window.contains(LocalDateTime.of(2024, 3, 1, 0, 0)));
+        assertFalse(window.contains(LocalDateTime.of(2024, 1, 31, 23, 59, 59)));
+    }
+
+    @Test
+    @DisplayName("should share the current window until the month is over")
+    void shouldRefreshAtRollover() {
+        // GIVEN
+        MonthWindow.setClock(clockAt(LocalDateTime.of(2024, 1, 31, 23, 59)));
+        MonthWindow january = MonthWindow.current();
+
+        // WHEN
+        MonthWindow sameMonth = MonthWindow.current();
+        MonthWindow.setClock(clockAt(LocalDateTime.of(2024, 2, 1, 0, 0)));
+        MonthWindow february = MonthWindow.current();
+
+        // THEN
+        assertSame(january, sameMonth);
+        assertEquals(MonthWindow.of(YearMonth.of(2024, 2)).getStart(), february.getStart());
+    }
+
+    private static Clock clockAt(LocalDateTime dateTime) {
+        return Clock.fixed(dateTime.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    }
+}
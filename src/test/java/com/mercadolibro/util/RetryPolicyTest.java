@@ -0,0 +1,75 @@
+package com.mercadolibro.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+    private final RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofMillis(1), Duration.ofMillis(5));
+
+    @Test
+    @DisplayName("should retry the retryable failures until the action succeeds")
+    void shouldRetryUntilSuccess() {
+        // GIVEN
+        AtomicInteger attempts = new AtomicInteger();
+
+        // WHEN
+        String result = retryPolicy.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return "done";
+        }, ConcurrencyFailureException.class);
+
+        // THEN
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    @DisplayName("should give up after the last attempt")
+    void shouldStopAfterMaxAttempts() {
+        // GIVEN
+        AtomicInteger attempts = new AtomicInteger();
+
+        // WHEN
+        assertThrows(OptimisticLockingFailureException.class, () -> retryPolicy.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("conflict");
+        }, ConcurrencyFailureException.class));
+
+        // THEN
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    @DisplayName("should not retry other failures")
+    void shouldNotRetryOtherFailures() {
+        // GIVEN
+        AtomicInteger attempts = new AtomicInteger();
+
+        // WHEN
+        assertThrows(IllegalStateException.class, () -> retryPolicy.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("broken");
+        }, ConcurrencyFailureException.class));
+
+        // THEN
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @DisplayName("should wait no longer than the maximum backoff")
+    void shouldCapBackoff() {
+        for (int attempt = 1; attempt < 40; attempt++) {
+            long backoff = retryPolicy.backoff(attempt);
+            assertTrue(backoff >= 0 && backoff <= 5);
+        }
+    }
+}